@@ -0,0 +1,363 @@
+import java.util.Arrays;
+
+/**
+ * A depth-limited negamax search with alpha-beta pruning for k-in-a-row games.
+ * Positions are explored in place with Board.putMark and Board.undo, so a search allocates nothing
+ * per node, and results are shared between searches through a transposition table.
+ * Positions at the depth limit are scored by a PatternEvaluator that is updated with every move.
+ * Only the candidate moves the board tracks are searched, which on large boards are the cells near
+ * the marks already played.
+ * The search deepens iteratively and stops early once its node limit is used up or its thread is
+ * interrupted, as a game clock does when the time of the move runs out, or once it is asked to stop
+ * from another thread, as a pondering player does when its opponent has moved.
+ * Each search is recorded as a Java Flight Recorder event when that is enabled.
+ * @author Yinon Kedem
+ * @see Board
+ * @see TranspositionTable
+ * @see SearchPlayer
+ * @see SearchFlightEvent
+ * @see PatternEvaluator
+ */
+class AlphaBetaSearch {
+    /**
+     * The score of a position that is won for the side to move, before the distance to the win is taken off.
+     */
+    final static int WIN_SCORE = 10000;
+    /**
+     * The default maximal depth of a search, in moves.
+     */
+    final static int DEFAULT_MAX_DEPTH = 6;
+    /**
+     * The default number of positions a single search may visit.
+     */
+    final static long DEFAULT_NODE_LIMIT = 200_000;
+
+    private final static int WIN_BOUND = WIN_SCORE - 1000;
+    private final static int INFINITY = WIN_SCORE + 1;
+    private final static long SIDE_KEY = 0x6A09E667F3BCC909L;
+    private final static long GEOMETRY_KEY = 0xBB67AE8584CAA73BL;
+    // the interrupt flag is read once every INTERRUPT_CHECK_MASK + 1 nodes
+    private final static long INTERRUPT_CHECK_MASK = 1023;
+
+    private final TranspositionTable table;
+    private final PatternEvaluator evaluator = new PatternEvaluator();
+    private final int maxDepth;
+    private final long nodeLimit;
+    private long nodes;
+    private long tableProbes;
+    private long tableHits;
+    private boolean aborted;
+    private volatile boolean stopped = false;
+    private int rootBestMove;
+    private int lastScore;
+
+    /**
+     * Creates a search.
+     * @param table The transposition table to store results in, possibly shared with other searches.
+     * @param maxDepth The maximal depth of a search, in moves.
+     * @param nodeLimit The number of positions a single search may visit.
+     */
+    AlphaBetaSearch(TranspositionTable table, int maxDepth, long nodeLimit) {
+        this.table = table;
+        this.maxDepth = maxDepth;
+        this.nodeLimit = nodeLimit;
+    }
+
+    /**
+     * Searches the given position and returns the best move found for the given mark.
+     * The board is left exactly as it was received.
+     * @param board The game board.
+     * @param mark The mark of the side to move.
+     * @return The cell index of the best move, or Board.NO_MOVE if the board is full.
+     */
+    int findBestMove(Board board, Mark mark) {
+        SearchFlightEvent flightEvent = SearchFlightEvent.start();
+        this.table.newSearch();
+        this.evaluator.reset(board);
+        this.nodes = 0;
+        this.tableProbes = 0;
+        this.tableHits = 0;
+        this.aborted = false;
+        this.lastScore = 0;
+        int bestMove = board.nextCandidate(0);
+        int completedDepth = 0;
+        for (int depth = 1; depth <= this.maxDepth && bestMove != Board.NO_MOVE; depth++) {
+            int score = search(board, mark, depth, -INFINITY, INFINITY, 0);
+            if (this.aborted) {
+                break;
+            }
+            bestMove = this.rootBestMove;
+            this.lastScore = score;
+            completedDepth = depth;
+            if (Math.abs(score) >= WIN_BOUND) {
+                break;
+            }
+        }
+        if (flightEvent != null && flightEvent.shouldCommit()) {
+            flightEvent.boardSize = board.getSize();
+            flightEvent.winStreak = board.getWinStreak();
+            flightEvent.depth = completedDepth;
+            flightEvent.nodes = this.nodes;
+            flightEvent.tableProbes = this.tableProbes;
+            flightEvent.tableHitRate = getTableHitRate();
+            flightEvent.commit();
+        }
+        return bestMove;
+    }
+
+    /**
+     * Creates a search with the same table, depth and node limit, for use on another thread.
+     * @return The new search.
+     */
+    AlphaBetaSearch fork() {
+        return new AlphaBetaSearch(this.table, this.maxDepth, this.nodeLimit);
+    }
+
+    /**
+     * Asks the search, possibly running on another thread, to stop at its next check, which makes every
+     * following search stop at once too; or lets searches run to their limits again.
+     * @param stopped true to stop searching, false to search again.
+     */
+    void setStopped(boolean stopped) {
+        this.stopped = stopped;
+    }
+
+    /**
+     * Checks if the search was asked to stop.
+     * @return true if searches stop early until setStopped(false) is called, false otherwise.
+     */
+    boolean isStopped() {
+        return this.stopped;
+    }
+
+    /**
+     * Gets the score of the position given to the last search, from the deepest iteration it completed.
+     * @return The score for the side to move: WIN_SCORE minus the moves to a win, its negation for a loss,
+     * or a heuristic score in between; 0 if no iteration completed or the board was full.
+     */
+    int getLastScore() {
+        return this.lastScore;
+    }
+
+    /**
+     * Follows the best moves stored in the transposition table from the given position.
+     * The line ends at a move that is missing or no longer legal, at a win, or at the given length.
+     * The board is left exactly as it was received.
+     * @param board The game board.
+     * @param mark The mark of the side to move.
+     * @param maxLength The largest number of moves in the line.
+     * @return The cell indices of the moves of the line, alternating between the two sides.
+     */
+    int[] principalVariation(Board board, Mark mark, int maxLength) {
+        int[] line = new int[maxLength];
+        int length = 0;
+        Mark toMove = mark;
+        while (length < maxLength) {
+            long data = this.table.probe(positionKey(board, toMove));
+            int move = data == TranspositionTable.MISS ? Board.NO_MOVE : TranspositionTable.move(data);
+            if (move < 0 || move >= board.getSize() * board.getSize()
+                    || !board.putMark(toMove, board.rowOf(move), board.colOf(move))) {
+                break;
+            }
+            line[length++] = move;
+            if (board.completesStreak(board.rowOf(move), board.colOf(move))) {
+                break;
+            }
+            toMove = opponent(toMove);
+        }
+        for (int i = 0; i < length; i++) {
+            board.undo();
+        }
+        return Arrays.copyOf(line, length);
+    }
+
+    /**
+     * Converts the score of a position to the score of the position one move earlier, seen by the other side.
+     * Wins and losses move one move further away.
+     * @param score The score for the side to move in the later position.
+     * @return The score for the side that made the move.
+     */
+    static int parentScore(int score) {
+        if (score >= WIN_BOUND) {
+            return -score + 1;
+        }
+        if (score <= -WIN_BOUND) {
+            return -score - 1;
+        }
+        return -score;
+    }
+
+    /**
+     * Checks if a score is a forced win or loss rather than a heuristic score.
+     * @param score A search score.
+     * @return true if the score is within the range of wins or losses, false otherwise.
+     */
+    static boolean isDecisive(int score) {
+        return Math.abs(score) >= WIN_BOUND;
+    }
+
+    /**
+     * Gets the number of positions visited by the last search.
+     * @return The number of nodes searched.
+     */
+    long getNodes() {
+        return this.nodes;
+    }
+
+    /**
+     * Gets the share of the transposition table probes of the last search that found an entry.
+     * @return The hit rate between 0 and 1, 0 if the table was not probed.
+     */
+    double getTableHitRate() {
+        return this.tableProbes == 0 ? 0 : (double) this.tableHits / this.tableProbes;
+    }
+
+    /**
+     * Gets the opposing mark.
+     * @param mark The mark X or O.
+     * @return O for X, and X for O.
+     */
+    static Mark opponent(Mark mark) {
+        return mark == Mark.X ? Mark.O : Mark.X;
+    }
+
+    private int search(Board board, Mark mark, int depth, int alpha, int beta, int ply) {
+        if (++this.nodes > this.nodeLimit
+                || ((this.nodes & INTERRUPT_CHECK_MASK) == 0
+                && (this.stopped || Thread.currentThread().isInterrupted()))) {
+            this.aborted = true;
+            return 0;
+        }
+        long key = positionKey(board, mark);
+        int tableMove = Board.NO_MOVE;
+        long data = this.table.probe(key);
+        this.tableProbes++;
+        if (data != TranspositionTable.MISS) {
+            this.tableHits++;
+            tableMove = TranspositionTable.move(data);
+            if (ply > 0 && TranspositionTable.depth(data) >= depth) {
+                int score = fromTable(TranspositionTable.score(data), ply);
+                int bound = TranspositionTable.bound(data);
+                if (bound == TranspositionTable.EXACT) {
+                    return score;
+                }
+                if (bound == TranspositionTable.LOWER_BOUND) {
+                    alpha = Math.max(alpha, score);
+                }
+                else {
+                    beta = Math.min(beta, score);
+                }
+                if (alpha >= beta) {
+                    return score;
+                }
+            }
+        }
+        if (depth == 0) {
+            return evaluate(board, mark);
+        }
+        int originalAlpha = alpha;
+        int bestScore = -INFINITY;
+        int bestMove = Board.NO_MOVE;
+        int cells = board.getSize() * board.getSize();
+        // the move from the table is tried first, then every other candidate move of the board in order
+        int candidate = board.nextCandidate(0);
+        for (boolean first = true; first || candidate != Board.NO_MOVE; first = false) {
+            int cell;
+            if (first) {
+                cell = tableMove;
+            }
+            else {
+                cell = candidate;
+                candidate = board.nextCandidate(candidate + 1);
+            }
+            if (cell < 0 || (!first && cell == tableMove)) {
+                continue;
+            }
+            int row = board.rowOf(cell);
+            int col = board.colOf(cell);
+            if (!board.putMark(mark, row, col)) {
+                continue;
+            }
+            this.evaluator.place(mark, cell);
+            int score;
+            if (board.completesStreak(row, col)) {
+                score = WIN_SCORE - ply - 1;
+            }
+            else if (board.getOccupiedCells() == cells) {
+                score = 0;
+            }
+            else {
+                score = -search(board, opponent(mark), depth - 1, -beta, -alpha, ply + 1);
+            }
+            board.undo();
+            this.evaluator.remove(mark, cell);
+            if (this.aborted) {
+                return 0;
+            }
+            if (score > bestScore) {
+                bestScore = score;
+                bestMove = cell;
+            }
+            alpha = Math.max(alpha, bestScore);
+            if (alpha >= beta) {
+                break;
+            }
+        }
+        int bound = TranspositionTable.EXACT;
+        if (bestScore <= originalAlpha) {
+            bound = TranspositionTable.UPPER_BOUND;
+        }
+        else if (bestScore >= beta) {
+            bound = TranspositionTable.LOWER_BOUND;
+        }
+        this.table.store(key, toTable(bestScore, ply), depth, bestMove, bound);
+        if (ply == 0) {
+            this.rootBestMove = bestMove;
+        }
+        return bestScore;
+    }
+
+    /**
+     * Scores a position that was not searched to the end, from the point of view of the side to move,
+     * by the live runs the pattern evaluator keeps up to date along the search.
+     * @param board The game board.
+     * @param mark The mark of the side to move.
+     * @return The static score of the position.
+     */
+    private int evaluate(Board board, Mark mark) {
+        return this.evaluator.evaluate(mark);
+    }
+
+    /**
+     * Computes the key a position is stored under: its Zobrist hash combined with the board geometry
+     * and the side to move.
+     * @param board The game board.
+     * @param mark The mark of the side to move.
+     * @return The key of the position.
+     */
+    static long positionKey(BoardView board, Mark mark) {
+        long key = board.getHash() ^ (GEOMETRY_KEY * (board.getSize() * 31 + board.getWinStreak()));
+        return mark == Mark.O ? key ^ SIDE_KEY : key;
+    }
+
+    // wins are stored relative to the stored position, so they stay valid when reached at another ply
+    private static int toTable(int score, int ply) {
+        if (score >= WIN_BOUND) {
+            return score + ply;
+        }
+        if (score <= -WIN_BOUND) {
+            return score - ply;
+        }
+        return score;
+    }
+
+    private static int fromTable(int score, int ply) {
+        if (score >= WIN_BOUND) {
+            return score - ply;
+        }
+        if (score <= -WIN_BOUND) {
+            return score + ply;
+        }
+        return score;
+    }
+}
@@ -0,0 +1,233 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Scores every legal move of a position, for hint and evaluation panels.
+ * The position is snapshotted once; each legal move is then played on a board of its own and the
+ * reply is searched by an alpha-beta search in a fork/join task, all moves at once. The moves are
+ * returned ranked from best to worst with their scores and principal variations. The caller's board is
+ * never written to, so it may be analysed while it stays on screen.
+ * Analyses are cached by position key, so asking again about a position, as a panel redrawn every frame
+ * does, costs a hash lookup. All searches share a transposition table, normally the process-wide one.
+ * @author Yinon Kedem
+ * @see AlphaBetaSearch
+ * @see BoardSnapshot
+ * @see BoardView
+ * @see TranspositionTable
+ */
+class AnalysisService {
+    /**
+     * The default number of analysed positions kept in the cache.
+     */
+    final static int DEFAULT_CACHE_SIZE = 4096;
+
+    private final TranspositionTable table;
+    private final int maxDepth;
+    private final long nodeLimit;
+    private final ForkJoinPool pool;
+    private final int cacheSize;
+    private final ConcurrentMap<Long, List<RankedMove>> cache = new ConcurrentHashMap<>();
+
+    /**
+     * Constructs a service with the default search depth and node limit, running on the common
+     * fork/join pool and sharing the process-wide transposition table.
+     */
+    AnalysisService() {
+        this(TranspositionTable.shared(), AlphaBetaSearch.DEFAULT_MAX_DEPTH, AlphaBetaSearch.DEFAULT_NODE_LIMIT,
+                ForkJoinPool.commonPool(), DEFAULT_CACHE_SIZE);
+    }
+
+    /**
+     * Constructs a service.
+     * @param table The transposition table shared by the searches.
+     * @param maxDepth The depth of the analysis, in moves, counting the analysed move.
+     * @param nodeLimit The number of positions the search of a single move may visit.
+     * @param pool The pool the moves are searched on.
+     * @param cacheSize The largest number of analysed positions kept; the cache is emptied when it is full.
+     */
+    AnalysisService(TranspositionTable table, int maxDepth, long nodeLimit, ForkJoinPool pool, int cacheSize) {
+        this.table = table;
+        this.maxDepth = maxDepth;
+        this.nodeLimit = nodeLimit;
+        this.pool = pool;
+        this.cacheSize = cacheSize;
+    }
+
+    /**
+     * Scores every legal move of a position. The board is only read, on the calling thread, before
+     * the searches start; a snapshot is analysed without being copied.
+     * @param board A read-only view of the game board.
+     * @param mark The mark of the side to move.
+     * @return The legal moves ranked from best to worst, ties in cell order; empty if the board is full.
+     */
+    List<RankedMove> analyse(BoardView board, Mark mark) {
+        long key = AlphaBetaSearch.positionKey(board, mark);
+        List<RankedMove> cached = this.cache.get(key);
+        if (cached != null) {
+            return cached;
+        }
+        BoardSnapshot snapshot = board.snapshot();
+        List<MoveTask> tasks = new ArrayList<>();
+        for (int cell = 0; cell < board.getSize() * board.getSize(); cell++) {
+            if (board.getMark(board.rowOf(cell), board.colOf(cell)) == Mark.BLANK) {
+                tasks.add(new MoveTask(snapshot, mark, cell));
+            }
+        }
+        List<RankedMove> ranked = new ArrayList<>(tasks.size());
+        this.pool.invoke(new RecursiveTask<Void>() {
+            @Override
+            protected Void compute() {
+                invokeAll(tasks);
+                return null;
+            }
+        });
+        for (MoveTask task : tasks) {
+            ranked.add(task.join());
+        }
+        ranked.sort((first, second) -> first.getScore() != second.getScore()
+                ? Integer.compare(second.getScore(), first.getScore())
+                : Integer.compare(first.getCell(), second.getCell()));
+        List<RankedMove> result = Collections.unmodifiableList(ranked);
+        if (this.cache.size() >= this.cacheSize) {
+            this.cache.clear();
+        }
+        this.cache.put(key, result);
+        return result;
+    }
+
+    /**
+     * Gets the best move of a position and its score.
+     * @param board A read-only view of the game board.
+     * @param mark The mark of the side to move.
+     * @return The best ranked move, or null if the board is full.
+     */
+    RankedMove bestMove(BoardView board, Mark mark) {
+        List<RankedMove> ranked = analyse(board, mark);
+        return ranked.isEmpty() ? null : ranked.get(0);
+    }
+
+    /**
+     * Forgets every cached analysis, for example after the transposition table was cleared.
+     */
+    void clearCache() {
+        this.cache.clear();
+    }
+
+    /**
+     * Searches one move on a board of its own, made from the snapshot of the analysed position.
+     */
+    private final class MoveTask extends RecursiveTask<RankedMove> {
+        private final static long serialVersionUID = 1L;
+        private final BoardSnapshot snapshot;
+        private final Mark mark;
+        private final int cell;
+
+        private MoveTask(BoardSnapshot snapshot, Mark mark, int cell) {
+            this.snapshot = snapshot;
+            this.mark = mark;
+            this.cell = cell;
+        }
+
+        @Override
+        protected RankedMove compute() {
+            int row = this.snapshot.rowOf(this.cell);
+            int col = this.snapshot.colOf(this.cell);
+            // wins and last moves are scored from the shared snapshot, only searched moves get a board
+            if (this.snapshot.wouldComplete(this.mark, row, col)) {
+                return new RankedMove(this.cell, row, col, AlphaBetaSearch.WIN_SCORE - 1, new int[] {this.cell});
+            }
+            if (this.snapshot.getOccupiedCells() + 1 == this.snapshot.getSize() * this.snapshot.getSize()
+                    || maxDepth <= 1) {
+                return new RankedMove(this.cell, row, col, 0, new int[] {this.cell});
+            }
+            Board board = this.snapshot.toBoard();
+            board.putMark(this.mark, row, col);
+            Mark opponent = AlphaBetaSearch.opponent(this.mark);
+            AlphaBetaSearch search = new AlphaBetaSearch(table, maxDepth - 1, nodeLimit);
+            search.findBestMove(board, opponent);
+            int[] reply = search.principalVariation(board, opponent, maxDepth - 1);
+            int[] line = new int[reply.length + 1];
+            line[0] = this.cell;
+            System.arraycopy(reply, 0, line, 1, reply.length);
+            return new RankedMove(this.cell, row, col, AlphaBetaSearch.parentScore(search.getLastScore()), line);
+        }
+    }
+
+    /**
+     * A legal move with its score and the line of play expected to follow it.
+     */
+    static final class RankedMove {
+        private final int cell;
+        private final int row;
+        private final int col;
+        private final int score;
+        private final int[] principalVariation;
+
+        private RankedMove(int cell, int row, int col, int score, int[] principalVariation) {
+            this.cell = cell;
+            this.row = row;
+            this.col = col;
+            this.score = score;
+            this.principalVariation = principalVariation;
+        }
+
+        /**
+         * Gets the cell index of the move.
+         * @return The cell index.
+         */
+        int getCell() {
+            return this.cell;
+        }
+
+        /**
+         * Gets the row of the move.
+         * @return The row index.
+         */
+        int getRow() {
+            return this.row;
+        }
+
+        /**
+         * Gets the column of the move.
+         * @return The column index.
+         */
+        int getCol() {
+            return this.col;
+        }
+
+        /**
+         * Gets the score of the move for the side making it.
+         * @return WIN_SCORE minus the moves to a win, its negation for a loss, or a heuristic score in between.
+         */
+        int getScore() {
+            return this.score;
+        }
+
+        /**
+         * Checks if the move leads to a forced win or loss within the depth of the analysis.
+         * @return true if the score is decisive, false otherwise.
+         */
+        boolean isDecisive() {
+            return AlphaBetaSearch.isDecisive(this.score);
+        }
+
+        /**
+         * Gets the expected line of play, starting with the move itself.
+         * @return The cell indices of the moves, alternating between the two sides.
+         */
+        int[] getPrincipalVariation() {
+            return this.principalVariation.clone();
+        }
+
+        @Override
+        public String toString() {
+            return "(" + this.row + "," + this.col + ") " + this.score + " " + Arrays.toString(this.principalVariation);
+        }
+    }
+}
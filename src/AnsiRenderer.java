@@ -0,0 +1,136 @@
+/**
+ * A renderer that redraws the board in place on an ANSI terminal.
+ * The grid is drawn once; after that only the cells that changed since the last frame are written,
+ * each at its screen position with a cursor-positioning escape code. Frames are capped at a number
+ * per second: a move that arrives sooner after the previous frame is not drawn, and the next frame
+ * catches up with every cell it skipped. The position held back last is drawn by flush, at the end of
+ * every game.
+ * @author Yinon Kedem
+ * @see Renderer
+ * @see RendererFactory
+ */
+class AnsiRenderer implements Renderer {
+    /**
+     * The default maximal number of frames drawn per second.
+     */
+    final static int DEFAULT_FPS = 30;
+    private final static String ESCAPE = "\u001b[";
+    private final static String CLEAR_SCREEN = ESCAPE + "2J";
+    private final static int FIRST_BOARD_LINE = 3;
+    private final static int FIRST_BOARD_COLUMN = 6;
+    private final static int LINES_PER_CELL = 2;
+    private final static int COLUMNS_PER_CELL = 4;
+
+    private final int size;
+    private final long frameNanos;
+    private final Mark[] shown;
+    private final StringBuilder frame = new StringBuilder();
+    private boolean gridDrawn = false;
+    private long lastFrameNanos = 0;
+    private Board heldBack = null;
+
+    /**
+     * Constructs a renderer with the default frame rate.
+     * @param size The size of the boards to render.
+     */
+    AnsiRenderer(int size) {
+        this(size, DEFAULT_FPS);
+    }
+
+    /**
+     * Constructs a renderer.
+     * @param size The size of the boards to render.
+     * @param fps The maximal number of frames drawn per second; 0 or less draws every move.
+     */
+    AnsiRenderer(int size, int fps) {
+        this.size = size;
+        this.frameNanos = fps > 0 ? 1_000_000_000L / fps : 0;
+        this.shown = new Mark[size * size];
+    }
+
+    /**
+     * Draws the cells that changed since the last frame, unless the last frame was drawn too recently.
+     * @param board The game board to be rendered.
+     */
+    @Override
+    public void renderBoard(Board board) {
+        long now = System.nanoTime();
+        if (this.gridDrawn && now - this.lastFrameNanos < this.frameNanos) {
+            this.heldBack = board;
+            return;
+        }
+        this.lastFrameNanos = now;
+        drawFrame(board);
+    }
+
+    /**
+     * Draws the last board that the frame rate held back, if any.
+     */
+    @Override
+    public void flush() {
+        if (this.heldBack != null) {
+            this.lastFrameNanos = System.nanoTime();
+            drawFrame(this.heldBack);
+        }
+    }
+
+    private void drawFrame(Board board) {
+        this.heldBack = null;
+        this.frame.setLength(0);
+        if (!this.gridDrawn) {
+            drawGrid();
+            this.gridDrawn = true;
+        }
+        for (int row = 0; row < this.size; row++) {
+            for (int col = 0; col < this.size; col++) {
+                Mark mark = board.getMark(row, col);
+                int cell = row * this.size + col;
+                if (this.shown[cell] != mark) {
+                    this.shown[cell] = mark;
+                    moveCursor(FIRST_BOARD_LINE + row * LINES_PER_CELL, FIRST_BOARD_COLUMN + col * COLUMNS_PER_CELL);
+                    this.frame.append(mark == Mark.BLANK ? ' ' : mark.name().charAt(0));
+                }
+            }
+        }
+        // park the cursor below the board, so any other output follows it
+        moveCursor(FIRST_BOARD_LINE + this.size * LINES_PER_CELL, 1);
+        System.out.print(this.frame);
+        System.out.flush();
+    }
+
+    private void drawGrid() {
+        this.frame.append(CLEAR_SCREEN);
+        moveCursor(1, 1);
+        this.frame.append("   ");
+        for (int col = 0; col < this.size; col++) {
+            this.frame.append("  ").append(col).append(' ');
+        }
+        for (int row = 0; row < this.size; row++) {
+            moveCursor(FIRST_BOARD_LINE - 1 + row * LINES_PER_CELL, 1);
+            this.frame.append("   ");
+            for (int col = 0; col < this.size; col++) {
+                this.frame.append("+---");
+            }
+            this.frame.append('+');
+            moveCursor(FIRST_BOARD_LINE + row * LINES_PER_CELL, 1);
+            this.frame.append(row < 10 ? " " : "").append(row).append(' ');
+            for (int col = 0; col < this.size; col++) {
+                this.frame.append("|   ");
+            }
+            this.frame.append('|');
+        }
+        moveCursor(FIRST_BOARD_LINE - 1 + this.size * LINES_PER_CELL, 1);
+        this.frame.append("   ");
+        for (int col = 0; col < this.size; col++) {
+            this.frame.append("+---");
+        }
+        this.frame.append('+');
+        for (int cell = 0; cell < this.shown.length; cell++) {
+            this.shown[cell] = Mark.BLANK;
+        }
+    }
+
+    private void moveCursor(int line, int column) {
+        this.frame.append(ESCAPE).append(line).append(';').append(column).append('H');
+    }
+}
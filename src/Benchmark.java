@@ -0,0 +1,280 @@
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A headless benchmark of two player types: the games are played on a number of threads, first
+ * for a warm-up period whose games are not counted, so the JIT compiles the hot code, then for a
+ * measured period. Every measured game is streamed as one line of CSV or NDJSON holding the round,
+ * the types of the X and O players, the result, the number of moves and the nanoseconds it took.
+ * Each thread formats its lines into a buffer of its own and writes the buffer out in blocks, so
+ * the output costs one lock per block, not per game. The summary is printed to the error stream,
+ * leaving the output stream to the game lines.
+ * @author Yinon Kedem
+ * @see Tournament
+ * @see Game
+ */
+class Benchmark {
+    /**
+     * The format of one comma-separated line per game, after a header line.
+     */
+    final static String CSV = "csv";
+    /**
+     * The format of one JSON object per line and game.
+     */
+    final static String NDJSON = "ndjson";
+    /**
+     * The default number of seconds of warm-up.
+     */
+    final static int DEFAULT_WARMUP_SECONDS = 5;
+    /**
+     * The default number of measured seconds.
+     */
+    final static int DEFAULT_DURATION_SECONDS = 10;
+    private final static String THREADS_OPTION = "threads";
+    private final static String WARMUP_OPTION = "warmup";
+    private final static String DURATION_OPTION = "duration";
+    private final static String SEED_OPTION = "seed";
+    private final static String FORMAT_OPTION = "bench-format";
+    private final static String OUTPUT_OPTION = "bench-out";
+    private final static String CSV_HEADER = "round,x,o,result,moves,nanos\n";
+    private final static int FLUSH_THRESHOLD = 1 << 16;
+
+    private final long maxRounds;
+    private final int size;
+    private final int winStreak;
+    private final String[] playerNames;
+    private int threads = 1;
+    private long warmupNanos = TimeUnit.SECONDS.toNanos(DEFAULT_WARMUP_SECONDS);
+    private long durationNanos = TimeUnit.SECONDS.toNanos(DEFAULT_DURATION_SECONDS);
+    private String format = CSV;
+    private String outputPath = null;
+    private TimeControl timeControl = null;
+    private long seed = ThreadLocalRandom.current().nextLong();
+    private final AtomicLong nextRound = new AtomicLong();
+    private OutputStream out;
+    private final int[] playerWins = new int[2];
+    private int ties = 0;
+    private long roundsPlayed = 0;
+    private long warmupRounds = 0;
+    private long measuredNanos = 0;
+
+    /**
+     * Constructs a benchmark of two player types.
+     * @param maxRounds The largest number of measured games; the benchmark stops earlier when its time is up.
+     * @param size The size of the game board.
+     * @param winStreak The required win streak for a player to win.
+     * @param playerName1 The type of the first player.
+     * @param playerName2 The type of the second player.
+     */
+    Benchmark(long maxRounds, int size, int winStreak, String playerName1, String playerName2) {
+        this.maxRounds = maxRounds;
+        this.size = size;
+        this.winStreak = winStreak;
+        this.playerNames = new String[] {playerName1.toLowerCase(), playerName2.toLowerCase()};
+    }
+
+    /**
+     * Applies the benchmark options: --threads, --warmup and --duration in seconds, --seed,
+     * --bench-format (csv or ndjson), --bench-out, the file to stream to instead of the output stream,
+     * and --clock with --on-timeout, as in a tournament.
+     * @param options The optional command-line arguments.
+     * @throws IllegalArgumentException if an option has an invalid value or a player is human.
+     */
+    void configure(CommandLineOptions options) {
+        this.threads = Math.max(1, options.getInt(THREADS_OPTION, 1));
+        this.warmupNanos = TimeUnit.SECONDS.toNanos(Math.max(0, options.getLong(WARMUP_OPTION,
+                DEFAULT_WARMUP_SECONDS)));
+        this.durationNanos = TimeUnit.SECONDS.toNanos(Math.max(0, options.getLong(DURATION_OPTION,
+                DEFAULT_DURATION_SECONDS)));
+        this.seed = options.getLong(SEED_OPTION, this.seed);
+        this.format = options.getString(FORMAT_OPTION, CSV).toLowerCase();
+        this.outputPath = options.getString(OUTPUT_OPTION, null);
+        this.timeControl = Tournament.timeControl(options);
+        if (!this.format.equals(CSV) && !this.format.equals(NDJSON)) {
+            throw new IllegalArgumentException(Constants.invalidOptionString("--" + FORMAT_OPTION + "=" + this.format));
+        }
+        for (String name : this.playerNames) {
+            if (name.equals("human")) {
+                throw new IllegalArgumentException(Constants.invalidOptionString("--bench"));
+            }
+        }
+    }
+
+    /**
+     * Runs the warm-up and the measured games, streaming one line per measured game, then prints the summary.
+     * @throws IOException if the game lines cannot be written.
+     */
+    void run() throws IOException {
+        this.out = this.outputPath == null ? System.out : new FileOutputStream(this.outputPath);
+        try {
+            if (this.format.equals(CSV)) {
+                this.out.write(CSV_HEADER.getBytes(StandardCharsets.US_ASCII));
+            }
+            long start = System.nanoTime();
+            long measureStart = start + this.warmupNanos;
+            long end = measureStart + this.durationNanos;
+            ExecutorService pool = Executors.newFixedThreadPool(this.threads);
+            List<Callable<Void>> tasks = new ArrayList<>();
+            for (int i = 0; i < this.threads; i++) {
+                tasks.add(() -> {
+                    new Worker().play(measureStart, end);
+                    return null;
+                });
+            }
+            try {
+                for (Future<Void> task : pool.invokeAll(tasks)) {
+                    task.get();
+                }
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            catch (ExecutionException e) {
+                if (e.getCause() instanceof IOException) {
+                    throw (IOException) e.getCause();
+                }
+                throw new IllegalStateException(e.getCause());
+            }
+            finally {
+                pool.shutdownNow();
+            }
+            this.measuredNanos = Math.max(0, System.nanoTime() - measureStart);
+            this.out.flush();
+        }
+        finally {
+            if (this.out != System.out) {
+                this.out.close();
+            }
+        }
+        printSummary(System.err);
+    }
+
+    /**
+     * Adds the results of a block of games to the totals and writes the block's lines.
+     * @param block The lines of the block.
+     * @param wins The wins of the two players in the block.
+     * @param blockTies The ties in the block.
+     * @param rounds The number of games in the block.
+     * @param warmup The number of warm-up games played since the last block.
+     * @throws IOException if the lines cannot be written.
+     */
+    private synchronized void recordBlock(StringBuilder block, int[] wins, int blockTies, int rounds, long warmup)
+            throws IOException {
+        this.out.write(block.toString().getBytes(StandardCharsets.US_ASCII));
+        this.playerWins[0] += wins[0];
+        this.playerWins[1] += wins[1];
+        this.ties += blockTies;
+        this.roundsPlayed += rounds;
+        this.warmupRounds += warmup;
+    }
+
+    /**
+     * Prints the totals and the throughput of the measured games.
+     * @param stream The stream to print to.
+     */
+    private void printSummary(PrintStream stream) {
+        double seconds = this.measuredNanos / 1e9;
+        stream.println("######### Benchmark #########\n" +
+                "Player 1, " + this.playerNames[0] + " won: " + this.playerWins[0] + " rounds\n" +
+                "Player 2, " + this.playerNames[1] + " won: " + this.playerWins[1] + " rounds\n" +
+                "Ties: " + this.ties + "\n" +
+                "Warm-up games: " + this.warmupRounds + "\n" +
+                "Measured games: " + this.roundsPlayed + " in " + String.format("%.3f", seconds) + " s on "
+                + this.threads + " threads\n" +
+                "Games per second: " + (seconds > 0 ? Math.round(this.roundsPlayed / seconds) : 0));
+    }
+
+    /**
+     * The players and output buffer of one benchmark thread. Measured rounds are numbered across all
+     * threads, and their random moves are derived from the seed and the round as in a tournament.
+     */
+    private final class Worker {
+        private final RandomSource[] randoms = {new RandomSource(seed), new RandomSource(~seed)};
+        private final Player[] players = {PlayerFactory.buildPlayer(playerNames[0], this.randoms[0]),
+                PlayerFactory.buildPlayer(playerNames[1], this.randoms[1])};
+        private final GameEventBus events = new GameEventBus();
+        private final Game[] games = {new Game(this.players[0], this.players[1], size, winStreak, this.events,
+                timeControl), new Game(this.players[1], this.players[0], size, winStreak, this.events, timeControl)};
+        private final StringBuilder block = new StringBuilder(FLUSH_THRESHOLD + 256);
+        private final int[] wins = new int[2];
+        private int blockTies = 0;
+        private int blockRounds = 0;
+        private long warmup = 0;
+
+        private void play(long measureStart, long end) throws IOException {
+            long round = 0;
+            while (System.nanoTime() < measureStart) {
+                playGame((int) round++);
+                this.warmup++;
+            }
+            while (System.nanoTime() < end && (round = nextRound.getAndIncrement()) < maxRounds) {
+                for (int player = 0; player < this.randoms.length; player++) {
+                    this.randoms[player].setState(RandomSource.derive(seed, round, player));
+                }
+                long gameStart = System.nanoTime();
+                Game game = playGame((int) round);
+                long nanos = System.nanoTime() - gameStart;
+                Mark result = game.getResult();
+                if (result == Mark.X) {
+                    this.wins[(int) (round % 2)]++;
+                }
+                else if (result == Mark.O) {
+                    this.wins[(int) ((round + 1) % 2)]++;
+                }
+                else {
+                    this.blockTies++;
+                }
+                this.blockRounds++;
+                appendLine(round, result, game.getMoveCount(), nanos);
+                if (this.block.length() >= FLUSH_THRESHOLD) {
+                    flush();
+                }
+            }
+            flush();
+        }
+
+        private Game playGame(int round) {
+            Game game = this.games[round % 2];
+            game.run();
+            return game;
+        }
+
+        private void appendLine(long round, Mark result, int moves, long nanos) {
+            String x = playerNames[(int) (round % 2)];
+            String o = playerNames[(int) ((round + 1) % 2)];
+            String outcome = result == Mark.BLANK ? "draw" : result.toString();
+            if (format.equals(CSV)) {
+                this.block.append(round).append(',').append(x).append(',').append(o).append(',')
+                        .append(outcome).append(',').append(moves).append(',').append(nanos).append('\n');
+            }
+            else {
+                this.block.append("{\"round\":").append(round).append(",\"x\":\"").append(x)
+                        .append("\",\"o\":\"").append(o).append("\",\"result\":\"").append(outcome)
+                        .append("\",\"moves\":").append(moves).append(",\"nanos\":").append(nanos).append("}\n");
+            }
+        }
+
+        private void flush() throws IOException {
+            recordBlock(this.block, this.wins, this.blockTies, this.blockRounds, this.warmup);
+            this.block.setLength(0);
+            this.wins[0] = 0;
+            this.wins[1] = 0;
+            this.blockTies = 0;
+            this.blockRounds = 0;
+            this.warmup = 0;
+        }
+    }
+}
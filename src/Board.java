@@ -1,32 +1,114 @@
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
 /**
  * Represents a game board for a two-player game.
  * The board consists of a grid of marks, and players can place their marks on the board.
+ * Every placed mark is pushed on a move stack, so search code can take it back with undo
+ * instead of copying the board for each position it explores.
+ * Rows are copied on write, so snapshots of the board can share them.
+ * Cell coordinates and streak directions come from a BoardGeometry shared by every board of the same shape.
+ * The board keeps a bitset of candidate moves, updated on every putMark and undo: on boards of at least
+ * PRUNING_MIN_SIZE cells a side only the empty cells in the neighbourhood of a mark, since strong moves
+ * lie near the marks already played, and on smaller boards every empty cell.
  * @author Your Name
  * @see Mark
+ * @see BoardSnapshot
+ * @see BoardGeometry
+ * @see BoardView
  */
-class Board {
+class Board implements BoardView {
     /**
      * The default size of the board. It is a constant (static final).
      */
     public final static int DEFUALT_BOARD_SIZE = 4;
+    /**
+     * Returned by getLastMove when no mark was placed on the board.
+     */
+    final static int NO_MOVE = -1;
+    /**
+     * The smallest board size on which candidate moves are limited to the neighbourhood of the marks.
+     */
+    final static int PRUNING_MIN_SIZE = 9;
+    private final static ConcurrentMap<Integer, long[]> ZOBRIST_KEYS = new ConcurrentHashMap<>();
     private int Board_size = DEFUALT_BOARD_SIZE;
+    private final int winStreak;
+    private final BoardGeometry geometry;
     private Mark[][] board_table;
+    private final boolean[] sharedRows;
+    private final long[] zobristKeys;
+    private final int[] moveStack;
+    private int occupiedCells = 0;
+    private long hash = 0;
+    private final boolean pruned;
+    private final long[] emptyCells;
+    // on pruned boards, the cells with a mark in their neighbourhood and, for every cell, the number of such marks
+    private final long[] nearbyCells;
+    private final int[] nearbyMarks;
 
     /**
      * Default constructor. Initializes the board with the default size.
      */
     Board(){
-        this.board_table = new Mark[DEFUALT_BOARD_SIZE][DEFUALT_BOARD_SIZE];
-        this.initBoard();
+        this(DEFUALT_BOARD_SIZE);
     }
     /**
      * Parameterized constructor. Initializes the board with the specified size.
+     * A full row, column or diagonal is needed to win.
      * @param size The size of the board.
      */
     Board(int size){
+        this(size, size);
+    }
+    /**
+     * Parameterized constructor. Initializes the board with the specified size and win streak.
+     * @param size The size of the board.
+     * @param winStreak The number of marks in a row needed to win on this board.
+     */
+    Board(int size, int winStreak){
         this.Board_size = size;
+        this.winStreak = winStreak;
+        this.geometry = BoardGeometry.of(size, winStreak);
         this.board_table = new Mark[size][size];
+        this.sharedRows = new boolean[size];
+        this.zobristKeys = ZOBRIST_KEYS.computeIfAbsent(size, Board::createZobristKeys);
+        this.moveStack = new int[size * size];
+        this.pruned = size >= PRUNING_MIN_SIZE;
+        this.emptyCells = new long[(size * size + Long.SIZE - 1) / Long.SIZE];
+        this.nearbyCells = this.pruned ? new long[this.emptyCells.length] : null;
+        this.nearbyMarks = this.pruned ? new int[size * size] : null;
         this.initBoard();
+        this.initCandidates();
+    }
+    /**
+     * Snapshot constructor. Initializes the board with the marks of a snapshot, sharing its rows
+     * until they are written to. The marks are pushed on the move stack in row order.
+     * @param snapshot The position to start from.
+     */
+    Board(BoardSnapshot snapshot){
+        this.Board_size = snapshot.getSize();
+        this.winStreak = snapshot.getWinStreak();
+        this.geometry = BoardGeometry.of(this.Board_size, this.winStreak);
+        this.board_table = snapshot.sharedRows().clone();
+        this.sharedRows = new boolean[this.Board_size];
+        Arrays.fill(this.sharedRows, true);
+        this.zobristKeys = ZOBRIST_KEYS.computeIfAbsent(this.Board_size, Board::createZobristKeys);
+        this.moveStack = new int[this.Board_size * this.Board_size];
+        this.pruned = this.Board_size >= PRUNING_MIN_SIZE;
+        this.emptyCells = new long[(this.Board_size * this.Board_size + Long.SIZE - 1) / Long.SIZE];
+        this.nearbyCells = this.pruned ? new long[this.emptyCells.length] : null;
+        this.nearbyMarks = this.pruned ? new int[this.Board_size * this.Board_size] : null;
+        this.initCandidates();
+        for (int row = 0; row < this.Board_size; row++){
+            for (int col = 0; col < this.Board_size; col++){
+                if (this.board_table[row][col] != Mark.BLANK){
+                    this.moveStack[this.occupiedCells++] = cellIndex(row, col);
+                    markPlaced(cellIndex(row, col));
+                }
+            }
+        }
+        this.hash = snapshot.getHash();
     }
     /**
      * Initializes the board with blank marks.
@@ -42,9 +124,26 @@ class Board {
      * Gets the size of the board.
      * @return The size of the board.
      */
-    int getSize(){
+    @Override
+    public int getSize(){
         return this.Board_size;
     }
+    /**
+     * Gets the number of marks in a row needed to win on this board.
+     * @return The win streak.
+     */
+    @Override
+    public int getWinStreak(){
+        return this.winStreak;
+    }
+    /**
+     * Gets the shared geometry of boards of this size and win streak.
+     * @return The geometry of the board.
+     */
+    @Override
+    public BoardGeometry getGeometry(){
+        return this.geometry;
+    }
     /**
      * Places a mark on the specified position of the board.
      * @param mark The mark to be placed.
@@ -61,9 +160,145 @@ class Board {
         if (wanted_position_mark != Mark.BLANK){
             return false;
         }
-        this.board_table[row][col] = mark;
+        writableRow(row)[col] = mark;
+        int cell = cellIndex(row, col);
+        this.hash ^= zobristKey(mark, cell);
+        this.moveStack[this.occupiedCells++] = cell;
+        markPlaced(cell);
         return true;
     }
+    /**
+     * Takes back the last mark placed on the board, restoring the occupancy count and hash.
+     * @return true if a mark was taken back, false if the board has no marks.
+     */
+    boolean undo(){
+        if (this.occupiedCells == 0){
+            return false;
+        }
+        int cell = this.moveStack[--this.occupiedCells];
+        int row = rowOf(cell);
+        int col = colOf(cell);
+        this.hash ^= zobristKey(this.board_table[row][col], cell);
+        writableRow(row)[col] = Mark.BLANK;
+        markRemoved(cell);
+        return true;
+    }
+    /**
+     * Clears the board for a new game, reusing its storage. Only the cells on the move stack are
+     * cleared, so the cost is the number of marks placed, not the number of cells.
+     */
+    void reset(){
+        for (int i = 0; i < this.occupiedCells; i++){
+            int cell = this.moveStack[i];
+            writableRow(rowOf(cell))[colOf(cell)] = Mark.BLANK;
+            setBit(this.emptyCells, cell);
+            if (this.pruned){
+                for (int near : this.geometry.getNeighbourhood(cell)){
+                    this.nearbyMarks[near] = 0;
+                    clearBit(this.nearbyCells, near);
+                }
+            }
+        }
+        this.occupiedCells = 0;
+        this.hash = 0;
+    }
+    /**
+     * Gets the next candidate move: an empty cell in the neighbourhood of a mark on a pruned board,
+     * or the center cell while the board is empty, and any empty cell on a smaller board.
+     * Candidates are found by scanning the bitsets a word of 64 cells at a time.
+     * @param cell The cell index to start from.
+     * @return The smallest candidate cell index not below the given one, or NO_MOVE if there is none.
+     */
+    @Override
+    public int nextCandidate(int cell){
+        if (this.pruned && this.occupiedCells == 0){
+            int center = cellIndex(this.Board_size / 2, this.Board_size / 2);
+            return cell <= center ? center : NO_MOVE;
+        }
+        int word = cell / Long.SIZE;
+        if (cell < 0 || word >= this.emptyCells.length){
+            return NO_MOVE;
+        }
+        long bits = candidateWord(word) & (-1L << (cell % Long.SIZE));
+        while (bits == 0){
+            if (++word == this.emptyCells.length){
+                return NO_MOVE;
+            }
+            bits = candidateWord(word);
+        }
+        return word * Long.SIZE + Long.numberOfTrailingZeros(bits);
+    }
+
+    private long candidateWord(int word){
+        return this.pruned ? this.emptyCells[word] & this.nearbyCells[word] : this.emptyCells[word];
+    }
+    /**
+     * Marks every cell of an empty board as empty.
+     */
+    private void initCandidates(){
+        for (int cell = 0; cell < this.Board_size * this.Board_size; cell++){
+            setBit(this.emptyCells, cell);
+        }
+    }
+    /**
+     * Updates the candidates after a mark was placed on a cell.
+     * @param cell The cell index of the mark.
+     */
+    private void markPlaced(int cell){
+        clearBit(this.emptyCells, cell);
+        if (this.pruned){
+            for (int near : this.geometry.getNeighbourhood(cell)){
+                if (this.nearbyMarks[near]++ == 0){
+                    setBit(this.nearbyCells, near);
+                }
+            }
+        }
+    }
+    /**
+     * Updates the candidates after the mark on a cell was taken back.
+     * @param cell The cell index of the mark.
+     */
+    private void markRemoved(int cell){
+        setBit(this.emptyCells, cell);
+        if (this.pruned){
+            for (int near : this.geometry.getNeighbourhood(cell)){
+                if (--this.nearbyMarks[near] == 0){
+                    clearBit(this.nearbyCells, near);
+                }
+            }
+        }
+    }
+
+    private static void setBit(long[] bits, int cell){
+        bits[cell / Long.SIZE] |= 1L << (cell % Long.SIZE);
+    }
+
+    private static void clearBit(long[] bits, int cell){
+        bits[cell / Long.SIZE] &= ~(1L << (cell % Long.SIZE));
+    }
+    /**
+     * Takes an immutable snapshot of the current position. Costs O(size): the rows are shared
+     * with the snapshot and copied by this board on its next write to them.
+     * @return The snapshot of the current position.
+     */
+    @Override
+    public BoardSnapshot snapshot(){
+        Arrays.fill(this.sharedRows, true);
+        return new BoardSnapshot(this.Board_size, this.winStreak, this.board_table.clone(),
+                this.hash, this.occupiedCells);
+    }
+    /**
+     * Gets a row that may be written to, copying it first if it is shared with a snapshot.
+     * @param row The row index.
+     * @return The row, owned by this board only.
+     */
+    private Mark[] writableRow(int row){
+        if (this.sharedRows[row]){
+            this.board_table[row] = this.board_table[row].clone();
+            this.sharedRows[row] = false;
+        }
+        return this.board_table[row];
+    }
     /**
      * Checks if a given position is a valid position on the board.
      * @param row The row index of the position.
@@ -79,7 +314,152 @@ class Board {
      * @param col The column index of the position.
      * @return The mark at the specified position.
      */
-    Mark getMark(int row, int col){
+    @Override
+    public Mark getMark(int row, int col){
         return board_table[row][col];
     }
+    /**
+     * Gets the number of marks placed on the board.
+     * @return The number of occupied cells.
+     */
+    @Override
+    public int getOccupiedCells(){
+        return this.occupiedCells;
+    }
+    /**
+     * Gets the last mark placed on the board that was not taken back.
+     * @return The cell index of the last move, or NO_MOVE if the board has no marks.
+     */
+    int getLastMove(){
+        return this.occupiedCells == 0 ? NO_MOVE : this.moveStack[this.occupiedCells - 1];
+    }
+    /**
+     * Gets the Zobrist hash of the marks on the board. Equal positions on boards of
+     * the same size have equal hashes.
+     * @return The hash of the current position.
+     */
+    @Override
+    public long getHash(){
+        return this.hash;
+    }
+    /**
+     * Converts a position to a cell index, numbered row by row from 0.
+     * @param row The row index of the position.
+     * @param col The column index of the position.
+     * @return The cell index of the position.
+     */
+    @Override
+    public int cellIndex(int row, int col){
+        return this.geometry.cellIndex(row, col);
+    }
+    /**
+     * Gets the row of a cell index.
+     * @param cell The cell index.
+     * @return The row index of the cell.
+     */
+    @Override
+    public int rowOf(int cell){
+        return this.geometry.rowOf(cell);
+    }
+    /**
+     * Gets the column of a cell index.
+     * @param cell The cell index.
+     * @return The column index of the cell.
+     */
+    @Override
+    public int colOf(int cell){
+        return this.geometry.colOf(cell);
+    }
+    /**
+     * Checks if the mark at the specified position is part of a streak of at least winStreak marks.
+     * Only the cells a streak through the position may extend to are read, from the shared geometry.
+     * @param row The row index of the position.
+     * @param col The column index of the position.
+     * @return true if the position completes a winning streak, false otherwise.
+     */
+    boolean completesStreak(int row, int col){
+        Mark mark = this.board_table[row][col];
+        if (mark == Mark.BLANK){
+            return false;
+        }
+        int cell = cellIndex(row, col);
+        for (int direction = 0; direction < BoardGeometry.DIRECTIONS / 2; direction++){
+            if (countRay(this.geometry.getRay(cell, direction), mark)
+                    + countRay(this.geometry.getRay(cell, direction + BoardGeometry.DIRECTIONS / 2), mark)
+                    >= this.winStreak - 1){
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Checks if placing a mark on an empty position would complete a streak of at least winStreak marks,
+     * without placing it.
+     * @param mark The mark X or O.
+     * @param row The row index of the position.
+     * @param col The column index of the position.
+     * @return true if the mark would win there, false otherwise.
+     */
+    @Override
+    public boolean wouldComplete(Mark mark, int row, int col){
+        int cell = cellIndex(row, col);
+        for (int direction = 0; direction < BoardGeometry.DIRECTIONS / 2; direction++){
+            if (countRay(this.geometry.getRay(cell, direction), mark)
+                    + countRay(this.geometry.getRay(cell, direction + BoardGeometry.DIRECTIONS / 2), mark)
+                    >= this.winStreak - 1){
+                return true;
+            }
+        }
+        return false;
+    }
+    /**
+     * Replaces the marks on the board with those of another position of the same size and win streak,
+     * reusing the storage of the board. The marks are pushed on the move stack in row order.
+     * @param position The position to copy.
+     */
+    void setPosition(BoardView position){
+        reset();
+        for (int row = 0; row < this.Board_size; row++){
+            for (int col = 0; col < this.Board_size; col++){
+                Mark mark = position.getMark(row, col);
+                if (mark != Mark.BLANK){
+                    putMark(mark, row, col);
+                }
+            }
+        }
+    }
+
+    private int countRay(int[] ray, Mark mark){
+        int count = 0;
+        while (count < ray.length
+                && this.board_table[this.geometry.rowOf(ray[count])][this.geometry.colOf(ray[count])] == mark){
+            count++;
+        }
+        return count;
+    }
+
+    private long zobristKey(Mark mark, int cell){
+        return this.zobristKeys[2 * cell + (mark == Mark.X ? 0 : 1)];
+    }
+    /**
+     * Gets the Zobrist key of a mark on a cell, as used in the hash of every board of the given size.
+     * @param size The size of the board.
+     * @param mark The mark X or O.
+     * @param cell The cell index.
+     * @return The key XOR-ed into the hash when the mark is placed on the cell.
+     */
+    static long zobristKey(int size, Mark mark, int cell){
+        return ZOBRIST_KEYS.computeIfAbsent(size, Board::createZobristKeys)[2 * cell + (mark == Mark.X ? 0 : 1)];
+    }
+
+    private static long[] createZobristKeys(int size){
+        long[] keys = new long[2 * size * size];
+        // a fixed seed, so every process and run uses the same keys
+        RandomSource random = new RandomSource(0x5DEECE66DL * size);
+        for (int i = 0; i < keys.length; i++){
+            keys[i] = random.nextLong();
+        }
+        return keys;
+    }
 }
@@ -0,0 +1,309 @@
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * The fixed shape of a board of a given size and win streak: the row and column of every cell,
+ * every line of winStreak cells that wins, the lines through each cell, the neighbours and the wider
+ * neighbourhood of each cell, for each cell and direction, the cells a streak through it may extend to,
+ * and the cell each of the 8 symmetries of the square maps every cell to.
+ * A geometry is immutable, built once per size and win streak and shared by every board, game and
+ * player in the process, so setting up a round costs no geometry work at all.
+ * The arrays returned by the getters are shared and must not be written to.
+ * @author Yinon Kedem
+ * @see Board
+ * @see Game
+ */
+final class BoardGeometry {
+    /**
+     * The number of directions from a cell: the 8 compass directions, opposite directions
+     * 4 apart, and the first 4 covering the row, column and two diagonals.
+     */
+    final static int DIRECTIONS = 8;
+    /**
+     * The distance, in rows or columns, within which a cell is in the neighbourhood of another.
+     */
+    final static int NEIGHBOURHOOD_DISTANCE = 2;
+    /**
+     * The number of symmetries of a square board: 4 rotations, each with or without a reflection.
+     */
+    final static int SYMMETRIES = 8;
+    private final static int[] ROW_STEPS = {0, 1, 1, 1, 0, -1, -1, -1};
+    private final static int[] COL_STEPS = {1, 0, 1, -1, -1, 0, -1, 1};
+    private final static ConcurrentMap<Long, BoardGeometry> CACHE = new ConcurrentHashMap<>();
+
+    private final int size;
+    private final int winStreak;
+    private final int[] rows;
+    private final int[] cols;
+    private final int[][] lines;
+    private final int[][] linesThrough;
+    private final int[][] positionsInLines;
+    private final int[][] neighbours;
+    private final int[][] neighbourhoods;
+    private final int[][][] rays;
+    private final int[][] symmetries;
+
+    private BoardGeometry(int size, int winStreak) {
+        this.size = size;
+        this.winStreak = winStreak;
+        int cells = size * size;
+        this.rows = new int[cells];
+        this.cols = new int[cells];
+        for (int cell = 0; cell < cells; cell++) {
+            this.rows[cell] = cell / size;
+            this.cols[cell] = cell % size;
+        }
+        this.rays = new int[cells][DIRECTIONS][];
+        this.neighbours = new int[cells][];
+        for (int cell = 0; cell < cells; cell++) {
+            int[] adjacent = new int[DIRECTIONS];
+            int count = 0;
+            for (int direction = 0; direction < DIRECTIONS; direction++) {
+                this.rays[cell][direction] = ray(cell, direction, Math.max(0, winStreak - 1));
+                if (contains(this.rows[cell] + ROW_STEPS[direction], this.cols[cell] + COL_STEPS[direction])) {
+                    adjacent[count++] = cellIndex(this.rows[cell] + ROW_STEPS[direction],
+                            this.cols[cell] + COL_STEPS[direction]);
+                }
+            }
+            this.neighbours[cell] = Arrays.copyOf(adjacent, count);
+        }
+        this.neighbourhoods = new int[cells][];
+        for (int cell = 0; cell < cells; cell++) {
+            this.neighbourhoods[cell] = neighbourhood(cell, NEIGHBOURHOOD_DISTANCE);
+        }
+        this.symmetries = createSymmetries();
+        this.lines = createLines();
+        int[] counts = new int[cells];
+        for (int[] line : this.lines) {
+            for (int cell : line) {
+                counts[cell]++;
+            }
+        }
+        this.linesThrough = new int[cells][];
+        this.positionsInLines = new int[cells][];
+        for (int cell = 0; cell < cells; cell++) {
+            this.linesThrough[cell] = new int[counts[cell]];
+            this.positionsInLines[cell] = new int[counts[cell]];
+            counts[cell] = 0;
+        }
+        for (int line = 0; line < this.lines.length; line++) {
+            for (int position = 0; position < this.lines[line].length; position++) {
+                int cell = this.lines[line][position];
+                this.linesThrough[cell][counts[cell]] = line;
+                this.positionsInLines[cell][counts[cell]++] = position;
+            }
+        }
+    }
+
+    /**
+     * Gets the geometry of a board, building it on first use.
+     * @param size The size of the board.
+     * @param winStreak The number of marks in a row needed to win.
+     * @return The shared geometry.
+     */
+    static BoardGeometry of(int size, int winStreak) {
+        BoardGeometry geometry = CACHE.get(key(size, winStreak));
+        if (geometry != null) {
+            return geometry;
+        }
+        return CACHE.computeIfAbsent(key(size, winStreak), key -> new BoardGeometry(size, winStreak));
+    }
+
+    /**
+     * Gets the key of a board shape in the caches of per-shape data, distinct for every size and win streak.
+     * @param size The size of the board.
+     * @param winStreak The number of marks in a row needed to win.
+     * @return The key.
+     */
+    static long key(int size, int winStreak) {
+        return ((long) size << Integer.SIZE) | (winStreak & 0xFFFFFFFFL);
+    }
+
+    /**
+     * Gets the size of the board.
+     * @return The size of the board.
+     */
+    int getSize() {
+        return this.size;
+    }
+
+    /**
+     * Gets the number of marks in a row needed to win.
+     * @return The win streak.
+     */
+    int getWinStreak() {
+        return this.winStreak;
+    }
+
+    /**
+     * Gets the number of cells of the board.
+     * @return size * size.
+     */
+    int getCellCount() {
+        return this.rows.length;
+    }
+
+    /**
+     * Checks if a position is on the board.
+     * @param row The row index of the position.
+     * @param col The column index of the position.
+     * @return true if the position is on the board, false otherwise.
+     */
+    boolean contains(int row, int col) {
+        return row >= 0 && row < this.size && col >= 0 && col < this.size;
+    }
+
+    /**
+     * Converts a position to a cell index, numbered row by row from 0.
+     * @param row The row index of the position.
+     * @param col The column index of the position.
+     * @return The cell index of the position.
+     */
+    int cellIndex(int row, int col) {
+        return row * this.size + col;
+    }
+
+    /**
+     * Gets the row of a cell.
+     * @param cell The cell index.
+     * @return The row index of the cell.
+     */
+    int rowOf(int cell) {
+        return this.rows[cell];
+    }
+
+    /**
+     * Gets the column of a cell.
+     * @param cell The cell index.
+     * @return The column index of the cell.
+     */
+    int colOf(int cell) {
+        return this.cols[cell];
+    }
+
+    /**
+     * Gets every line of winStreak consecutive cells along a row, column or diagonal.
+     * @return The lines, each holding its cells in order.
+     */
+    int[][] getLines() {
+        return this.lines;
+    }
+
+    /**
+     * Gets the lines through a cell.
+     * @param cell The cell index.
+     * @return The indices of the lines, in getLines, that hold the cell.
+     */
+    int[] getLinesThrough(int cell) {
+        return this.linesThrough[cell];
+    }
+
+    /**
+     * Gets the positions of a cell in the lines through it.
+     * @param cell The cell index.
+     * @return For every line in getLinesThrough, the index of the cell in that line.
+     */
+    int[] getPositionsInLines(int cell) {
+        return this.positionsInLines[cell];
+    }
+
+    /**
+     * Gets the cells adjacent to a cell, diagonals included.
+     * @param cell The cell index.
+     * @return The up to 8 neighbouring cells.
+     */
+    int[] getNeighbours(int cell) {
+        return this.neighbours[cell];
+    }
+
+    /**
+     * Gets the cells within NEIGHBOURHOOD_DISTANCE rows and columns of a cell, the cell itself excluded.
+     * @param cell The cell index.
+     * @return The up to 24 cells of the neighbourhood, in row order.
+     */
+    int[] getNeighbourhood(int cell) {
+        return this.neighbourhoods[cell];
+    }
+
+    /**
+     * Gets the cells a streak through a cell may extend to in one direction, nearest first.
+     * @param cell The cell index.
+     * @param direction The direction, from 0 to DIRECTIONS - 1; direction d + 4 is opposite to d.
+     * @return Up to winStreak - 1 cells on the board.
+     */
+    int[] getRay(int cell, int direction) {
+        return this.rays[cell][direction];
+    }
+
+    /**
+     * Gets the cell a symmetry of the board maps each cell to.
+     * @param symmetry The symmetry, from 0, the identity, to SYMMETRIES - 1.
+     * @return The image of every cell index under the symmetry.
+     */
+    int[] getSymmetry(int symmetry) {
+        return this.symmetries[symmetry];
+    }
+
+    private int[][] createSymmetries() {
+        int last = this.size - 1;
+        int[][] images = new int[SYMMETRIES][this.rows.length];
+        for (int cell = 0; cell < this.rows.length; cell++) {
+            int row = this.rows[cell];
+            int col = this.cols[cell];
+            images[0][cell] = cellIndex(row, col);
+            images[1][cell] = cellIndex(col, last - row);
+            images[2][cell] = cellIndex(last - row, last - col);
+            images[3][cell] = cellIndex(last - col, row);
+            images[4][cell] = cellIndex(row, last - col);
+            images[5][cell] = cellIndex(last - row, col);
+            images[6][cell] = cellIndex(col, row);
+            images[7][cell] = cellIndex(last - col, last - row);
+        }
+        return images;
+    }
+
+    private int[] ray(int cell, int direction, int length) {
+        int count = 0;
+        while (count < length && contains(this.rows[cell] + ROW_STEPS[direction] * (count + 1),
+                this.cols[cell] + COL_STEPS[direction] * (count + 1))) {
+            count++;
+        }
+        int[] ray = new int[count];
+        for (int step = 0; step < count; step++) {
+            ray[step] = cellIndex(this.rows[cell] + ROW_STEPS[direction] * (step + 1),
+                    this.cols[cell] + COL_STEPS[direction] * (step + 1));
+        }
+        return ray;
+    }
+
+    private int[] neighbourhood(int cell, int distance) {
+        int[] found = new int[(2 * distance + 1) * (2 * distance + 1)];
+        int count = 0;
+        for (int row = this.rows[cell] - distance; row <= this.rows[cell] + distance; row++) {
+            for (int col = this.cols[cell] - distance; col <= this.cols[cell] + distance; col++) {
+                if (contains(row, col) && cellIndex(row, col) != cell) {
+                    found[count++] = cellIndex(row, col);
+                }
+            }
+        }
+        return Arrays.copyOf(found, count);
+    }
+
+    private int[][] createLines() {
+        int[][] found = new int[4 * this.size * this.size][];
+        int count = 0;
+        for (int cell = 0; cell < this.rows.length && this.winStreak > 0; cell++) {
+            for (int direction = 0; direction < DIRECTIONS / 2; direction++) {
+                if (this.rays[cell][direction].length < this.winStreak - 1) {
+                    continue;
+                }
+                int[] line = new int[this.winStreak];
+                line[0] = cell;
+                System.arraycopy(this.rays[cell][direction], 0, line, 1, this.winStreak - 1);
+                found[count++] = line;
+            }
+        }
+        return Arrays.copyOf(found, count);
+    }
+}
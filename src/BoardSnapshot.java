@@ -0,0 +1,137 @@
+/**
+ * An immutable position of a game board.
+ * A snapshot shares its rows with the board it was taken from and with the snapshots derived from it;
+ * the board copies a shared row only when it writes to it. Taking a snapshot therefore costs one
+ * array of row references, and a snapshot may be read from any thread without locks.
+ * @author Yinon Kedem
+ * @see Board
+ * @see Mark
+ * @see BoardView
+ */
+final class BoardSnapshot implements BoardView {
+    private final int size;
+    private final int winStreak;
+    private final BoardGeometry geometry;
+    private final Mark[][] rows;
+    private final long hash;
+    private final int occupiedCells;
+
+    /**
+     * Creates a snapshot over the given rows. The rows must never be written to again.
+     * @param size The size of the board.
+     * @param winStreak The number of marks in a row needed to win.
+     * @param rows The rows of the position.
+     * @param hash The Zobrist hash of the position.
+     * @param occupiedCells The number of marks in the position.
+     */
+    BoardSnapshot(int size, int winStreak, Mark[][] rows, long hash, int occupiedCells) {
+        this.size = size;
+        this.winStreak = winStreak;
+        this.geometry = BoardGeometry.of(size, winStreak);
+        this.rows = rows;
+        this.hash = hash;
+        this.occupiedCells = occupiedCells;
+    }
+
+    /**
+     * Gets the size of the board.
+     * @return The size of the board.
+     */
+    @Override
+    public int getSize() {
+        return this.size;
+    }
+
+    /**
+     * Gets the number of marks in a row needed to win.
+     * @return The win streak.
+     */
+    @Override
+    public int getWinStreak() {
+        return this.winStreak;
+    }
+
+    /**
+     * Gets the shared geometry of the position.
+     * @return The geometry for the size and win streak of the position.
+     */
+    @Override
+    public BoardGeometry getGeometry() {
+        return this.geometry;
+    }
+
+    /**
+     * Gets the mark at the specified position.
+     * @param row The row index of the position.
+     * @param col The column index of the position.
+     * @return The mark at the specified position.
+     */
+    @Override
+    public Mark getMark(int row, int col) {
+        return this.rows[row][col];
+    }
+
+    /**
+     * Gets the Zobrist hash of the position, equal to the hash of the board it was taken from.
+     * @return The hash of the position.
+     */
+    @Override
+    public long getHash() {
+        return this.hash;
+    }
+
+    /**
+     * Gets the number of marks in the position.
+     * @return The number of occupied cells.
+     */
+    @Override
+    public int getOccupiedCells() {
+        return this.occupiedCells;
+    }
+
+    /**
+     * Gets this snapshot, which is already immutable.
+     * @return This snapshot.
+     */
+    @Override
+    public BoardSnapshot snapshot() {
+        return this;
+    }
+
+    /**
+     * Derives the position reached by placing a mark. Only the changed row is copied;
+     * every other row is shared with this snapshot.
+     * @param mark The mark to be placed.
+     * @param row The row index of the position.
+     * @param col The column index of the position.
+     * @return The new position, or this snapshot if the position is out of range or occupied.
+     */
+    BoardSnapshot withMark(Mark mark, int row, int col) {
+        if (row < 0 || row >= this.size || col < 0 || col >= this.size || this.rows[row][col] != Mark.BLANK) {
+            return this;
+        }
+        Mark[] changedRow = this.rows[row].clone();
+        changedRow[col] = mark;
+        Mark[][] newRows = this.rows.clone();
+        newRows[row] = changedRow;
+        return new BoardSnapshot(this.size, this.winStreak, newRows,
+                this.hash ^ Board.zobristKey(this.size, mark, row * this.size + col), this.occupiedCells + 1);
+    }
+
+    /**
+     * Creates a live board holding this position. The board shares the rows of the snapshot
+     * until it writes to them.
+     * @return A new board with the marks of this position.
+     */
+    Board toBoard() {
+        return new Board(this);
+    }
+
+    /**
+     * Gets the rows of the snapshot, for boards that share them.
+     * @return The rows of the position, which must not be written to.
+     */
+    Mark[][] sharedRows() {
+        return this.rows;
+    }
+}
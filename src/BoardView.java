@@ -0,0 +1,127 @@
+/**
+ * A read-only view of a game board position.
+ * Players choose their moves from a view, so they cannot change the board they are shown, and a
+ * position may be handed to any number of players at once, in parallel, without copying it.
+ * Both a live board and an immutable snapshot are views.
+ * @author Yinon Kedem
+ * @see Board
+ * @see BoardSnapshot
+ * @see Player
+ */
+interface BoardView {
+    /**
+     * Gets the size of the board.
+     * @return The size of the board.
+     */
+    int getSize();
+
+    /**
+     * Gets the number of marks in a row needed to win.
+     * @return The win streak.
+     */
+    int getWinStreak();
+
+    /**
+     * Gets the shared geometry of the board.
+     * @return The geometry for the size and win streak of the board.
+     */
+    BoardGeometry getGeometry();
+
+    /**
+     * Gets the mark at the specified position.
+     * @param row The row index of the position.
+     * @param col The column index of the position.
+     * @return The mark at the specified position.
+     */
+    Mark getMark(int row, int col);
+
+    /**
+     * Gets the number of marks on the board.
+     * @return The number of occupied cells.
+     */
+    int getOccupiedCells();
+
+    /**
+     * Gets the Zobrist hash of the position. Equal positions on boards of the same size have equal hashes.
+     * @return The hash of the position.
+     */
+    long getHash();
+
+    /**
+     * Takes an immutable snapshot of the position, for work that outlives the turn or runs on other threads.
+     * @return The snapshot of the position.
+     */
+    BoardSnapshot snapshot();
+
+    /**
+     * Converts a position to a cell index, numbered row by row from 0.
+     * @param row The row index of the position.
+     * @param col The column index of the position.
+     * @return The cell index of the position.
+     */
+    default int cellIndex(int row, int col) {
+        return getGeometry().cellIndex(row, col);
+    }
+
+    /**
+     * Gets the row of a cell index.
+     * @param cell The cell index.
+     * @return The row index of the cell.
+     */
+    default int rowOf(int cell) {
+        return getGeometry().rowOf(cell);
+    }
+
+    /**
+     * Gets the column of a cell index.
+     * @param cell The cell index.
+     * @return The column index of the cell.
+     */
+    default int colOf(int cell) {
+        return getGeometry().colOf(cell);
+    }
+
+    /**
+     * Gets the next cell worth considering as a move, so players need not try every cell of a large board.
+     * A view that does not track candidates offers every empty cell.
+     * @param cell The cell index to start from.
+     * @return The smallest candidate cell index not below the given one, or Board.NO_MOVE if there is none.
+     */
+    default int nextCandidate(int cell) {
+        int cells = getSize() * getSize();
+        for (int next = Math.max(0, cell); next < cells; next++) {
+            if (getMark(rowOf(next), colOf(next)) == Mark.BLANK) {
+                return next;
+            }
+        }
+        return Board.NO_MOVE;
+    }
+
+    /**
+     * Checks if placing a mark on an empty position would complete a streak of at least winStreak marks,
+     * without placing it.
+     * @param mark The mark X or O.
+     * @param row The row index of the position.
+     * @param col The column index of the position.
+     * @return true if the mark would win there, false otherwise.
+     */
+    default boolean wouldComplete(Mark mark, int row, int col) {
+        BoardGeometry geometry = getGeometry();
+        int cell = geometry.cellIndex(row, col);
+        for (int direction = 0; direction < BoardGeometry.DIRECTIONS / 2; direction++) {
+            int count = 0;
+            for (int opposite = 0; opposite < BoardGeometry.DIRECTIONS; opposite += BoardGeometry.DIRECTIONS / 2) {
+                for (int next : geometry.getRay(cell, direction + opposite)) {
+                    if (getMark(geometry.rowOf(next), geometry.colOf(next)) != mark) {
+                        break;
+                    }
+                    count++;
+                }
+            }
+            if (count >= getWinStreak() - 1) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
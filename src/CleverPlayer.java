@@ -2,28 +2,37 @@
  * Represents a clever player in a two-player game.
  * The clever player tries to make the most strategic move by
  * selecting the first available blank position on the board.
- * Implements the Player interface for playing turns.
+ * Implements the Player interface for choosing moves.
  * @author Yinon Kedem
  * @see Player
- * @see Board
+ * @see BoardView
  * @see Mark
  */
 class CleverPlayer implements Player{
     /**
-     * Plays a turn by selecting the first available blank position on
-     * the board and placing the player's mark.
-     * @param board The game board.
+     * Chooses the first available blank position on the board.
+     * @param board A read-only view of the game board.
      * @param mark The mark associated with the player.
+     * @return The cell index of the first blank position, or Board.NO_MOVE if the board is full.
      */
     @Override
-    public void playTurn(Board board, Mark mark) {
+    public int chooseMove(BoardView board, Mark mark) {
         for (int row = 0; row < board.getSize(); row++){
             for (int col = 0; col < board.getSize(); col++){
                 if (board.getMark(row, col) == Mark.BLANK){
-                    board.putMark(mark, row, col);
-                    return;
+                    return board.cellIndex(row, col);
+                }
             }
         }
+        return Board.NO_MOVE;
+    }
+
+    /**
+     * The clever player's move depends only on the board.
+     * @return true.
+     */
+    @Override
+    public boolean isDeterministic() {
+        return true;
     }
-}
 }
\ No newline at end of file
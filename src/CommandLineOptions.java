@@ -0,0 +1,109 @@
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Holds the optional command-line arguments that may follow the positional tournament arguments.
+ * Options are written as "--name=value", or as "--name" for a flag without a value.
+ * @author Yinon Kedem
+ * @see Tournament
+ */
+class CommandLineOptions {
+    private final static String OPTION_PREFIX = "--";
+    private final Map<String, String> options = new HashMap<>();
+
+    /**
+     * Parses the options found in args starting at the given index.
+     * @param args The command-line arguments.
+     * @param firstOption The index of the first optional argument.
+     * @throws IllegalArgumentException if an argument is not of the form "--name[=value]".
+     */
+    CommandLineOptions(String[] args, int firstOption) {
+        for (int i = firstOption; i < args.length; i++) {
+            String arg = args[i];
+            if (!arg.startsWith(OPTION_PREFIX) || arg.length() == OPTION_PREFIX.length()) {
+                throw new IllegalArgumentException(Constants.invalidOptionString(arg));
+            }
+            int equals = arg.indexOf('=');
+            if (equals < 0) {
+                this.options.put(arg.substring(OPTION_PREFIX.length()), "");
+            }
+            else {
+                this.options.put(arg.substring(OPTION_PREFIX.length(), equals), arg.substring(equals + 1));
+            }
+        }
+    }
+
+    /**
+     * Checks if the given option or flag was supplied.
+     * @param name The name of the option, without the leading dashes.
+     * @return true if the option was supplied, false otherwise.
+     */
+    boolean has(String name) {
+        return this.options.containsKey(name);
+    }
+
+    /**
+     * Gets the value of a text option.
+     * @param name The name of the option, without the leading dashes.
+     * @param defaultValue The value to return if the option was not supplied.
+     * @return The value of the option.
+     */
+    String getString(String name, String defaultValue) {
+        return this.options.getOrDefault(name, defaultValue);
+    }
+
+    /**
+     * Gets the value of an integer option.
+     * @param name The name of the option, without the leading dashes.
+     * @param defaultValue The value to return if the option was not supplied.
+     * @return The value of the option.
+     * @throws IllegalArgumentException if the value is not an integer or is out of the range of an int.
+     */
+    int getInt(String name, int defaultValue) {
+        long value = getLong(name, defaultValue);
+        if (value < Integer.MIN_VALUE || value > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException(Constants.invalidOptionString(OPTION_PREFIX + name + "=" + value));
+        }
+        return (int) value;
+    }
+
+    /**
+     * Gets the value of a long integer option.
+     * @param name The name of the option, without the leading dashes.
+     * @param defaultValue The value to return if the option was not supplied.
+     * @return The value of the option.
+     * @throws IllegalArgumentException if the value is not an integer.
+     */
+    long getLong(String name, long defaultValue) {
+        String value = this.options.get(name);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Long.parseLong(value);
+        }
+        catch (NumberFormatException e) {
+            throw new IllegalArgumentException(Constants.invalidOptionString(OPTION_PREFIX + name + "=" + value));
+        }
+    }
+
+    /**
+     * Gets the value of a decimal option.
+     * @param name The name of the option, without the leading dashes.
+     * @param defaultValue The value to return if the option was not supplied.
+     * @return The value of the option.
+     * @throws IllegalArgumentException if the value is not a number.
+     */
+    double getDouble(String name, double defaultValue) {
+        String value = this.options.get(name);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Double.parseDouble(value);
+        }
+        catch (NumberFormatException e) {
+            throw new IllegalArgumentException(Constants.invalidOptionString(OPTION_PREFIX + name + "=" + value));
+        }
+    }
+}
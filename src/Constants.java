@@ -2,10 +2,10 @@ import java.util.*;
 public class Constants {
     public final static String UNKNOWN_PLAYER_NAME =
             "Choose a player, and start again.\nThe players: [human, " +
-            "clever, whatever, genius]";
+            "clever, whatever, genius, search, ntuple, scripted]";
 
     public final static String UNKNOWN_RENDERER_NAME = "Choose a renderer, and start again. \nPlease " +
-            "choose one of the following [console, none]";
+            "choose one of the following [console, ansi, none]";
 
     public final static String INVALID_COORDINATE = "Invalid mark position, " +
             "please choose a different position.\n" +
@@ -14,6 +14,180 @@ public class Constants {
     public final static String OCCUPIED_COORDINATE = "Mark position is already occupied.\n" +
             "Invalid coordinates, type again: ";
 
+    public final static String EMPTY_SCRIPT = "The script holds no coordinates of an empty cell, " +
+            "choose a different script with --script and start again.";
+
+    public final static String CHECKPOINT_MISMATCH = "The checkpoint was written by a tournament " +
+            "with different arguments, start again without --resume or with the same arguments.";
+
+    public final static String SOLVER_CHECKPOINT_MISMATCH = "The checkpoint was written for a different " +
+            "board, start again without --resume or with the same board.";
+
+    public final static String CORRUPT_PROOF_TABLE = "Corrupt proof table";
+
+    public final static String SOLVER_ARGUMENTS_MISSING = "Give the board size and the win streak, " +
+            "then the options, and start again.";
+
+    public final static String PIPELINE_ARGUMENTS_MISSING = "Give the input file, the output file and the engine, " +
+            "then optionally the number of threads, and start again.";
+
+    /**
+     * Use this method to generate the text printed when a checkpoint cannot be written or read.
+     *
+     * @param reason the error message of the failed operation.
+     * @return String to be printed to the user.
+     */
+    public static String checkpointFailedString(String reason) {
+        return "Checkpoint failed: " + reason;
+    }
+
+    /**
+     * Use this method to generate the text printed when the book of a solved board cannot be written or read.
+     *
+     * @param reason the error message of the failed operation.
+     * @return String to be printed to the user.
+     */
+    public static String bookFailedString(String reason) {
+        return "Book failed: " + reason;
+    }
+
+    /**
+     * Use this method to generate the reason a file is not read as a book.
+     *
+     * @param path the file.
+     * @return String to be printed to the user.
+     */
+    public static String notABookString(String path) {
+        return "Not a book file: " + path;
+    }
+
+    /**
+     * Use this method to generate the reason a book file is not read as the book of its board.
+     *
+     * @param path the file.
+     * @return String to be printed to the user.
+     */
+    public static String corruptBookString(String path) {
+        return "Corrupt book file: " + path;
+    }
+
+    /**
+     * Use this method to generate the text printed when the n-tuple weights of a board cannot be read.
+     *
+     * @param reason the error message of the failed operation.
+     * @return String to be printed to the user.
+     */
+    public static String weightsFailedString(String reason) {
+        return "Weights failed: " + reason;
+    }
+
+    /**
+     * Use this method to generate the reason a file is not read as an n-tuple weight file.
+     *
+     * @param path the file.
+     * @return String to be printed to the user.
+     */
+    public static String notWeightsString(String path) {
+        return "Not an n-tuple weight file: " + path;
+    }
+
+    /**
+     * Use this method to generate the reason a weight file is not read as the weights of its board.
+     *
+     * @param path the file.
+     * @return String to be printed to the user.
+     */
+    public static String corruptWeightsString(String path) {
+        return "Corrupt n-tuple weight file: " + path;
+    }
+
+    /**
+     * Use this method to generate the text printed when the script of the scripted player cannot be read.
+     *
+     * @param reason the error message of the failed operation.
+     * @return String to be printed to the user.
+     */
+    public static String scriptFailedString(String reason) {
+        return "Script failed: " + reason;
+    }
+
+    /**
+     * Use this method to generate the text printed when the benchmark results cannot be written.
+     *
+     * @param reason the error message of the failed operation.
+     * @return String to be printed to the user.
+     */
+    public static String benchmarkFailedString(String reason) {
+        return "Benchmark failed: " + reason;
+    }
+
+    /**
+     * Use this method to generate the text printed when the positions of the evaluation pipeline
+     * cannot be read or their results written.
+     *
+     * @param reason the error message of the failed operation.
+     * @return String to be printed to the user.
+     */
+    public static String pipelineFailedString(String reason) {
+        return "Evaluation failed: " + reason;
+    }
+
+    /**
+     * Use this method to generate the text of the error raised for a malformed position notation.
+     *
+     * @param position the notation as it was read.
+     * @return String describing the error.
+     */
+    public static String invalidPositionString(String position) {
+        return "Invalid position: " + position;
+    }
+
+    public final static String WORKER_EXITED = "the worker process exited.";
+
+    public final static String WORKER_TIMED_OUT = "the worker process did not answer in time.";
+
+    /**
+     * Use this method to generate the text printed when the worker processes of a tournament kept
+     * failing and some rounds could not be played.
+     *
+     * @param reason the error message of the last failure.
+     * @return String to be printed to the user.
+     */
+    public static String workerFailedString(String reason) {
+        return "Worker process failed: " + reason;
+    }
+
+    /**
+     * Use this method to generate the text of the error raised for a malformed result of a worker process.
+     *
+     * @param result the result line as it was read.
+     * @return String describing the error.
+     */
+    public static String invalidWorkerResultString(String result) {
+        return "Invalid worker result: " + result;
+    }
+
+    /**
+     * Use this method to generate the text of the error raised when a player chooses an illegal move.
+     *
+     * @param playerName the type of the player.
+     * @param move the cell index the player returned.
+     * @return String describing the error.
+     */
+    public static String illegalMoveString(String playerName, int move) {
+        return "Illegal move by " + playerName + ": cell " + move + " is off the board or occupied.";
+    }
+
+    /**
+     * Use this method to generate the text printed for an unrecognised optional argument.
+     *
+     * @param option the argument as it was typed.
+     * @return String to be printed to the user.
+     */
+    public static String invalidOptionString(String option) {
+        return "Invalid option: " + option + ", start again.";
+    }
+
     /**
      * Use this method to generate the text that HumanPlayer should send
      *
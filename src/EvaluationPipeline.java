@@ -0,0 +1,322 @@
+import java.io.BufferedReader;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Evaluates a stream of positions offline, one position per line in PositionNotation, with a chosen engine.
+ * The pipeline has three stages. The reader parses nothing itself: it reads the input through a large
+ * buffer and cuts it into chunks of lines. A pool of workers evaluates the chunks, each worker with an
+ * engine of its own. The writer writes the results of the chunks in input order, one CSV line per
+ * position holding the position, the best move and the score for the side to move.
+ * The chunks travel from the reader to the writer through a bounded queue, so the reader waits while
+ * the writer falls behind; at most a few chunks per worker are held at once, however long the input.
+ * Usage: java EvaluationPipeline input output engine [threads], where input and output may be "-" for
+ * the standard streams and engine is search, ntuple or pattern.
+ * @author Yinon Kedem
+ * @see PositionNotation
+ * @see AlphaBetaSearch
+ * @see NTupleNetwork
+ * @see PatternEvaluator
+ */
+class EvaluationPipeline {
+    /**
+     * The engine that runs an alpha-beta search; scores are those of the search.
+     */
+    final static String SEARCH = "search";
+    /**
+     * The engine that plays like the n-tuple player; scores are the network's value in thousandths.
+     */
+    final static String NTUPLE = "ntuple";
+    /**
+     * The engine that takes the move the pattern evaluator scores best one move ahead; scores are static.
+     */
+    final static String PATTERN = "pattern";
+    /**
+     * The default number of positions in a chunk.
+     */
+    final static int DEFAULT_CHUNK_SIZE = 4096;
+    private final static int READ_BUFFER_CHARS = 1 << 20;
+    // chunks queued between the reader and the writer, per worker
+    private final static int CHUNKS_PER_WORKER = 2;
+    private final static int POSITIONAL_ARGUMENTS = 3;
+    private final static String STANDARD_STREAM = "-";
+    private final static String CSV_HEADER = "position,row,col,score\n";
+    // marks the end of the input in the queue of chunks
+    private final static Future<String> END = CompletableFuture.completedFuture(null);
+
+    private final String engine;
+    private final int threads;
+    private final int chunkSize;
+    private final ThreadLocal<Engine> engines = ThreadLocal.withInitial(Engine::new);
+    private volatile boolean failed = false;
+
+    /**
+     * Constructs a pipeline.
+     * @param engine The engine: search, ntuple or pattern.
+     * @param threads The number of workers.
+     * @param chunkSize The number of positions in a chunk.
+     * @throws IllegalArgumentException if the engine is unknown.
+     */
+    EvaluationPipeline(String engine, int threads, int chunkSize) {
+        this.engine = engine.toLowerCase();
+        if (!this.engine.equals(SEARCH) && !this.engine.equals(NTUPLE) && !this.engine.equals(PATTERN)) {
+            throw new IllegalArgumentException(Constants.invalidOptionString(engine));
+        }
+        this.threads = Math.max(1, threads);
+        this.chunkSize = Math.max(1, chunkSize);
+    }
+
+    /**
+     * Entry point: evaluates the positions of the input file and writes the results to the output file,
+     * then prints the throughput to the error stream.
+     * @param args The input file, the output file, the engine and optionally the number of threads,
+     *             by default the number of processors.
+     */
+    public static void main(String[] args) {
+        if (args.length < POSITIONAL_ARGUMENTS) {
+            System.err.println(Constants.PIPELINE_ARGUMENTS_MISSING);
+            return;
+        }
+        int threads = Runtime.getRuntime().availableProcessors();
+        if (args.length > POSITIONAL_ARGUMENTS) {
+            try {
+                threads = Integer.parseInt(args[POSITIONAL_ARGUMENTS]);
+            }
+            catch (NumberFormatException e) {
+                threads = 0;
+            }
+            if (threads < 1) {
+                System.err.println(Constants.invalidOptionString(args[POSITIONAL_ARGUMENTS]));
+                return;
+            }
+        }
+        try (InputStream input = args[0].equals(STANDARD_STREAM) ? System.in : new FileInputStream(args[0]);
+             OutputStream output = args[1].equals(STANDARD_STREAM) ? System.out : new FileOutputStream(args[1])) {
+            EvaluationPipeline pipeline = new EvaluationPipeline(args[2], threads, DEFAULT_CHUNK_SIZE);
+            long start = System.nanoTime();
+            long positions = pipeline.run(input, output);
+            double seconds = (System.nanoTime() - start) / 1e9;
+            System.err.println("Positions: " + positions + " in " + String.format("%.3f", seconds) + " s on "
+                    + threads + " threads\n" +
+                    "Positions per second: " + (seconds > 0 ? Math.round(positions / seconds) : 0));
+        }
+        catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+        }
+        catch (IOException e) {
+            System.err.println(Constants.pipelineFailedString(e.getMessage()));
+        }
+    }
+
+    /**
+     * Evaluates every position of the input, skipping blank lines, and writes a CSV header and one line
+     * per position to the output, in input order. The output is flushed but not closed.
+     * @param input The positions, one per line.
+     * @param output The stream the results are written to.
+     * @return The number of positions evaluated.
+     * @throws IOException if the input cannot be read or the output written.
+     * @throws IllegalArgumentException if a line is not a valid position.
+     */
+    long run(InputStream input, OutputStream output) throws IOException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(input, StandardCharsets.US_ASCII),
+                READ_BUFFER_CHARS);
+        BlockingQueue<Future<String>> chunks = new ArrayBlockingQueue<>(CHUNKS_PER_WORKER * this.threads);
+        ExecutorService workers = Executors.newFixedThreadPool(this.threads);
+        ExecutorService writer = Executors.newSingleThreadExecutor();
+        this.failed = false;
+        long positions = 0;
+        try {
+            Future<Void> written = writer.submit(() -> write(chunks, output));
+            String[] chunk = new String[this.chunkSize];
+            int count = 0;
+            String line;
+            while (!this.failed && (line = reader.readLine()) != null) {
+                if (line.isBlank()) {
+                    continue;
+                }
+                chunk[count++] = line;
+                if (count == chunk.length) {
+                    chunks.put(workers.submit(new ChunkTask(chunk, count)));
+                    positions += count;
+                    chunk = new String[this.chunkSize];
+                    count = 0;
+                }
+            }
+            if (count > 0 && !this.failed) {
+                chunks.put(workers.submit(new ChunkTask(chunk, count)));
+                positions += count;
+            }
+            chunks.put(END);
+            written.get();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException(e);
+        }
+        catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+        finally {
+            workers.shutdownNow();
+            writer.shutdownNow();
+        }
+        return positions;
+    }
+
+    /**
+     * The writer stage: writes the results of the chunks in the order they were queued, until the end
+     * of the input. After a failure the remaining chunks are cancelled, not written, so the reader
+     * never waits on a full queue.
+     * @param chunks The queue of chunks.
+     * @param output The stream the results are written to.
+     * @return Nothing.
+     * @throws Exception the first failure of a worker or of the output.
+     */
+    private Void write(BlockingQueue<Future<String>> chunks, OutputStream output) throws Exception {
+        Exception failure = null;
+        try {
+            output.write(CSV_HEADER.getBytes(StandardCharsets.US_ASCII));
+        }
+        catch (IOException e) {
+            failure = e;
+            this.failed = true;
+        }
+        for (Future<String> chunk = chunks.take(); chunk != END; chunk = chunks.take()) {
+            if (failure != null) {
+                chunk.cancel(true);
+                continue;
+            }
+            try {
+                output.write(chunk.get().getBytes(StandardCharsets.US_ASCII));
+            }
+            catch (ExecutionException e) {
+                failure = e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+                this.failed = true;
+            }
+            catch (IOException e) {
+                failure = e;
+                this.failed = true;
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+        output.flush();
+        return null;
+    }
+
+    /**
+     * Evaluates the positions of a chunk with the engine of the worker thread.
+     */
+    private final class ChunkTask implements Callable<String> {
+        private final String[] lines;
+        private final int count;
+
+        private ChunkTask(String[] lines, int count) {
+            this.lines = lines;
+            this.count = count;
+        }
+
+        @Override
+        public String call() {
+            Engine engine = engines.get();
+            StringBuilder results = new StringBuilder(this.count * 64);
+            for (int i = 0; i < this.count; i++) {
+                engine.evaluate(PositionNotation.parse(this.lines[i].trim()), results);
+            }
+            return results.toString();
+        }
+    }
+
+    /**
+     * The engine of one worker thread, with the boards and searches it reuses from position to position.
+     */
+    private final class Engine {
+        private final AlphaBetaSearch search = new AlphaBetaSearch(TranspositionTable.shared(),
+                AlphaBetaSearch.DEFAULT_MAX_DEPTH, AlphaBetaSearch.DEFAULT_NODE_LIMIT);
+        private final PatternEvaluator evaluator = new PatternEvaluator();
+        private Board scratch = null;
+        private NTupleNetwork network = null;
+
+        /**
+         * Evaluates a position and appends its result line.
+         * @param position The position.
+         * @param results The buffer the line is appended to.
+         */
+        private void evaluate(PositionNotation position, StringBuilder results) {
+            BoardSnapshot board = position.getBoard();
+            Mark mark = position.getSideToMove();
+            if (this.scratch == null || this.scratch.getGeometry() != board.getGeometry()) {
+                this.scratch = new Board(board.getSize(), board.getWinStreak());
+            }
+            this.scratch.setPosition(board);
+            int move;
+            int score;
+            if (engine.equals(SEARCH)) {
+                move = this.search.findBestMove(this.scratch, mark);
+                score = this.search.getLastScore();
+            }
+            else if (engine.equals(NTUPLE)) {
+                if (this.network == null || this.network.getSize() != board.getSize()
+                        || this.network.getWinStreak() != board.getWinStreak()) {
+                    this.network = NTupleNetwork.shared(board.getSize(), board.getWinStreak());
+                }
+                move = NTuplePlayer.bestMove(this.network, this.scratch, mark);
+                score = Math.round(this.network.value(this.scratch, mark) * 1000);
+            }
+            else {
+                this.evaluator.reset(this.scratch);
+                score = this.evaluator.evaluate(mark);
+                move = bestPatternMove(mark);
+            }
+            PositionNotation.format(board, mark, results);
+            results.append(',').append(move == Board.NO_MOVE ? -1 : board.rowOf(move))
+                    .append(',').append(move == Board.NO_MOVE ? -1 : board.colOf(move))
+                    .append(',').append(score).append('\n');
+        }
+
+        /**
+         * Finds the candidate move that wins at once, else the one the pattern evaluator scores best
+         * after it is played.
+         * @param mark The mark of the side to move.
+         * @return The cell index of the move, or Board.NO_MOVE if the board is full.
+         */
+        private int bestPatternMove(Mark mark) {
+            int bestMove = Board.NO_MOVE;
+            int bestScore = Integer.MIN_VALUE;
+            for (int cell = this.scratch.nextCandidate(0); cell != Board.NO_MOVE;
+                 cell = this.scratch.nextCandidate(cell + 1)) {
+                if (this.scratch.wouldComplete(mark, this.scratch.rowOf(cell), this.scratch.colOf(cell))) {
+                    return cell;
+                }
+                this.evaluator.place(mark, cell);
+                int score = this.evaluator.evaluate(mark);
+                this.evaluator.remove(mark, cell);
+                if (score > bestScore) {
+                    bestScore = score;
+                    bestMove = cell;
+                }
+            }
+            return bestMove;
+        }
+    }
+}
@@ -2,10 +2,22 @@
  * Represents a two-player game with a game board, players, and a renderer.
  * The game can be played until there is a winner, a draw, or the game is manually stopped.
  * Implements the game logic, including checking for a win streak and a draw.
+ * Players choose their moves from a read-only view of the board; the game validates and places them.
+ * Every game start, move, win and draw is published to a GameEventBus; the renderer is one of its observers.
+ * Games and turns are also recorded as Java Flight Recorder events when those are enabled.
+ * A game may be run any number of times; every run starts from an empty board and reuses the storage
+ * of the previous one.
+ * A game may be played under a time control, in which case every move is made on the players' clocks.
  * @author Yinon Kedem
  * @see Board
  * @see Player
+ * @see BoardView
  * @see Renderer
+ * @see GameEventBus
+ * @see GameFlightEvent
+ * @see MoveFlightEvent
+ * @see TimeControl
+ * @see GameClock
  */
 class Game{
 
@@ -13,10 +25,13 @@ class Game{
     private final static int MINIMUM_WIN_STREAK = 2;
     private int requireStreakToWin;
     private int numberOfCellsAreOccupied = 0;
+    private int movesPublished = 0;
+    private Mark result = Mark.BLANK;
     private final Board board;
     private final Player player1;
     private final Player player2;
-    private final Renderer rendererOfTheGame;
+    private final GameEventBus events;
+    private final GameClock clock;
 
 
     /**
@@ -28,9 +43,10 @@ class Game{
     Game(Player playerX, Player playerO, Renderer renderer){
         this.player1 = playerX;
         this.player2 = playerO;
-        this.rendererOfTheGame = renderer;
-        this.board = new Board(Board.DEFUALT_BOARD_SIZE);
+        this.events = GameEventBus.rendering(renderer);
+        this.clock = null;
         this.requireStreakToWin = DEFAULT_WIN_STREAK;
+        this.board = new Board(Board.DEFUALT_BOARD_SIZE, this.requireStreakToWin);
     }
     /**
      * Constructor for the game with custom board size and win streak.
@@ -41,14 +57,49 @@ class Game{
      * @param renderer The renderer for displaying the game.
      */
     Game(Player playerX, Player playerO, int size, int winStreak, Renderer renderer){
+        this(playerX, playerO, size, winStreak, GameEventBus.rendering(renderer));
+    }
+    /**
+     * Constructor for the game with custom board size and win streak, publishing to the given event bus.
+     * The bus may be shared by consecutive games played on the same thread.
+     * @param playerX The first player (X).
+     * @param playerO The second player (O).
+     * @param size The size of the game board.
+     * @param winStreak The required win streak to win the game.
+     * @param events The bus the game events are published to.
+     */
+    Game(Player playerX, Player playerO, int size, int winStreak, GameEventBus events){
+        this(playerX, playerO, size, winStreak, events, null);
+    }
+    /**
+     * Constructor for the game with custom board size and win streak, played under a time control.
+     * @param playerX The first player (X).
+     * @param playerO The second player (O).
+     * @param size The size of the game board.
+     * @param winStreak The required win streak to win the game.
+     * @param events The bus the game events are published to.
+     * @param timeControl The time control of every run, or null for an untimed game.
+     */
+    Game(Player playerX, Player playerO, int size, int winStreak, GameEventBus events, TimeControl timeControl){
         this.player1 = playerX;
         this.player2 = playerO;
-        this.rendererOfTheGame = renderer;
-        this.board = new Board(size);
-        this.requireStreakToWin = size;
+        this.events = events;
+        this.clock = timeControl == null ? null : new GameClock(timeControl);
+        this.requireStreakToWin = winStreakOf(size, winStreak);
+        this.board = new Board(size, this.requireStreakToWin);
+    }
+    /**
+     * Gets the win streak a game is played with: the requested one if it is longer than the minimum
+     * and shorter than the board, or else the size of the board.
+     * @param size The size of the game board.
+     * @param winStreak The requested win streak.
+     * @return The win streak of the game.
+     */
+    static int winStreakOf(int size, int winStreak){
         if (winStreak < size && winStreak > MINIMUM_WIN_STREAK){
-            this.requireStreakToWin = winStreak;
+            return winStreak;
         }
+        return size;
     }
     /**
      * Gets the required win streak to win the game.
@@ -64,19 +115,63 @@ class Game{
     int getBoardSize(){
         return this.board.getSize();
     }
+    /**
+     * Gets the number of marks placed during the game.
+     * @return The number of moves played so far.
+     */
+    int getMoveCount(){
+        return this.board.getOccupiedCells();
+    }
+    /**
+     * Gets the result of the game once it was run.
+     * @return The mark of the winning player, or BLANK for a draw or a game not yet run.
+     */
+    Mark getResult(){
+        return this.result;
+    }
+    /**
+     * Gets the clock of a timed game, for the time left and the timeouts of the last run.
+     * @return The clock, or null if the game is untimed.
+     */
+    GameClock getClock(){
+        return this.clock;
+    }
+    /**
+     * Clears the board and the state of the last run, so the game can be run again.
+     */
+    void reset(){
+        this.board.reset();
+        this.numberOfCellsAreOccupied = 0;
+        this.movesPublished = 0;
+        this.result = Mark.BLANK;
+        if (this.clock != null){
+            this.clock.start();
+        }
+    }
     /**
      * Runs the game until there is a winner, a draw, or the game is manually stopped.
+     * A game that was run before is reset first. In a timed game that forfeits on time, a player whose
+     * clock runs out loses.
      * @return The mark of the winning player or BLANK for a draw.
      */
     Mark run(){
+        if (this.board.getOccupiedCells() > 0 || this.numberOfCellsAreOccupied > 0){
+            reset();
+        }
+        else if (this.clock != null){
+            this.clock.start();
+        }
         Mark markToReturn = Mark.BLANK;
-        boolean needToPrint = false;
+        GameFlightEvent flightEvent = GameFlightEvent.start();
+        this.events.publishGameStarted(this.getBoardSize(), this.getWinStreak());
         while (true) {
             if (checkDraw()) {
                 break;
             }
-            player1.playTurn(board, Mark.X);
-            this.rendererOfTheGame.renderBoard(this.board);
+            if (!playTurn(player1, Mark.X)) {
+                markToReturn = Mark.O;
+                break;
+            }
             this.numberOfCellsAreOccupied++;
             if (checkWinStreak(Mark.X) != Mark.BLANK) {
                 markToReturn = Mark.X;
@@ -85,8 +180,10 @@ class Game{
             if (checkDraw()) {
                 break;
             }
-            player2.playTurn(board, Mark.O);
-            this.rendererOfTheGame.renderBoard(this.board);
+            if (!playTurn(player2, Mark.O)) {
+                markToReturn = Mark.X;
+                break;
+            }
             this.numberOfCellsAreOccupied++;
             if (checkWinStreak(Mark.O) != Mark.BLANK) {
                 markToReturn = Mark.O;
@@ -96,9 +193,70 @@ class Game{
                 break;
             }
         }
-//        this.rendererOfTheGame.renderBoard(this.board);
+        this.events.publishGameOver(this.getBoardSize(), this.getWinStreak(), markToReturn,
+                this.board.getOccupiedCells());
+        this.result = markToReturn;
+        if (flightEvent != null && flightEvent.shouldCommit()) {
+            flightEvent.boardSize = this.getBoardSize();
+            flightEvent.winStreak = this.getWinStreak();
+            flightEvent.playerX = this.player1.getClass().getSimpleName();
+            flightEvent.playerO = this.player2.getClass().getSimpleName();
+            flightEvent.winner = markToReturn.name();
+            flightEvent.moves = this.board.getOccupiedCells();
+            flightEvent.commit();
+        }
         return markToReturn;
     }
+    /**
+     * Asks a player for its move through a read-only view of the board, validates the move,
+     * places the mark and publishes it. A player may pass by returning Board.NO_MOVE.
+     * In a timed game the move is made on the player's clock.
+     * @param player The player whose turn it is.
+     * @param mark The mark of the player.
+     * @return true if the turn was played, false if the player lost on time.
+     * @throws IllegalStateException if the player returned a cell that is off the board or occupied.
+     */
+    private boolean playTurn(Player player, Mark mark) {
+        MoveFlightEvent flightEvent = MoveFlightEvent.start();
+        int occupiedBefore = this.board.getOccupiedCells();
+        int chosen = this.clock == null ? player.chooseMove(this.board, mark)
+                : this.clock.chooseMove(player, this.board, mark);
+        if (chosen == GameClock.OUT_OF_TIME) {
+            return false;
+        }
+        if (chosen != Board.NO_MOVE) {
+            if (chosen < 0 || chosen >= this.getBoardSize() * this.getBoardSize()
+                    || !this.board.putMark(mark, this.board.rowOf(chosen), this.board.colOf(chosen))) {
+                throw new IllegalStateException(Constants.illegalMoveString(player.getClass().getSimpleName(),
+                        chosen));
+            }
+        }
+        publishMove(mark);
+        if (flightEvent != null && flightEvent.shouldCommit()) {
+            boolean placed = this.board.getOccupiedCells() > occupiedBefore;
+            int move = this.board.getLastMove();
+            flightEvent.boardSize = this.getBoardSize();
+            flightEvent.winStreak = this.getWinStreak();
+            flightEvent.player = player.getClass().getSimpleName();
+            flightEvent.mark = mark.name();
+            flightEvent.row = placed ? this.board.rowOf(move) : -1;
+            flightEvent.col = placed ? this.board.colOf(move) : -1;
+            flightEvent.commit();
+        }
+        return true;
+    }
+    /**
+     * Publishes the move just played, if the player placed a mark during its turn.
+     * @param mark The mark of the player who just played.
+     */
+    private void publishMove(Mark mark) {
+        if (this.board.getOccupiedCells() > this.movesPublished) {
+            int move = this.board.getLastMove();
+            this.movesPublished = this.board.getOccupiedCells();
+            this.events.publishMove(this.getBoardSize(), this.getWinStreak(), mark,
+                    this.board.rowOf(move), this.board.colOf(move), this.movesPublished);
+        }
+    }
     /**
      * Checks if the game is a draw.
      * @return true if the game is a draw, false otherwise.
@@ -108,86 +266,21 @@ class Game{
                 this.getBoardSize()*this.getBoardSize();
     }
     /**
-     * Checks for a win streak on the game board for a given mark.
+     * Checks if the last mark placed on the board by the given mark won the game.
+     * Only the lines through the last move can hold a new streak, so only they are read.
      * @param markToCheck The mark to check for a win streak.
      * @return The winning mark or BLANK if there is no winner.
      */
     private Mark checkWinStreak(Mark markToCheck) {
-        for (int row = 0; row < this.getBoardSize(); row++){
-            for (int col = 0; col < this.getBoardSize(); col++){
-                if (board.getMark(row, col) == markToCheck){
-                     if (findMaxStreak(row, col, this.board, markToCheck) == getWinStreak()){
-                         return markToCheck;
-                    }
-                }
-            }
-        }
-        return Mark.BLANK;
-    }
-
-    /**
-     * Finds the maximum streak for a given position, mark, and direction on the game board.
-     * Uses recursion and backtracking for each direction.
-     * @param row The row index of the starting position.
-     * @param col The column index of the starting position.
-     * @param board The game board.
-     * @param markToCheck The mark to check for a streak.
-     * @return The size of the maximum streak in the given direction.
-     */
-    private int findMaxStreak(int row, int col, Board board, Mark markToCheck) {
-        int curSizeStreak = 1;
-        // check Cols streak
-        if (validCell(row, col+1) && board.getMark(row, col+1) == markToCheck){
-            curSizeStreak += findMaxStreak(row, col+1, board, markToCheck, 0, 1);
-            if (curSizeStreak == this.getWinStreak()){
-                return curSizeStreak;
-            }
-            curSizeStreak = 1;
-        }
-        // check Rows streak
-        if (validCell(row+1, col) && board.getMark(row+1, col) == markToCheck){
-            curSizeStreak += findMaxStreak(row+1, col, board, markToCheck, 1, 0);
-            if (curSizeStreak == this.getWinStreak()){
-                return curSizeStreak;
-            }
-            curSizeStreak = 1;
-        }
-        // check right Diagonal streak
-        if (validCell(row+1, col+1) && board.getMark(row+1, col+1) == markToCheck){
-            curSizeStreak += findMaxStreak(row+1, col+1, board, markToCheck, 1, 1);
-            if (curSizeStreak == this.getWinStreak()){
-                return curSizeStreak;
-            }
-            curSizeStreak = 1;
-        }
-        // check left Diagonal streak
-        if (validCell(row+1, col-1) && board.getMark(row+1, col-1) == markToCheck){
-            curSizeStreak += findMaxStreak(row+1, col-1, board, markToCheck, 1, -1);
-            if (curSizeStreak == this.getWinStreak()){
-                return curSizeStreak;
-            }
-            curSizeStreak = 1;
+        int move = this.board.getLastMove();
+        if (move == Board.NO_MOVE) {
+            return Mark.BLANK;
         }
-        return curSizeStreak;
-    }
-
-
-    // check Cols streak
-    private int findMaxStreak(int row, int col, Board board, Mark markToCheck, int newRow, int newCol) {
-        int curSizeStreak = 1;
-        if (validCell(row+newRow, col+newCol) && board.getMark(row+newRow, col+newCol) == markToCheck){
-            curSizeStreak += findMaxStreak(row+newRow, col+newCol, board, markToCheck, newRow, newCol);
+        int row = this.board.rowOf(move);
+        int col = this.board.colOf(move);
+        if (this.board.getMark(row, col) == markToCheck && this.board.completesStreak(row, col)) {
+            return markToCheck;
         }
-        return curSizeStreak;
-    }
-
-    /**
-     * Checks if a given cell position is valid within the bounds of the game board.
-     * @param row The row index of the cell.
-     * @param col The column index of the cell.
-     * @return true if the cell position is valid, false otherwise.
-     */
-    private boolean validCell(int row, int col) {
-        return col >= 0 && col <= this.getBoardSize() - 1 && row >= 0 && row <= this.getBoardSize() - 1;
+        return Mark.BLANK;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,179 @@
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * The chess clock of a timed game, measured with System.nanoTime.
+ * A timed player chooses its move on a daemon mover thread, from a snapshot of the board, while the
+ * game thread watches the player's clock: it waits for the move no longer than the time left, and when
+ * the clock runs out it interrupts the mover and applies the policy of the time control. A player that
+ * hangs, such as a human player blocked on the keyboard, therefore never holds up the game; a search
+ * player stops at the interrupt. A player that ignores the interrupt keeps its mover thread and is not
+ * asked for another move until that call returns: its following turns wait for it on its clock.
+ * @author Yinon Kedem
+ * @see TimeControl
+ * @see Game
+ * @see Player
+ */
+final class GameClock {
+    /**
+     * Returned instead of a move when the side to move lost on time.
+     */
+    final static int OUT_OF_TIME = Integer.MIN_VALUE;
+    private final static String MOVER_THREAD_NAME = "player-move";
+    private final static ExecutorService MOVERS = Executors.newCachedThreadPool(task -> {
+        Thread thread = new Thread(task, MOVER_THREAD_NAME);
+        thread.setDaemon(true);
+        return thread;
+    });
+    // the calls that outlived their turn, by player, so a player is never asked twice at once
+    private final static Map<Player, Future<Integer>> OVERDUE =
+            Collections.synchronizedMap(new IdentityHashMap<>());
+
+    private final TimeControl timeControl;
+    private final long[] remainingNanos = new long[2];
+    private int timeouts = 0;
+
+    /**
+     * Constructs a clock.
+     * @param timeControl The time control of the game.
+     */
+    GameClock(TimeControl timeControl) {
+        this.timeControl = timeControl;
+        start();
+    }
+
+    /**
+     * Sets both sides to the full budget, at the start of a game.
+     */
+    void start() {
+        this.remainingNanos[0] = this.timeControl.getBudgetNanos();
+        this.remainingNanos[1] = this.timeControl.getBudgetNanos();
+        this.timeouts = 0;
+    }
+
+    /**
+     * Gets the thinking time a side has left.
+     * @param mark The side X or O.
+     * @return The time left, in nanoseconds; 0 once the side ran out of time.
+     */
+    long getRemainingNanos(Mark mark) {
+        return this.remainingNanos[side(mark)];
+    }
+
+    /**
+     * Gets the number of turns in which a side ran out of time since the game started.
+     * @return The number of timeouts.
+     */
+    int getTimeouts() {
+        return this.timeouts;
+    }
+
+    /**
+     * Asks a player for its move on its clock. The player is shown a snapshot of the board, so a call
+     * that outlives its turn never sees the board change.
+     * @param player The player whose turn it is.
+     * @param board The game board.
+     * @param mark The mark of the player.
+     * @return The move of the player, the fallback move if its clock ran out, or OUT_OF_TIME if it lost on time.
+     * @throws IllegalStateException if the game thread was interrupted while waiting.
+     */
+    int chooseMove(Player player, Board board, Mark mark) {
+        int side = side(mark);
+        long start = System.nanoTime();
+        Integer move = null;
+        try {
+            if (awaitOverdue(player, start + this.remainingNanos[side])) {
+                move = awaitMove(player, board.snapshot(), mark, start + this.remainingNanos[side]);
+            }
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+        this.remainingNanos[side] -= System.nanoTime() - start;
+        if (move == null || this.remainingNanos[side] < 0) {
+            this.timeouts++;
+            this.remainingNanos[side] = 0;
+            if (this.timeControl.getPolicy() == TimeControl.Policy.FORFEIT) {
+                return OUT_OF_TIME;
+            }
+            move = board.nextCandidate(0);
+        }
+        this.remainingNanos[side] += this.timeControl.getIncrementNanos();
+        return move;
+    }
+
+    /**
+     * Waits for the call of an earlier turn that outlived its turn, if the player has one.
+     * @param player The player whose turn it is.
+     * @param deadline The System.nanoTime at which the player's clock runs out.
+     * @return true if the player is free to be asked, false if its clock ran out first.
+     * @throws InterruptedException if the game thread was interrupted while waiting.
+     */
+    private static boolean awaitOverdue(Player player, long deadline) throws InterruptedException {
+        Future<Integer> overdue = OVERDUE.get(player);
+        if (overdue == null) {
+            return true;
+        }
+        try {
+            overdue.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+        }
+        catch (TimeoutException e) {
+            return false;
+        }
+        catch (ExecutionException e) {
+            // the move is stale anyway, how it ended does not matter
+        }
+        OVERDUE.remove(player);
+        return true;
+    }
+
+    /**
+     * Asks a player for its move on a mover and waits until the player's clock runs out, then interrupts the mover.
+     * @param player The player whose turn it is.
+     * @param snapshot The position the player is shown.
+     * @param mark The mark of the player.
+     * @param deadline The System.nanoTime at which the player's clock runs out.
+     * @return The move, or null if the clock ran out first.
+     * @throws InterruptedException if the game thread was interrupted while waiting.
+     */
+    private static Integer awaitMove(Player player, BoardSnapshot snapshot, Mark mark, long deadline)
+            throws InterruptedException {
+        // completes when the player returns, unlike the cancelled task, which is done at once
+        CompletableFuture<Integer> move = new CompletableFuture<>();
+        Future<?> call = MOVERS.submit(() -> {
+            try {
+                move.complete(player.chooseMove(snapshot, mark));
+            }
+            catch (RuntimeException | Error e) {
+                move.completeExceptionally(e);
+            }
+        });
+        try {
+            return move.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+        }
+        catch (TimeoutException e) {
+            call.cancel(true);
+            OVERDUE.put(player, move);
+            return null;
+        }
+        catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    private static int side(Mark mark) {
+        return mark == Mark.X ? 0 : 1;
+    }
+}
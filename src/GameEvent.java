@@ -0,0 +1,105 @@
+/**
+ * A mutable slot of the game event ring buffer.
+ * Slots are allocated once by the GameEventBus and overwritten for every published event,
+ * so observers must copy any value they want to keep after onEvent returns.
+ * @author Yinon Kedem
+ * @see GameEventBus
+ * @see GameObserver
+ */
+final class GameEvent {
+    private GameEventType type = GameEventType.GAME_STARTED;
+    private long gameNumber;
+    private int boardSize;
+    private int winStreak;
+    private Mark mark = Mark.BLANK;
+    private int row = -1;
+    private int col = -1;
+    private int moveNumber;
+
+    /**
+     * Overwrites the slot with a new event.
+     * @param type The kind of event.
+     * @param gameNumber The number of the game the event belongs to, counted from 1.
+     * @param boardSize The size of the game board.
+     * @param winStreak The win streak of the game.
+     * @param mark The mark that moved or won, or BLANK.
+     * @param row The row of the move, or -1.
+     * @param col The column of the move, or -1.
+     * @param moveNumber The number of marks on the board after the event.
+     */
+    void set(GameEventType type, long gameNumber, int boardSize, int winStreak,
+             Mark mark, int row, int col, int moveNumber) {
+        this.type = type;
+        this.gameNumber = gameNumber;
+        this.boardSize = boardSize;
+        this.winStreak = winStreak;
+        this.mark = mark;
+        this.row = row;
+        this.col = col;
+        this.moveNumber = moveNumber;
+    }
+
+    /**
+     * Gets the kind of event.
+     * @return The event type.
+     */
+    GameEventType getType() {
+        return this.type;
+    }
+
+    /**
+     * Gets the number of the game the event belongs to.
+     * @return The game number, counted from 1 for every bus.
+     */
+    long getGameNumber() {
+        return this.gameNumber;
+    }
+
+    /**
+     * Gets the size of the game board.
+     * @return The board size.
+     */
+    int getBoardSize() {
+        return this.boardSize;
+    }
+
+    /**
+     * Gets the win streak of the game.
+     * @return The win streak.
+     */
+    int getWinStreak() {
+        return this.winStreak;
+    }
+
+    /**
+     * Gets the mark that moved or won.
+     * @return The mark, or BLANK for game start and draw events.
+     */
+    Mark getMark() {
+        return this.mark;
+    }
+
+    /**
+     * Gets the row of the move.
+     * @return The row index, or -1 if the event is not a move.
+     */
+    int getRow() {
+        return this.row;
+    }
+
+    /**
+     * Gets the column of the move.
+     * @return The column index, or -1 if the event is not a move.
+     */
+    int getCol() {
+        return this.col;
+    }
+
+    /**
+     * Gets the number of marks on the board after the event.
+     * @return The move number.
+     */
+    int getMoveNumber() {
+        return this.moveNumber;
+    }
+}
@@ -0,0 +1,246 @@
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Publishes the events of the games played on one thread to any number of observers.
+ * Inline observers are called on the game thread while the event is published.
+ * Asynchronous observers each run on their own thread and consume the events in batches from
+ * a ring buffer of preallocated, reused GameEvent slots, so publishing allocates nothing.
+ * When the ring is full the game thread waits for the slowest asynchronous observer.
+ * Only one thread may publish to a bus.
+ * @author Yinon Kedem
+ * @see GameObserver
+ * @see GameEvent
+ * @see Game
+ */
+class GameEventBus {
+    /**
+     * The default number of slots in the ring buffer. It must be a power of two.
+     */
+    final static int DEFAULT_CAPACITY = 1024;
+    private final static int SPIN_TRIES = 100;
+    private final static int YIELD_TRIES = 100;
+    private final static long PARK_NANOS = 50_000;
+
+    private final int capacity;
+    private final GameEvent inlineSlot = new GameEvent();
+    private GameObserver[] inlineObservers = new GameObserver[0];
+    private Subscriber[] subscribers = new Subscriber[0];
+    private GameEvent[] ring = null;
+    private final AtomicLong cursor = new AtomicLong(-1);
+    private long nextSequence = -1;
+    private long cachedGatingSequence = -1;
+    private long gameNumber = 0;
+
+    /**
+     * Constructs a bus with the default ring buffer capacity.
+     */
+    GameEventBus() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Constructs a bus with the given ring buffer capacity.
+     * The ring is allocated when the first asynchronous observer subscribes.
+     * @param capacity The number of event slots, a power of two.
+     */
+    GameEventBus(int capacity) {
+        if (Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("Event bus capacity must be a power of two");
+        }
+        this.capacity = capacity;
+    }
+
+    /**
+     * Creates a bus that renders every move with the given renderer on the game thread.
+     * @param renderer The renderer for displaying the game.
+     * @return A new bus with the renderer as its inline observer.
+     */
+    static GameEventBus rendering(Renderer renderer) {
+        GameEventBus bus = new GameEventBus();
+        bus.subscribeInline(new RendererObserver(renderer));
+        return bus;
+    }
+
+    /**
+     * Adds an observer that is called on the game thread for every event.
+     * Must be called before the first event is published.
+     * @param observer The observer.
+     */
+    void subscribeInline(GameObserver observer) {
+        this.inlineObservers = Arrays.copyOf(this.inlineObservers, this.inlineObservers.length + 1);
+        this.inlineObservers[this.inlineObservers.length - 1] = observer;
+    }
+
+    /**
+     * Adds an observer that consumes the events on a thread of its own.
+     * Must be called before the first event is published.
+     * @param observer The observer.
+     * @param name The name of the observer's thread.
+     */
+    void subscribe(GameObserver observer, String name) {
+        if (this.ring == null) {
+            this.ring = new GameEvent[this.capacity];
+            for (int i = 0; i < this.capacity; i++) {
+                this.ring[i] = new GameEvent();
+            }
+        }
+        Subscriber subscriber = new Subscriber(observer, this.cursor.get());
+        this.subscribers = Arrays.copyOf(this.subscribers, this.subscribers.length + 1);
+        this.subscribers[this.subscribers.length - 1] = subscriber;
+        Thread thread = new Thread(subscriber, name);
+        thread.setDaemon(true);
+        subscriber.thread = thread;
+        thread.start();
+    }
+
+    /**
+     * Publishes the start of a new game.
+     * @param boardSize The size of the game board.
+     * @param winStreak The win streak of the game.
+     */
+    void publishGameStarted(int boardSize, int winStreak) {
+        this.gameNumber++;
+        publish(GameEventType.GAME_STARTED, boardSize, winStreak, Mark.BLANK, -1, -1, 0);
+    }
+
+    /**
+     * Publishes a mark placed on the board.
+     * @param boardSize The size of the game board.
+     * @param winStreak The win streak of the game.
+     * @param mark The mark placed.
+     * @param row The row index of the move.
+     * @param col The column index of the move.
+     * @param moveNumber The number of marks on the board after the move.
+     */
+    void publishMove(int boardSize, int winStreak, Mark mark, int row, int col, int moveNumber) {
+        publish(GameEventType.MOVE_PLAYED, boardSize, winStreak, mark, row, col, moveNumber);
+    }
+
+    /**
+     * Publishes the end of a game.
+     * @param boardSize The size of the game board.
+     * @param winStreak The win streak of the game.
+     * @param winner The winning mark, or BLANK for a draw.
+     * @param moveNumber The number of marks on the board at the end of the game.
+     */
+    void publishGameOver(int boardSize, int winStreak, Mark winner, int moveNumber) {
+        publish(winner == Mark.BLANK ? GameEventType.DRAW : GameEventType.GAME_WON,
+                boardSize, winStreak, winner, -1, -1, moveNumber);
+    }
+
+    /**
+     * Waits until every asynchronous observer has consumed all published events, then stops their threads.
+     */
+    void close() {
+        long last = this.cursor.get();
+        for (Subscriber subscriber : this.subscribers) {
+            while (subscriber.sequence.get() < last) {
+                LockSupport.parkNanos(PARK_NANOS);
+            }
+            subscriber.running = false;
+            LockSupport.unpark(subscriber.thread);
+            try {
+                subscriber.thread.join();
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    private void publish(GameEventType type, int boardSize, int winStreak, Mark mark, int row, int col,
+                         int moveNumber) {
+        GameEvent event = this.inlineSlot;
+        long sequence = -1;
+        if (this.ring != null) {
+            sequence = claim();
+            event = this.ring[(int) sequence & (this.capacity - 1)];
+        }
+        event.set(type, this.gameNumber, boardSize, winStreak, mark, row, col, moveNumber);
+        for (GameObserver observer : this.inlineObservers) {
+            observer.onEvent(event, true);
+        }
+        if (sequence >= 0) {
+            this.cursor.lazySet(sequence);
+        }
+    }
+
+    private long claim() {
+        long next = this.nextSequence + 1;
+        long wrapPoint = next - this.capacity;
+        if (wrapPoint > this.cachedGatingSequence) {
+            long slowest;
+            int tries = 0;
+            while (wrapPoint > (slowest = slowestSequence())) {
+                tries = idle(tries);
+            }
+            this.cachedGatingSequence = slowest;
+        }
+        this.nextSequence = next;
+        return next;
+    }
+
+    private long slowestSequence() {
+        long slowest = Long.MAX_VALUE;
+        for (Subscriber subscriber : this.subscribers) {
+            slowest = Math.min(slowest, subscriber.sequence.get());
+        }
+        return slowest;
+    }
+
+    private static int idle(int tries) {
+        if (tries < SPIN_TRIES) {
+            Thread.onSpinWait();
+        }
+        else if (tries < SPIN_TRIES + YIELD_TRIES) {
+            Thread.yield();
+        }
+        else {
+            LockSupport.parkNanos(PARK_NANOS);
+        }
+        return tries + 1;
+    }
+
+    /**
+     * An asynchronous observer together with the sequence of the last event it consumed.
+     */
+    private final class Subscriber implements Runnable {
+        private final GameObserver observer;
+        private final AtomicLong sequence;
+        private volatile boolean running = true;
+        private Thread thread;
+
+        private Subscriber(GameObserver observer, long start) {
+            this.observer = observer;
+            this.sequence = new AtomicLong(start);
+        }
+
+        @Override
+        public void run() {
+            long next = this.sequence.get() + 1;
+            int tries = 0;
+            try {
+                while (this.running) {
+                    long available = cursor.get();
+                    if (available < next) {
+                        tries = idle(tries);
+                        continue;
+                    }
+                    tries = 0;
+                    for (long sequence = next; sequence <= available; sequence++) {
+                        this.observer.onEvent(ring[(int) sequence & (capacity - 1)], sequence == available);
+                    }
+                    this.sequence.lazySet(available);
+                    next = available + 1;
+                }
+            }
+            finally {
+                // a stopped or failed observer must never hold back the game thread
+                this.sequence.set(Long.MAX_VALUE);
+            }
+        }
+    }
+}
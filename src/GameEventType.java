@@ -0,0 +1,27 @@
+/**
+ * Represents the kinds of events published while a game is played.
+ * @author Yinon Kedem
+ * @see GameEvent
+ * @see GameEventBus
+ */
+enum GameEventType {
+    /**
+     * A new game started on an empty board.
+     */
+    GAME_STARTED,
+
+    /**
+     * A player placed a mark on the board.
+     */
+    MOVE_PLAYED,
+
+    /**
+     * A player completed a winning streak.
+     */
+    GAME_WON,
+
+    /**
+     * The board filled up without a winner.
+     */
+    DRAW
+}
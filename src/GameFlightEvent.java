@@ -0,0 +1,72 @@
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.EventType;
+import jdk.jfr.FlightRecorder;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * A Java Flight Recorder event spanning one game, from its first move to its result.
+ * Disabled by default; no event is even created unless a running recording enables it.
+ * @author Yinon Kedem
+ * @see Game
+ * @see MoveFlightEvent
+ */
+@Name("tictactoe.Game")
+@Label("Game")
+@Category("Tic Tac Toe")
+@Description("A game played from start to result")
+@Enabled(false)
+@StackTrace(false)
+class GameFlightEvent extends jdk.jfr.Event {
+    @Label("Board Size")
+    int boardSize;
+
+    @Label("Win Streak")
+    int winStreak;
+
+    @Label("Player X")
+    String playerX;
+
+    @Label("Player O")
+    String playerO;
+
+    @Label("Winner")
+    @Description("X, O or BLANK for a draw")
+    String winner;
+
+    @Label("Moves")
+    int moves;
+
+    /**
+     * Creates and begins an event if a running recording enables it, so that playing without one
+     * allocates nothing.
+     * @return The begun event, or null if the event is not recorded.
+     */
+    static GameFlightEvent start() {
+        if (!isRecorded()) {
+            return null;
+        }
+        GameFlightEvent event = new GameFlightEvent();
+        event.begin();
+        return event;
+    }
+
+    /**
+     * Checks if a game played now would be recorded: the flight recorder is running with this event enabled.
+     * @return true if the event is recorded, false otherwise.
+     */
+    static boolean isRecorded() {
+        return FlightRecorder.isInitialized() && Type.EVENT.isEnabled();
+    }
+
+    /**
+     * Holds the type of the event, looked up on first use so that a process without the flight recorder
+     * never registers it.
+     */
+    private final static class Type {
+        private final static EventType EVENT = EventType.getEventType(GameFlightEvent.class);
+    }
+}
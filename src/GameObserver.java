@@ -0,0 +1,15 @@
+/**
+ * Represents a subscriber to the events of the games played through a GameEventBus.
+ * Implementing classes must provide an implementation for the onEvent method.
+ * @author Yinon Kedem
+ * @see GameEventBus
+ * @see GameEvent
+ */
+interface GameObserver {
+    /**
+     * Handles one event. The event slot is reused once this method returns.
+     * @param event The event.
+     * @param endOfBatch true if no further event is available right now, false otherwise.
+     */
+    void onEvent(GameEvent event, boolean endOfBatch);
+}
@@ -1,27 +1,30 @@
 /**
  * Represents a player with a strategic and adaptive playing style in a two-player game.
  * The GeniusPlayer is designed to make intelligent moves based on the current state of the game board.
- * Implements the Player interface for playing turns.
+ * Implements the Player interface for choosing moves.
  * @author Yinon Kedem
  * @see Player
  * @see Board
  * @see Mark
  */
 class GeniusPlayer implements Player {
+    // returned by blockingMove when there is nothing to block
+    private final static int NO_BLOCK = -2;
+
     /**
-     * Plays a turn by making strategic moves on the game board.
+     * Chooses a strategic move on the game board.
      * The GeniusPlayer adapts its strategy based on the current game state.
-     * @param board The game board.
+     * @param board A read-only view of the game board.
      * @param mark The mark associated with the player.
+     * @return The cell index of the chosen move, or Board.NO_MOVE to pass the turn.
      */
     @Override
-    public void playTurn(Board board, Mark mark) {
+    public int chooseMove(BoardView board, Mark mark) {
         int lastPlace = board.getSize() - 1;
 
         // If the top-left corner is already marked by the player, play like a CleverPlayer
         if(board.getMark(0, 0) == mark){
-            playLikeClever(board, mark);
-            return;
+            return playLikeClever(board);
         }
         // Iterate through the board to make strategic moves
         for (int row = lastPlace; row >= 0; row--) {
@@ -29,29 +32,37 @@ class GeniusPlayer implements Player {
                 // If the top-left corner is empty and the GeniusPlayer is playing against a random player,
                 // strategically mark the top-left corner
                 if (board.getMark(0, 0) == Mark.BLANK && isGeniusVsRandom(board, mark)){
-                    board.putMark(mark, 0, 0);
-                    return;
+                    return board.cellIndex(0, 0);
                 }
                 // Check if there's a need to block the opponent
-                if (needToBlock(board, mark)){
-                    return;
+                int block = blockingMove(board, mark);
+                if (block != NO_BLOCK){
+                    return block;
                 }
                 // If the current position is empty, make a strategic move
                 if (board.getMark(row, col) == Mark.BLANK) {
-                    board.putMark(mark, row, col);
-                    return;
+                    return board.cellIndex(row, col);
                 }
             }
         }
+        return Board.NO_MOVE;
+    }
+    /**
+     * The GeniusPlayer's move depends only on the board and its mark.
+     * @return true.
+     */
+    @Override
+    public boolean isDeterministic() {
+        return true;
     }
     /**
      * Checks if the GeniusPlayer is playing against a random player.
      * Determines this based on the number of non-empty cells on the board.
-     * @param board The game board.
+     * @param board A read-only view of the game board.
      * @param mark The mark associated with the player.
      * @return true if playing against a random player, false otherwise.
      */
-    private boolean isGeniusVsRandom(Board board, Mark mark) {
+    private boolean isGeniusVsRandom(BoardView board, Mark mark) {
         int cellCounter = 0;
         for (int row = 0; row < board.getSize(); row++){
             for (int col = 0; col < board.getSize(); col++){
@@ -63,37 +74,37 @@ class GeniusPlayer implements Player {
         return cellCounter == 1;
     }
     /**
-     * Plays a turn similar to a CleverPlayer by selecting the first available blank position on the board.
-     * @param board The game board.
-     * @param mark The mark associated with the player.
+     * Chooses a move similar to a CleverPlayer by selecting the first available blank position on the board.
+     * @param board A read-only view of the game board.
+     * @return The cell index of the first blank position, or Board.NO_MOVE if the board is full.
      */
-    private void playLikeClever(Board board, Mark mark) {
+    private int playLikeClever(BoardView board) {
         for (int row = 0; row < board.getSize(); row++){
             for (int col = 0; col < board.getSize(); col++){
                 if (board.getMark(row, col) == Mark.BLANK){
-                    board.putMark(mark, row, col);
-                    return;
+                    return board.cellIndex(row, col);
                 }
             }
         }
+        return Board.NO_MOVE;
     }
     /**
      * Checks if there's a need to block the opponent from winning.
      * Determines this based on the current state of streaks on the game board.
-     * @param board The game board.
+     * @param board A read-only view of the game board.
      * @param mark The mark associated with the player.
-     * @return true if a block move is needed, false otherwise.
+     * @return The cell index of the block move, Board.NO_MOVE if the cell to block is already occupied
+     * (the turn is then passed), or NO_BLOCK if no block move is needed.
      */
-    private boolean needToBlock(Board board, Mark mark) {
+    private int blockingMove(BoardView board, Mark mark) {
         int streakCounter = 0;
         for (int row = 0; row < board.getSize(); row++) {
             for (int col = 0; col < board.getSize(); col++) {
                 if (board.getMark(row, col) == mark){
-                    return false;
+                    return NO_BLOCK;
                 }
                 if (streakCounter == 2){
-                    board.putMark(mark, row, col);
-                    return true;
+                    return board.getMark(row, col) == Mark.BLANK ? board.cellIndex(row, col) : Board.NO_MOVE;
                 }
                 Mark curMark = board.getMark(row, col);
                 if (curMark != Mark.BLANK && curMark != mark){
@@ -101,6 +112,6 @@ class GeniusPlayer implements Player {
                 }
             }
         }
-        return false;
+        return NO_BLOCK;
     }
 }
\ No newline at end of file
@@ -1,6 +1,6 @@
 /**
  * Represents a human player in a two-player game.
- * Implements the Player interface for playing turns.
+ * Implements the Player interface for choosing moves.
  * Allows the human player to input their moves through the console.
  * @author Yinon Kedem
  * @see Player
@@ -15,18 +15,18 @@ class HumanPlayer implements Player{
      */
     HumanPlayer(){}
     /**
-     * Plays a turn by allowing the human player to input their move coordinates.
-     * Checks for valid input, coordinates range, and empty cell before making the move.
-     * @param board The game board.
+     * Chooses a move by allowing the human player to input their move coordinates.
+     * Checks for valid input, coordinates range, and empty cell before returning the move.
+     * @param board A read-only view of the game board.
      * @param mark The mark associated with the player.
+     * @return The cell index of the coordinates typed by the player.
      */
     @Override
-    public void playTurn(Board board, Mark mark) {
+    public int chooseMove(BoardView board, Mark mark) {
         int userInput;
         String userMarkSymbol = stringTheMark(mark);
         System.out.println(Constants.playerRequestInputString(userMarkSymbol));
-        boolean correctInput = false;
-        while (!correctInput) {
+        while (true) {
             userInput = KeyboardInput.readInt(); // the user coordinates
             int row = userInput / 10;
             int col = userInput % 10;
@@ -38,8 +38,7 @@ class HumanPlayer implements Player{
                 System.out.println(Constants.OCCUPIED_COORDINATE);
             }
             else {
-                board.putMark(mark, row, col);
-                correctInput = true;
+                return board.cellIndex(row, col);
             }
         }
     }
@@ -60,20 +59,20 @@ class HumanPlayer implements Player{
      * Checks if the given input coordinates are within the valid range of the game board.
      * @param row The row index of the input coordinates.
      * @param col The column index of the input coordinates.
-     * @param board The game board.
+     * @param board A read-only view of the game board.
      * @return true if the coordinates are within the valid range, false otherwise.
      */
-    private boolean InputInRange(int row, int col, Board board){
+    static boolean InputInRange(int row, int col, BoardView board){
         return col >= 0 && col <= board.getSize() - 1 && row >= 0 && row <= board.getSize() - 1;
     }
     /**
      * Checks if the cell at the given coordinates on the game board is empty.
      * @param row The row index of the cell.
      * @param col The column index of the cell.
-     * @param board The game board.
+     * @param board A read-only view of the game board.
      * @return true if the cell is empty, false otherwise.
      */
-    private boolean emptyCell(int row, int col, Board board){
+    static boolean emptyCell(int row, int col, BoardView board){
         return board.getMark(row, col) == Mark.BLANK;
     }
 }
\ No newline at end of file
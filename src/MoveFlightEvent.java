@@ -0,0 +1,73 @@
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.EventType;
+import jdk.jfr.FlightRecorder;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * A Java Flight Recorder event spanning one turn of a player.
+ * Disabled by default; no event is even created unless a running recording enables it.
+ * @author Yinon Kedem
+ * @see Game
+ * @see Player
+ */
+@Name("tictactoe.Move")
+@Label("Move")
+@Category("Tic Tac Toe")
+@Description("A turn of a player, from the call to chooseMove to the mark placed")
+@Enabled(false)
+@StackTrace(false)
+class MoveFlightEvent extends jdk.jfr.Event {
+    @Label("Board Size")
+    int boardSize;
+
+    @Label("Win Streak")
+    int winStreak;
+
+    @Label("Player")
+    String player;
+
+    @Label("Mark")
+    String mark;
+
+    @Label("Row")
+    @Description("The row of the mark placed, -1 if the player placed none")
+    int row;
+
+    @Label("Column")
+    @Description("The column of the mark placed, -1 if the player placed none")
+    int col;
+
+    /**
+     * Creates and begins an event if a running recording enables it, so that playing without one
+     * allocates nothing.
+     * @return The begun event, or null if the event is not recorded.
+     */
+    static MoveFlightEvent start() {
+        if (!isRecorded()) {
+            return null;
+        }
+        MoveFlightEvent event = new MoveFlightEvent();
+        event.begin();
+        return event;
+    }
+
+    /**
+     * Checks if a turn played now would be recorded: the flight recorder is running with this event enabled.
+     * @return true if the event is recorded, false otherwise.
+     */
+    static boolean isRecorded() {
+        return FlightRecorder.isInitialized() && Type.EVENT.isEnabled();
+    }
+
+    /**
+     * Holds the type of the event, looked up on first use so that a process without the flight recorder
+     * never registers it.
+     */
+    private final static class Type {
+        private final static EventType EVENT = EventType.getEventType(MoveFlightEvent.class);
+    }
+}
@@ -0,0 +1,260 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * A learned evaluator of k-in-a-row positions. The tuples of the network are the win lines of the
+ * board's geometry: all the windows of winStreak cells along a row, column or diagonal. The marks in
+ * a window are packed into a base-3 pattern code (0 blank, 1 own mark, 2 opponent mark), which indexes
+ * one flat table of weights shared by every window. A position is worth the sum of the weights of its
+ * windows seen by the side to move minus those seen by the opponent, squashed by tanh; the value is
+ * therefore always the negation of the value seen by the other side.
+ * Weights are saved to a binary file that is memory-mapped when the network is loaded.
+ * @author Yinon Kedem
+ * @see NTuplePlayer
+ * @see NTupleTrainer
+ * @see BoardGeometry
+ */
+final class NTupleNetwork {
+    /**
+     * The default directory of the weight files.
+     */
+    final static String DEFAULT_DIRECTORY = "weights";
+    private final static int MAGIC = 0x4E545550;
+    private final static int VERSION = 1;
+    private final static int HEADER_BYTES = 5 * Integer.BYTES;
+    private final static int OWN = 1;
+    private final static int OPPONENT = 2;
+    private final static ConcurrentMap<Long, NTupleNetwork> SHARED = new ConcurrentHashMap<>();
+    private static volatile Path directory = Paths.get(DEFAULT_DIRECTORY);
+
+    private final BoardGeometry geometry;
+    private final int winStreak;
+    private final float[] weights;
+    private final int[] swapped;
+    private final int[] powers;
+    private final int[][] tuples;
+
+    /**
+     * Creates a network with all weights zero.
+     * @param size The size of the board.
+     * @param winStreak The number of marks in a row needed to win, which is the length of every tuple.
+     */
+    NTupleNetwork(int size, int winStreak) {
+        this.geometry = BoardGeometry.of(size, winStreak);
+        this.winStreak = winStreak;
+        this.powers = new int[winStreak + 1];
+        this.powers[0] = 1;
+        for (int i = 1; i <= winStreak; i++) {
+            this.powers[i] = this.powers[i - 1] * 3;
+        }
+        this.weights = new float[this.powers[winStreak]];
+        this.swapped = new int[this.weights.length];
+        for (int code = 0; code < this.swapped.length; code++) {
+            int swappedCode = 0;
+            for (int i = 0, rest = code; i < winStreak; i++, rest /= 3) {
+                int digit = rest % 3;
+                swappedCode += (digit == 0 ? 0 : 3 - digit) * this.powers[i];
+            }
+            this.swapped[code] = swappedCode;
+        }
+        this.tuples = this.geometry.getLines();
+    }
+
+    /**
+     * Sets the directory that shared networks are loaded from. Must be called before the first game.
+     * @param weightsDirectory The directory holding the weight files.
+     */
+    static void configureDirectory(Path weightsDirectory) {
+        directory = weightsDirectory;
+        SHARED.clear();
+    }
+
+    /**
+     * Gets the network for the given board, shared by every player in the process. It is loaded from the
+     * weights directory on first use, or has all weights zero if no weights were trained for the board.
+     * @param size The size of the board.
+     * @param winStreak The number of marks in a row needed to win.
+     * @return The shared network.
+     * @throws IllegalStateException if the weight file cannot be read and was not preloaded.
+     */
+    static NTupleNetwork shared(int size, int winStreak) {
+        NTupleNetwork network = SHARED.get(BoardGeometry.key(size, winStreak));
+        if (network != null) {
+            return network;
+        }
+        try {
+            return preload(size, winStreak);
+        }
+        catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Loads the network of the given board into the shared networks, unless it was loaded already, so
+     * that a weight file that cannot be read is reported before the first game instead of during it.
+     * @param size The size of the board.
+     * @param winStreak The number of marks in a row needed to win.
+     * @return The shared network.
+     * @throws IOException if the weight file cannot be read or does not hold the weights of the board.
+     */
+    static NTupleNetwork preload(int size, int winStreak) throws IOException {
+        NTupleNetwork network = SHARED.get(BoardGeometry.key(size, winStreak));
+        if (network != null) {
+            return network;
+        }
+        Path path = directory.resolve(fileName(size, winStreak));
+        network = Files.exists(path) ? load(path) : new NTupleNetwork(size, winStreak);
+        if (network.getSize() != size || network.getWinStreak() != winStreak) {
+            throw new IOException(Constants.corruptWeightsString(path.toString()));
+        }
+        NTupleNetwork loaded = SHARED.putIfAbsent(BoardGeometry.key(size, winStreak), network);
+        return loaded != null ? loaded : network;
+    }
+
+    /**
+     * Gets the name of the weight file of a board.
+     * @param size The size of the board.
+     * @param winStreak The number of marks in a row needed to win.
+     * @return The file name, relative to the weights directory.
+     */
+    static String fileName(int size, int winStreak) {
+        return "ntuple-" + size + "-" + winStreak + ".bin";
+    }
+
+    /**
+     * Gets the size of the board the network evaluates.
+     * @return The size of the board.
+     */
+    int getSize() {
+        return this.geometry.getSize();
+    }
+
+    /**
+     * Gets the number of marks in a row needed to win on the boards the network evaluates.
+     * @return The win streak.
+     */
+    int getWinStreak() {
+        return this.winStreak;
+    }
+
+    /**
+     * Evaluates a position.
+     * @param board The game board.
+     * @param mark The side the value is seen by.
+     * @return The value of the position, between -1 (lost) and 1 (won).
+     */
+    float value(BoardView board, Mark mark) {
+        float sum = 0;
+        for (int[] tuple : this.tuples) {
+            int code = code(board, tuple, mark);
+            sum += this.weights[code] - this.weights[this.swapped[code]];
+        }
+        return (float) Math.tanh(sum);
+    }
+
+    /**
+     * Computes how much placing a mark on an empty cell changes the sum of the weights seen by that mark.
+     * Only the tuples through the cell are read, so a move is scored without evaluating the whole board.
+     * @param board The game board.
+     * @param mark The mark to be placed.
+     * @param cell The index of an empty cell.
+     * @return The change of the weighted sum.
+     */
+    float moveGain(BoardView board, Mark mark, int cell) {
+        float gain = 0;
+        int[] lines = this.geometry.getLinesThrough(cell);
+        int[] positions = this.geometry.getPositionsInLines(cell);
+        for (int i = 0; i < lines.length; i++) {
+            int code = code(board, this.tuples[lines[i]], mark);
+            int after = code + OWN * this.powers[positions[i]];
+            gain += this.weights[after] - this.weights[this.swapped[after]]
+                    - this.weights[code] + this.weights[this.swapped[code]];
+        }
+        return gain;
+    }
+
+    /**
+     * Moves the value of a position seen by a mark by the given amount per tuple. Updates are not
+     * synchronized: trainer threads may update the same network at once, and a lost update only costs
+     * one step of learning.
+     * @param board The game board.
+     * @param mark The side the value is seen by.
+     * @param delta The amount added to the weight of every tuple pattern.
+     */
+    void update(BoardView board, Mark mark, float delta) {
+        for (int[] tuple : this.tuples) {
+            int code = code(board, tuple, mark);
+            this.weights[code] += delta;
+            this.weights[this.swapped[code]] -= delta;
+        }
+    }
+
+    /**
+     * Writes the weights to a file: a header with the board geometry, then the weights in little-endian order.
+     * @param path The weight file.
+     * @throws IOException if the file cannot be written.
+     */
+    void save(Path path) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_BYTES + this.weights.length * Float.BYTES)
+                .order(ByteOrder.LITTLE_ENDIAN);
+        buffer.putInt(MAGIC).putInt(VERSION).putInt(this.geometry.getSize()).putInt(this.winStreak).putInt(this.weights.length);
+        buffer.asFloatBuffer().put(this.weights);
+        buffer.rewind();
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        }
+    }
+
+    /**
+     * Loads a network by memory-mapping its weight file.
+     * @param path The weight file.
+     * @return The network.
+     * @throws IOException if the file cannot be read or is not a weight file.
+     */
+    static NTupleNetwork load(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            mapped.order(ByteOrder.LITTLE_ENDIAN);
+            if (channel.size() < HEADER_BYTES || mapped.getInt() != MAGIC || mapped.getInt() != VERSION) {
+                throw new IOException(Constants.notWeightsString(path.toString()));
+            }
+            int size = mapped.getInt();
+            int winStreak = mapped.getInt();
+            if (size < 1 || winStreak < 1 || winStreak > size) {
+                throw new IOException(Constants.corruptWeightsString(path.toString()));
+            }
+            NTupleNetwork network = new NTupleNetwork(size, winStreak);
+            if (mapped.getInt() != network.weights.length
+                    || mapped.remaining() != network.weights.length * Float.BYTES) {
+                throw new IOException(Constants.corruptWeightsString(path.toString()));
+            }
+            mapped.asFloatBuffer().get(network.weights);
+            return network;
+        }
+    }
+
+    private int code(BoardView board, int[] tuple, Mark mark) {
+        int code = 0;
+        for (int position = 0; position < tuple.length; position++) {
+            int cell = tuple[position];
+            Mark cellMark = board.getMark(this.geometry.rowOf(cell), this.geometry.colOf(cell));
+            if (cellMark != Mark.BLANK) {
+                code += (cellMark == mark ? OWN : OPPONENT) * this.powers[position];
+            }
+        }
+        return code;
+    }
+}
@@ -0,0 +1,66 @@
+/**
+ * A player that picks its moves with a learned n-tuple network.
+ * A move that wins at once is always played, and a cell on which the opponent would win at once is
+ * always taken; otherwise every empty cell is scored by the change it makes to the network's value of
+ * the position, reading only the tuples through the cell, and the best scoring cell is played.
+ * Only the candidate moves of the board are scored, which on large boards are the cells near the marks.
+ * The network is loaded once per board geometry and shared by every player in the process.
+ * @author Yinon Kedem
+ * @see NTupleNetwork
+ * @see NTupleTrainer
+ * @see Player
+ * @see BoardView
+ */
+class NTuplePlayer implements Player {
+    // the shared network of the last board played on, kept so a turn needs no lookup
+    private NTupleNetwork network = null;
+
+    /**
+     * Chooses the cell the network values most.
+     * @param board A read-only view of the game board.
+     * @param mark The mark associated with the player.
+     * @return The cell index of the move, or Board.NO_MOVE if the board is full.
+     */
+    @Override
+    public int chooseMove(BoardView board, Mark mark) {
+        NTupleNetwork network = this.network;
+        if (network == null || network.getSize() != board.getSize()
+                || network.getWinStreak() != board.getWinStreak()) {
+            network = NTupleNetwork.shared(board.getSize(), board.getWinStreak());
+            this.network = network;
+        }
+        return bestMove(network, board, mark);
+    }
+
+    /**
+     * Finds a move that wins at once, else a move that stops the opponent from winning at once,
+     * else the move the network values most.
+     * @param network The network to score the moves with.
+     * @param board A read-only view of the game board.
+     * @param mark The mark of the side to move.
+     * @return The cell index of the move, or Board.NO_MOVE if the board is full.
+     */
+    static int bestMove(NTupleNetwork network, BoardView board, Mark mark) {
+        Mark opponent = AlphaBetaSearch.opponent(mark);
+        int blockingMove = Board.NO_MOVE;
+        int bestMove = Board.NO_MOVE;
+        float bestGain = Float.NEGATIVE_INFINITY;
+        // a winning or blocking cell always neighbours a mark, so the candidate moves hold it
+        for (int cell = board.nextCandidate(0); cell != Board.NO_MOVE; cell = board.nextCandidate(cell + 1)) {
+            int row = board.rowOf(cell);
+            int col = board.colOf(cell);
+            if (board.wouldComplete(mark, row, col)) {
+                return cell;
+            }
+            if (blockingMove == Board.NO_MOVE && board.wouldComplete(opponent, row, col)) {
+                blockingMove = cell;
+            }
+            float gain = network.moveGain(board, mark, cell);
+            if (gain > bestGain) {
+                bestGain = gain;
+                bestMove = cell;
+            }
+        }
+        return blockingMove != Board.NO_MOVE ? blockingMove : bestMove;
+    }
+}
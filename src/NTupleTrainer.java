@@ -0,0 +1,163 @@
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Trains an n-tuple network by temporal-difference learning, TD(0) on afterstates, from self-play.
+ * After every move the position the opponent left before it is pulled towards the negated value of the
+ * new position, and the final position of a game towards its result. Many games are played at once,
+ * one per thread, all updating the same weights without locks (Hogwild): updates to the same weight
+ * rarely collide, and a collision only loses one small step.
+ * Usage: java NTupleTrainer size winStreak games threads [weightsFile]
+ * @author Yinon Kedem
+ * @see NTupleNetwork
+ * @see NTuplePlayer
+ */
+class NTupleTrainer {
+    /**
+     * The default learning rate.
+     */
+    final static float DEFAULT_LEARNING_RATE = 0.01f;
+    /**
+     * The default probability of a random exploring move.
+     */
+    final static double DEFAULT_EXPLORATION = 0.1;
+    private final static int EXPLORATION_SCALE = 1 << 20;
+    private final static long REPORT_EVERY = 100_000;
+
+    private final NTupleNetwork network;
+    private final float learningRate;
+    private final int exploration;
+    private final AtomicLong gamesPlayed = new AtomicLong();
+
+    /**
+     * Constructs a trainer of the given network.
+     * @param network The network to train.
+     * @param learningRate The step size of every update.
+     * @param exploration The probability of playing a random move instead of the best one.
+     */
+    NTupleTrainer(NTupleNetwork network, float learningRate, double exploration) {
+        this.network = network;
+        this.learningRate = learningRate;
+        this.exploration = (int) (exploration * EXPLORATION_SCALE);
+    }
+
+    /**
+     * Entry point: trains the network of a board and writes it to the weights file.
+     * @param args The board size, the win streak, the number of games, the number of threads and
+     *             optionally the weights file, by default the file of the board in the weights directory.
+     * @throws IOException if the weights cannot be written.
+     */
+    public static void main(String[] args) throws IOException {
+        int size = Integer.parseInt(args[0]);
+        int winStreak = Integer.parseInt(args[1]);
+        long games = Long.parseLong(args[2]);
+        int threads = Integer.parseInt(args[3]);
+        Path path = args.length > 4 ? Paths.get(args[4])
+                : Paths.get(NTupleNetwork.DEFAULT_DIRECTORY, NTupleNetwork.fileName(size, winStreak));
+        NTupleNetwork network = path.toFile().exists() ? NTupleNetwork.load(path) : new NTupleNetwork(size, winStreak);
+        new NTupleTrainer(network, DEFAULT_LEARNING_RATE, DEFAULT_EXPLORATION).train(games, threads, 1);
+        if (path.getParent() != null) {
+            path.getParent().toFile().mkdirs();
+        }
+        network.save(path);
+        System.out.println("Saved " + path);
+    }
+
+    /**
+     * Plays the given number of self-play games on a pool of threads, learning from every move.
+     * @param games The number of games.
+     * @param threads The number of threads.
+     * @param seed The seed of the random exploring moves.
+     */
+    void train(long games, int threads, long seed) {
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        List<Callable<Void>> tasks = new ArrayList<>();
+        for (int i = 0; i < threads; i++) {
+            RandomSource random = new RandomSource(RandomSource.derive(seed, i, 0));
+            tasks.add(() -> {
+                Board board = new Board(this.network.getSize(), this.network.getWinStreak());
+                long played;
+                while ((played = this.gamesPlayed.getAndIncrement()) < games) {
+                    playGame(board, random);
+                    if (played % REPORT_EVERY == 0 && played > 0) {
+                        System.out.println("Trained " + played + " games");
+                    }
+                }
+                return null;
+            });
+        }
+        try {
+            for (Future<Void> task : pool.invokeAll(tasks)) {
+                task.get();
+            }
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        }
+        finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * Plays one self-play game on the given board, updating the network after every move.
+     * The board is cleared when the game is over.
+     * @param board An empty board.
+     * @param random The source of the exploring moves.
+     */
+    void playGame(Board board, RandomSource random) {
+        int cells = board.getSize() * board.getSize();
+        Mark mark = Mark.X;
+        while (true) {
+            int move = chooseMove(board, mark, random, cells);
+            board.putMark(mark, board.rowOf(move), board.colOf(move));
+            boolean won = board.completesStreak(board.rowOf(move), board.colOf(move));
+            boolean over = won || board.getOccupiedCells() == cells;
+            float value = over ? (won ? 1 : 0) : this.network.value(board, mark);
+            if (board.getOccupiedCells() > 1) {
+                // the position the opponent left is worth the negated value of the new one
+                board.undo();
+                learn(board, AlphaBetaSearch.opponent(mark), -value);
+                board.putMark(mark, board.rowOf(move), board.colOf(move));
+            }
+            if (over) {
+                learn(board, mark, value);
+                break;
+            }
+            mark = AlphaBetaSearch.opponent(mark);
+        }
+        while (board.undo()) {
+            // clear the board for the next game
+        }
+    }
+
+    private void learn(Board board, Mark mark, float target) {
+        float value = this.network.value(board, mark);
+        float error = target - value;
+        this.network.update(board, mark, this.learningRate * error * (1 - value * value));
+    }
+
+    private int chooseMove(Board board, Mark mark, RandomSource random, int cells) {
+        if (random.nextInt(EXPLORATION_SCALE) < this.exploration) {
+            int skip = random.nextInt(cells - board.getOccupiedCells());
+            for (int cell = 0; cell < cells; cell++) {
+                if (board.getMark(board.rowOf(cell), board.colOf(cell)) == Mark.BLANK && skip-- == 0) {
+                    return cell;
+                }
+            }
+        }
+        return NTuplePlayer.bestMove(this.network, board, mark);
+    }
+}
@@ -0,0 +1,145 @@
+import java.util.Arrays;
+
+/**
+ * An incremental static evaluator of k-in-a-row positions.
+ * Every win line of the board (a window of winStreak cells along a row, column or diagonal) is packed
+ * into the number of X marks plus winStreak + 1 times the number of O marks in it. A window holding marks
+ * of one side only is a live run of that side, of the length of its mark count; a window holding both
+ * is dead. An open run lies in more live windows than a closed run of the same length, so the counts of
+ * live windows per side and length weigh open runs above closed ones. The score of every packed window is
+ * looked up in a table built once per geometry, and the running score is kept up to date by rereading only
+ * the windows through the cell of each placed or removed mark, so evaluating a position costs the same on
+ * any board size.
+ * @author Yinon Kedem
+ * @see AlphaBetaSearch
+ * @see BoardGeometry
+ */
+final class PatternEvaluator {
+    /**
+     * The largest score of a position, kept below the scores of wins and losses.
+     */
+    final static int MAX_SCORE = 4000;
+    // each extra mark in a live window multiplies its weight, up to this cap
+    private final static int WEIGHT_FACTOR_BITS = 2;
+    private final static int MAX_WEIGHT_BITS = 20;
+
+    private BoardGeometry geometry = null;
+    private int base;
+    private int[] windows;
+    private int[] windowScores;
+    private int[] liveSide;
+    private int[] liveLength;
+    private int[][] liveWindows;
+    private int score;
+
+    /**
+     * Sets the evaluator to a position, reading every window of the board once.
+     * @param board The position that the following place and remove calls change.
+     */
+    void reset(BoardView board) {
+        if (this.geometry != board.getGeometry()) {
+            setGeometry(board.getGeometry());
+        }
+        for (int[] counts : this.liveWindows) {
+            Arrays.fill(counts, 0);
+        }
+        this.score = 0;
+        int[][] lines = this.geometry.getLines();
+        for (int line = 0; line < lines.length; line++) {
+            int packed = 0;
+            for (int cell : lines[line]) {
+                Mark mark = board.getMark(this.geometry.rowOf(cell), this.geometry.colOf(cell));
+                if (mark != Mark.BLANK) {
+                    packed += step(mark);
+                }
+            }
+            this.windows[line] = packed;
+            this.score += this.windowScores[packed];
+            this.liveWindows[this.liveSide[packed]][this.liveLength[packed]]++;
+        }
+    }
+
+    /**
+     * Updates the score after a mark was placed.
+     * @param mark The mark placed.
+     * @param cell The cell index of the mark.
+     */
+    void place(Mark mark, int cell) {
+        update(cell, step(mark));
+    }
+
+    /**
+     * Updates the score after a mark was taken back.
+     * @param mark The mark taken back.
+     * @param cell The cell index of the mark.
+     */
+    void remove(Mark mark, int cell) {
+        update(cell, -step(mark));
+    }
+
+    /**
+     * Gets the score of the current position.
+     * @param mark The side the score is seen by.
+     * @return The score, positive when the side's live runs outweigh the opponent's, within MAX_SCORE.
+     */
+    int evaluate(Mark mark) {
+        int clamped = Math.max(-MAX_SCORE, Math.min(MAX_SCORE, this.score));
+        return mark == Mark.X ? clamped : -clamped;
+    }
+
+    /**
+     * Gets the number of live windows of one side holding a given number of marks.
+     * @param mark The side X or O.
+     * @param length The number of marks, from 1 to winStreak.
+     * @return The number of windows holding that many marks of the side and none of the opponent's.
+     */
+    int getLiveWindows(Mark mark, int length) {
+        return this.liveWindows[mark == Mark.X ? 1 : 2][length];
+    }
+
+    private void update(int cell, int delta) {
+        for (int line : this.geometry.getLinesThrough(cell)) {
+            int before = this.windows[line];
+            int after = before + delta;
+            this.windows[line] = after;
+            this.score += this.windowScores[after] - this.windowScores[before];
+            this.liveWindows[this.liveSide[before]][this.liveLength[before]]--;
+            this.liveWindows[this.liveSide[after]][this.liveLength[after]]++;
+        }
+    }
+
+    private int step(Mark mark) {
+        return mark == Mark.X ? 1 : this.base;
+    }
+
+    private void setGeometry(BoardGeometry boardGeometry) {
+        this.geometry = boardGeometry;
+        int winStreak = boardGeometry.getWinStreak();
+        this.base = winStreak + 1;
+        this.windows = new int[boardGeometry.getLines().length];
+        this.windowScores = new int[this.base * this.base];
+        this.liveSide = new int[this.base * this.base];
+        this.liveLength = new int[this.base * this.base];
+        // side 0 collects the empty and dead windows, sides 1 and 2 the live windows of X and O
+        this.liveWindows = new int[3][this.base];
+        for (int xMarks = 0; xMarks <= winStreak; xMarks++) {
+            for (int oMarks = 0; xMarks + oMarks <= winStreak; oMarks++) {
+                int packed = xMarks + oMarks * this.base;
+                if (xMarks > 0 && oMarks == 0) {
+                    this.windowScores[packed] = weight(xMarks);
+                    this.liveSide[packed] = 1;
+                    this.liveLength[packed] = xMarks;
+                }
+                else if (oMarks > 0 && xMarks == 0) {
+                    this.windowScores[packed] = -weight(oMarks);
+                    this.liveSide[packed] = 2;
+                    this.liveLength[packed] = oMarks;
+                }
+            }
+        }
+    }
+
+    private static int weight(int marks) {
+        return 1 << Math.min(WEIGHT_FACTOR_BITS * (marks - 1), MAX_WEIGHT_BITS);
+    }
+}
@@ -0,0 +1,272 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * A lookup of the moves that keep the game-theoretic value of the positions of a solved board, written by
+ * the ProofNumberSolver from its proofs: a winning move where the side to move wins, and a move that
+ * holds the draw where the side to move would otherwise lose. Positions are stored once for all 8
+ * symmetries of the board, under the smallest of their 8 Zobrist hashes, with the move in that orientation.
+ * The keys are kept sorted in one array, so a lookup is a binary search that allocates nothing.
+ * Books are loaded from the books directory once per board geometry and shared by every player.
+ * @author Yinon Kedem
+ * @see ProofNumberSolver
+ * @see SearchPlayer
+ * @see BoardGeometry
+ */
+final class PerfectPlayBook {
+    /**
+     * The default directory of the book files.
+     */
+    final static String DEFAULT_DIRECTORY = "books";
+    /**
+     * XOR-ed into the key of a position with O to move.
+     */
+    final static long SIDE_KEY = 0x3C6EF372FE94F82BL;
+    private final static int MAGIC = 0x50504C42;
+    private final static int VERSION = 1;
+    private final static String TEMPORARY_SUFFIX = ".tmp";
+    private final static ConcurrentMap<Long, PerfectPlayBook> SHARED = new ConcurrentHashMap<>();
+    private static volatile Path directory = Paths.get(DEFAULT_DIRECTORY);
+
+    private final BoardGeometry geometry;
+    private final long[] keys;
+    private final int[] moves;
+
+    /**
+     * Creates a book.
+     * @param geometry The geometry of the solved board.
+     * @param entries The moves of the book, by position key, in the orientation of the key.
+     */
+    PerfectPlayBook(BoardGeometry geometry, Map<Long, Integer> entries) {
+        this.geometry = geometry;
+        this.keys = new long[entries.size()];
+        this.moves = new int[entries.size()];
+        int index = 0;
+        for (long key : entries.keySet()) {
+            this.keys[index++] = key;
+        }
+        Arrays.sort(this.keys);
+        for (index = 0; index < this.keys.length; index++) {
+            this.moves[index] = entries.get(this.keys[index]);
+        }
+    }
+
+    private PerfectPlayBook(BoardGeometry geometry, long[] keys, int[] moves) {
+        this.geometry = geometry;
+        this.keys = keys;
+        this.moves = moves;
+    }
+
+    /**
+     * Sets the directory that shared books are loaded from. Must be called before the first game.
+     * @param booksDirectory The directory holding the book files.
+     */
+    static void configureDirectory(Path booksDirectory) {
+        directory = booksDirectory;
+        SHARED.clear();
+    }
+
+    /**
+     * Gets the book of the given board, shared by every player in the process. It is loaded from the
+     * books directory on first use, or is empty if the board was not solved.
+     * @param size The size of the board.
+     * @param winStreak The number of marks in a row needed to win.
+     * @return The shared book.
+     * @throws IllegalStateException if the book file cannot be read and was not preloaded.
+     */
+    static PerfectPlayBook shared(int size, int winStreak) {
+        PerfectPlayBook book = SHARED.get(BoardGeometry.key(size, winStreak));
+        if (book != null) {
+            return book;
+        }
+        try {
+            return preload(size, winStreak);
+        }
+        catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Loads the book of the given board into the shared books, unless it was loaded already, so that a
+     * book file that cannot be read is reported before the first game instead of during it.
+     * @param size The size of the board.
+     * @param winStreak The number of marks in a row needed to win.
+     * @return The shared book.
+     * @throws IOException if the book file cannot be read or is not the book of the board.
+     */
+    static PerfectPlayBook preload(int size, int winStreak) throws IOException {
+        PerfectPlayBook book = SHARED.get(BoardGeometry.key(size, winStreak));
+        if (book != null) {
+            return book;
+        }
+        BoardGeometry geometry = BoardGeometry.of(size, winStreak);
+        Path path = directory.resolve(fileName(size, winStreak));
+        book = Files.exists(path) ? load(path) : new PerfectPlayBook(geometry, new long[0], new int[0]);
+        if (book.geometry != geometry) {
+            throw new IOException(Constants.corruptBookString(path.toString()));
+        }
+        PerfectPlayBook loaded = SHARED.putIfAbsent(BoardGeometry.key(size, winStreak), book);
+        return loaded != null ? loaded : book;
+    }
+
+    /**
+     * Gets the name of the book file of a board.
+     * @param size The size of the board.
+     * @param winStreak The number of marks in a row needed to win.
+     * @return The file name, relative to the books directory.
+     */
+    static String fileName(int size, int winStreak) {
+        return "book-" + size + "-" + winStreak + ".bin";
+    }
+
+    /**
+     * Gets the geometry of the board the book was solved for.
+     * @return The geometry.
+     */
+    BoardGeometry getGeometry() {
+        return this.geometry;
+    }
+
+    /**
+     * Gets the number of positions in the book.
+     * @return The number of positions.
+     */
+    int getEntryCount() {
+        return this.keys.length;
+    }
+
+    /**
+     * Gets the book move of a position.
+     * @param board A read-only view of a board of the book's geometry.
+     * @param mark The mark of the side to move.
+     * @return The cell index of the move, or Board.NO_MOVE if the position is not in the book.
+     */
+    int lookup(BoardView board, Mark mark) {
+        if (this.keys.length == 0 || board.getGeometry() != this.geometry) {
+            return Board.NO_MOVE;
+        }
+        int symmetry = canonicalSymmetry(board);
+        long key = symmetricHash(board, symmetry) ^ (mark == Mark.O ? SIDE_KEY : 0);
+        int index = Arrays.binarySearch(this.keys, key);
+        if (index < 0) {
+            return Board.NO_MOVE;
+        }
+        int[] image = this.geometry.getSymmetry(symmetry);
+        for (int cell = 0; cell < image.length; cell++) {
+            if (image[cell] == this.moves[index]) {
+                return board.getMark(board.rowOf(cell), board.colOf(cell)) == Mark.BLANK ? cell : Board.NO_MOVE;
+            }
+        }
+        return Board.NO_MOVE;
+    }
+
+    /**
+     * Writes the book to a file: a header with the board geometry, then the positions and their moves.
+     * The file is replaced at once, so a reader never sees half a book.
+     * @param path The book file.
+     * @throws IOException if the file cannot be written.
+     */
+    void save(Path path) throws IOException {
+        Path temporary = path.resolveSibling(path.getFileName() + TEMPORARY_SUFFIX);
+        try (FileOutputStream file = new FileOutputStream(temporary.toFile());
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(file))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(this.geometry.getSize());
+            out.writeInt(this.geometry.getWinStreak());
+            out.writeInt(this.keys.length);
+            for (int index = 0; index < this.keys.length; index++) {
+                out.writeLong(this.keys[index]);
+                out.writeInt(this.moves[index]);
+            }
+            out.flush();
+            file.getFD().sync();
+        }
+        Files.move(temporary, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /**
+     * Loads a book file.
+     * @param path The book file.
+     * @return The book.
+     * @throws IOException if the file cannot be read or is not a book file.
+     */
+    static PerfectPlayBook load(Path path) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                throw new IOException(Constants.notABookString(path.toString()));
+            }
+            int size = in.readInt();
+            int winStreak = in.readInt();
+            int count = in.readInt();
+            if (size < 1 || winStreak < 1 || winStreak > size || count < 0) {
+                throw new IOException(Constants.corruptBookString(path.toString()));
+            }
+            BoardGeometry geometry = BoardGeometry.of(size, winStreak);
+            long[] keys = new long[count];
+            int[] moves = new int[count];
+            for (int index = 0; index < count; index++) {
+                keys[index] = in.readLong();
+                moves[index] = in.readInt();
+                if (moves[index] < 0 || moves[index] >= geometry.getCellCount()
+                        || (index > 0 && keys[index] <= keys[index - 1])) {
+                    throw new IOException(Constants.corruptBookString(path.toString()));
+                }
+            }
+            return new PerfectPlayBook(geometry, keys, moves);
+        }
+        catch (EOFException e) {
+            throw new IOException(Constants.corruptBookString(path.toString()));
+        }
+    }
+
+    /**
+     * Finds the symmetry under which a position has its smallest hash.
+     * @param board The position.
+     * @return The symmetry, from 0 to BoardGeometry.SYMMETRIES - 1.
+     */
+    static int canonicalSymmetry(BoardView board) {
+        int best = 0;
+        long bestHash = symmetricHash(board, 0);
+        for (int symmetry = 1; symmetry < BoardGeometry.SYMMETRIES; symmetry++) {
+            long hash = symmetricHash(board, symmetry);
+            if (Long.compareUnsigned(hash, bestHash) < 0) {
+                best = symmetry;
+                bestHash = hash;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Computes the Zobrist hash of a position seen through a symmetry of the board.
+     * @param board The position.
+     * @param symmetry The symmetry, from 0 to BoardGeometry.SYMMETRIES - 1.
+     * @return The hash of the image of the position.
+     */
+    static long symmetricHash(BoardView board, int symmetry) {
+        int[] image = board.getGeometry().getSymmetry(symmetry);
+        long hash = 0;
+        for (int cell = 0; cell < image.length; cell++) {
+            Mark mark = board.getMark(board.rowOf(cell), board.colOf(cell));
+            if (mark != Mark.BLANK) {
+                hash ^= Board.zobristKey(board.getSize(), mark, image[cell]);
+            }
+        }
+        return hash;
+    }
+}
@@ -1,17 +1,45 @@
 /**
  * Represents a player in a two-player game.
- * Defines the method for playing a turn on the game board.
- * Implementing classes must provide an implementation for the playTurn method.
+ * A player is shown a read-only view of the game board and returns the move it chooses;
+ * the game validates the move and places the mark. Because a player cannot change the board,
+ * the same position may be offered to several players at once, for example in parallel.
+ * Implementing classes must provide an implementation for the chooseMove method.
  * @author Yinon Kedem
+ * @see BoardView
  * @see Board
  * @see Mark
  */
 interface Player{
     /**
-     * Plays a turn on the game board for the specified player mark.
-     * Implementing classes must define the behavior of playing a turn.
+     * Chooses a move for the specified player mark.
+     * Implementing classes must define the behavior of choosing a move, and must not keep the view
+     * after returning.
+     * @param board A read-only view of the game board on which the turn is played.
+     * @param mark The mark associated with the player (X or O).
+     * @return The cell index of an empty cell, as given by board.cellIndex, or Board.NO_MOVE to pass the turn.
+     */
+    int chooseMove(BoardView board, Mark mark);
+
+    /**
+     * Plays a turn on the game board for the specified player mark, placing the mark on the
+     * cell returned by chooseMove.
      * @param board The game board on which the turn is played.
      * @param mark The mark associated with the player (X or O).
      */
-    void playTurn(Board board, Mark mark);
-}
\ No newline at end of file
+    default void playTurn(Board board, Mark mark) {
+        int move = chooseMove(board, mark);
+        if (move != Board.NO_MOVE) {
+            board.putMark(mark, board.rowOf(move), board.colOf(move));
+        }
+    }
+
+    /**
+     * Checks if the player always chooses the same move in the same position, whatever happened before
+     * and however long it takes. A game between two deterministic players is then the same in every
+     * round with the same marks, so a tournament may play it once.
+     * @return true if the move depends only on the position and the mark, false otherwise.
+     */
+    default boolean isDeterministic() {
+        return false;
+    }
+}
@@ -1,7 +1,7 @@
 /**
  * Factory class responsible for creating instances of different player types.
  * Provides a static method to build and return a player based on the specified type.
- * Supported player types include "human," "clever," "whatever," and "genius."
+ * Supported player types include "human," "clever," "whatever," "genius," "search," "ntuple," and "scripted."
  * Each player type corresponds to a specific implementation of the Player interface.
  * @author Yinon Kedem
  * @see Player
@@ -9,11 +9,14 @@
  * @see CleverPlayer
  * @see WhateverPlayer
  * @see GeniusPlayer
+ * @see SearchPlayer
+ * @see NTuplePlayer
+ * @see ScriptedPlayer
  */
 class PlayerFactory {
     /**
      * Builds and returns a player instance based on the specified player type.
-     * @param type The type of player to build ("human," "clever," "whatever," or "genius").
+     * @param type The type of player to build ("human," "clever," "whatever," "genius," "search," "ntuple," or "scripted").
      * @return An instance of the Player interface corresponding to the specified type.
      */
     public static Player buildPlayer(String type){
@@ -31,11 +34,33 @@ class PlayerFactory {
             case "genius":
             build = new GeniusPlayer();
                 break;
+            case "search":
+                build = new SearchPlayer();
+                break;
+            case "ntuple":
+                build = new NTuplePlayer();
+                break;
+            case "scripted":
+                build = new ScriptedPlayer();
+                break;
             default:
                 build = null;
                 break;
         }
         return build;
     }
+    /**
+     * Builds and returns a player instance based on the specified player type, drawing any
+     * random decisions of the player from the given source.
+     * @param type The type of player to build ("human," "clever," "whatever," "genius," "search," "ntuple," or "scripted").
+     * @param random The source of random decisions, used by the "whatever" player.
+     * @return An instance of the Player interface corresponding to the specified type.
+     */
+    public static Player buildPlayer(String type, RandomSource random){
+        if (type.equals("whatever")){
+            return new WhateverPlayer(random);
+        }
+        return buildPlayer(type);
+    }
 
 }
\ No newline at end of file
@@ -0,0 +1,173 @@
+/**
+ * A compact text notation of a position: the rows of the board from top to bottom separated by '/',
+ * the mark of the side to move and the win streak, separated by spaces. In a row, 'x' and 'o' are
+ * marks and a number stands for that many empty cells, so "3/1x1/o2 x 3" is a 3x3 board holding an X
+ * in its center and an O in its bottom left corner, with X to move.
+ * A notation takes one line, and the empty 15x15 board takes less than 50 characters.
+ * @author Yinon Kedem
+ * @see Board
+ * @see BoardSnapshot
+ * @see EvaluationPipeline
+ */
+final class PositionNotation {
+    private final static char ROW_SEPARATOR = '/';
+    private final static char FIELD_SEPARATOR = ' ';
+
+    private final BoardSnapshot board;
+    private final Mark sideToMove;
+
+    private PositionNotation(BoardSnapshot board, Mark sideToMove) {
+        this.board = board;
+        this.sideToMove = sideToMove;
+    }
+
+    /**
+     * Parses a position.
+     * @param text The notation of the position.
+     * @return The position.
+     * @throws IllegalArgumentException if the text is not a valid notation.
+     */
+    static PositionNotation parse(String text) {
+        int sideStart = text.indexOf(FIELD_SEPARATOR);
+        int streakStart = sideStart < 0 ? -1 : text.indexOf(FIELD_SEPARATOR, sideStart + 1);
+        if (streakStart < 0 || streakStart != sideStart + 2) {
+            throw new IllegalArgumentException(Constants.invalidPositionString(text));
+        }
+        Mark sideToMove = parseMark(text.charAt(sideStart + 1), text);
+        int size = 1;
+        for (int index = 0; index < sideStart; index++) {
+            if (text.charAt(index) == ROW_SEPARATOR) {
+                size++;
+            }
+        }
+        int winStreak;
+        try {
+            winStreak = Integer.parseInt(text.substring(streakStart + 1).trim());
+        }
+        catch (NumberFormatException e) {
+            throw new IllegalArgumentException(Constants.invalidPositionString(text));
+        }
+        if (winStreak < 1 || winStreak > size) {
+            throw new IllegalArgumentException(Constants.invalidPositionString(text));
+        }
+        Mark[][] rows = new Mark[size][size];
+        long hash = 0;
+        int occupiedCells = 0;
+        int row = 0;
+        int col = 0;
+        for (int index = 0; index < sideStart; index++) {
+            char symbol = text.charAt(index);
+            if (symbol == ROW_SEPARATOR) {
+                checkRowFull(col, size, text);
+                row++;
+                col = 0;
+            }
+            else if (Character.isDigit(symbol)) {
+                int blanks = 0;
+                while (index < sideStart && Character.isDigit(text.charAt(index))) {
+                    blanks = blanks * 10 + (text.charAt(index++) - '0');
+                }
+                index--;
+                if (blanks == 0 || col + blanks > size) {
+                    throw new IllegalArgumentException(Constants.invalidPositionString(text));
+                }
+                for (int blank = 0; blank < blanks; blank++) {
+                    rows[row][col++] = Mark.BLANK;
+                }
+            }
+            else {
+                if (col >= size) {
+                    throw new IllegalArgumentException(Constants.invalidPositionString(text));
+                }
+                Mark mark = parseMark(symbol, text);
+                rows[row][col] = mark;
+                hash ^= Board.zobristKey(size, mark, row * size + col);
+                occupiedCells++;
+                col++;
+            }
+        }
+        checkRowFull(col, size, text);
+        return new PositionNotation(new BoardSnapshot(size, winStreak, rows, hash, occupiedCells), sideToMove);
+    }
+
+    /**
+     * Writes the notation of a position.
+     * @param board The position.
+     * @param sideToMove The mark of the side to move.
+     * @return The notation.
+     */
+    static String format(BoardView board, Mark sideToMove) {
+        StringBuilder text = new StringBuilder();
+        format(board, sideToMove, text);
+        return text.toString();
+    }
+
+    /**
+     * Appends the notation of a position to a buffer.
+     * @param board The position.
+     * @param sideToMove The mark of the side to move.
+     * @param text The buffer to append to.
+     */
+    static void format(BoardView board, Mark sideToMove, StringBuilder text) {
+        for (int row = 0; row < board.getSize(); row++) {
+            if (row > 0) {
+                text.append(ROW_SEPARATOR);
+            }
+            int blanks = 0;
+            for (int col = 0; col < board.getSize(); col++) {
+                Mark mark = board.getMark(row, col);
+                if (mark == Mark.BLANK) {
+                    blanks++;
+                    continue;
+                }
+                if (blanks > 0) {
+                    text.append(blanks);
+                    blanks = 0;
+                }
+                text.append(mark == Mark.X ? 'x' : 'o');
+            }
+            if (blanks > 0) {
+                text.append(blanks);
+            }
+        }
+        text.append(FIELD_SEPARATOR).append(sideToMove == Mark.X ? 'x' : 'o')
+                .append(FIELD_SEPARATOR).append(board.getWinStreak());
+    }
+
+    /**
+     * Gets the board of the position.
+     * @return An immutable snapshot of the board.
+     */
+    BoardSnapshot getBoard() {
+        return this.board;
+    }
+
+    /**
+     * Gets the side to move in the position.
+     * @return The mark X or O.
+     */
+    Mark getSideToMove() {
+        return this.sideToMove;
+    }
+
+    @Override
+    public String toString() {
+        return format(this.board, this.sideToMove);
+    }
+
+    private static Mark parseMark(char symbol, String text) {
+        if (symbol == 'x' || symbol == 'X') {
+            return Mark.X;
+        }
+        if (symbol == 'o' || symbol == 'O') {
+            return Mark.O;
+        }
+        throw new IllegalArgumentException(Constants.invalidPositionString(text));
+    }
+
+    private static void checkRowFull(int col, int size, String text) {
+        if (col != size) {
+            throw new IllegalArgumentException(Constants.invalidPositionString(text));
+        }
+    }
+}
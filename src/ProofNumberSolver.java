@@ -0,0 +1,534 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Solves k-in-a-row boards from the empty position with depth-first proof-number search (df-pn).
+ * A proof-number search proves or disproves one goal. The solver first tries to prove that X wins;
+ * failing that, that O wins; a board where neither wins is a draw. Every position holds a proof and a
+ * disproof number seen by the side to move, the smallest number of positions still to be solved to
+ * reach or to give up its goal, and the search always expands the position that is cheapest to solve.
+ * A side that can win at once is solved without expanding its position, and a side facing a win of the
+ * opponent only tries the cells that stop it.
+ * Positions are stored in a bounded ProofTable once for all 8 symmetries of the board, under the smallest
+ * of their 8 Zobrist hashes, which the solver keeps up to date move by move. The table is checkpointed
+ * to a file, so a long solve may be stopped and resumed. The proof is then walked once to count its
+ * positions and to write a PerfectPlayBook of the moves that keep the value of every proven position.
+ * Usage: java ProofNumberSolver size winStreak [--table-mb=64] [--checkpoint=file] [--checkpoint-interval=60]
+ * [--resume] [--book=file]
+ * @author Yinon Kedem
+ * @see ProofTable
+ * @see PerfectPlayBook
+ * @see BoardGeometry
+ */
+final class ProofNumberSolver {
+    /**
+     * The game-theoretic value of a position for the side to move.
+     */
+    enum Result {
+        /**
+         * The side to move wins.
+         */
+        WIN,
+
+        /**
+         * Neither side can force a win.
+         */
+        DRAW,
+
+        /**
+         * The opponent wins.
+         */
+        LOSS
+    }
+
+    /**
+     * The default memory of the node table, in MB.
+     */
+    final static int DEFAULT_TABLE_MB = 64;
+    /**
+     * The default number of seconds between two checkpoints.
+     */
+    final static int DEFAULT_CHECKPOINT_INTERVAL_SECONDS = 60;
+    /**
+     * The proof or disproof number of a solved position.
+     */
+    final static int INFINITY = 1 << 30;
+    private final static int POSITIONAL_ARGUMENTS = 2;
+    private final static String TABLE_SIZE_OPTION = "table-mb";
+    private final static String CHECKPOINT_OPTION = "checkpoint";
+    private final static String CHECKPOINT_INTERVAL_OPTION = "checkpoint-interval";
+    private final static String RESUME_OPTION = "resume";
+    private final static String BOOK_OPTION = "book";
+    private final static int MAGIC = 0x50525346;
+    private final static int VERSION = 1;
+    private final static String TEMPORARY_SUFFIX = ".tmp";
+    // XOR-ed into the table key of the positions of the search where O is the attacker
+    private final static long ATTACKER_KEY = 0xA54FF53A5F1D36F1L;
+    // the clock is read once every CLOCK_CHECK_MASK + 1 nodes
+    private final static long CLOCK_CHECK_MASK = (1 << 16) - 1;
+
+    private final Board board;
+    private final BoardGeometry geometry;
+    private final int[] cellOrder;
+    private final long[][] symmetricKeys;
+    private final long[] hashes = new long[BoardGeometry.SYMMETRIES];
+    private final int[][] moves;
+    private final long[][] childKeys;
+    private final int[][] childProofNumbers;
+    private final int[][] childDisproofNumbers;
+    private ProofTable table;
+    private Mark attacker = Mark.X;
+    private int winningCell;
+    private int resultProofNumber;
+    private int resultDisproofNumber;
+    private long nodes = 0;
+    private Path checkpointPath = null;
+    private long checkpointIntervalNanos = TimeUnit.SECONDS.toNanos(DEFAULT_CHECKPOINT_INTERVAL_SECONDS);
+    private long lastCheckpointNanos;
+
+    /**
+     * Constructs a solver.
+     * @param size The size of the board.
+     * @param winStreak The number of marks in a row needed to win.
+     * @param table The node table.
+     */
+    ProofNumberSolver(int size, int winStreak, ProofTable table) {
+        this.board = new Board(size, winStreak);
+        this.geometry = this.board.getGeometry();
+        this.table = table;
+        int cells = this.geometry.getCellCount();
+        // cells nearer the center first, so equally promising moves are tried from the center out
+        Integer[] order = new Integer[cells];
+        for (int cell = 0; cell < cells; cell++) {
+            order[cell] = cell;
+        }
+        double center = (size - 1) / 2.0;
+        Arrays.sort(order, (first, second) -> Double.compare(
+                Math.abs(this.geometry.rowOf(first) - center) + Math.abs(this.geometry.colOf(first) - center),
+                Math.abs(this.geometry.rowOf(second) - center) + Math.abs(this.geometry.colOf(second) - center)));
+        this.cellOrder = new int[cells];
+        for (int index = 0; index < cells; index++) {
+            this.cellOrder[index] = order[index];
+        }
+        this.symmetricKeys = new long[BoardGeometry.SYMMETRIES][2 * cells];
+        for (int symmetry = 0; symmetry < BoardGeometry.SYMMETRIES; symmetry++) {
+            int[] image = this.geometry.getSymmetry(symmetry);
+            for (int cell = 0; cell < cells; cell++) {
+                this.symmetricKeys[symmetry][2 * cell] = Board.zobristKey(size, Mark.X, image[cell]);
+                this.symmetricKeys[symmetry][2 * cell + 1] = Board.zobristKey(size, Mark.O, image[cell]);
+            }
+        }
+        this.moves = new int[cells + 1][cells];
+        this.childKeys = new long[cells + 1][cells];
+        this.childProofNumbers = new int[cells + 1][cells];
+        this.childDisproofNumbers = new int[cells + 1][cells];
+    }
+
+    /**
+     * Entry point: solves a board, prints the result, the proof size and the speed, and writes the book.
+     * @param args The board size and the win streak, then the options.
+     */
+    public static void main(String[] args) {
+        try {
+            if (args.length < POSITIONAL_ARGUMENTS) {
+                throw new IllegalArgumentException(Constants.SOLVER_ARGUMENTS_MISSING);
+            }
+            int size = parsePositional(args[0]);
+            int winStreak = parsePositional(args[1]);
+            CommandLineOptions options = new CommandLineOptions(args, POSITIONAL_ARGUMENTS);
+            if (winStreak < 2 || winStreak > size) {
+                throw new IllegalArgumentException(Constants.invalidOptionString(args[1]));
+            }
+            ProofNumberSolver solver = new ProofNumberSolver(size, winStreak,
+                    new ProofTable(options.getInt(TABLE_SIZE_OPTION, DEFAULT_TABLE_MB)));
+            if (options.has(CHECKPOINT_OPTION)) {
+                solver.configureCheckpoint(Paths.get(options.getString(CHECKPOINT_OPTION, "")),
+                        TimeUnit.SECONDS.toNanos(options.getLong(CHECKPOINT_INTERVAL_OPTION,
+                                DEFAULT_CHECKPOINT_INTERVAL_SECONDS)), options.has(RESUME_OPTION));
+            }
+            else if (options.has(RESUME_OPTION)) {
+                throw new IllegalArgumentException(Constants.invalidOptionString("--" + RESUME_OPTION));
+            }
+            long resumedNodes = solver.getNodes();
+            long start = System.nanoTime();
+            Result result = solver.solve();
+            double seconds = (System.nanoTime() - start) / 1e9;
+            Map<Long, Integer> bookMoves = new HashMap<>();
+            long proofSize = solver.proofSize(bookMoves);
+            Path bookPath = Paths.get(options.getString(BOOK_OPTION,
+                    Paths.get(PerfectPlayBook.DEFAULT_DIRECTORY, PerfectPlayBook.fileName(size, winStreak)).toString()));
+            try {
+                if (bookPath.getParent() != null) {
+                    Files.createDirectories(bookPath.getParent());
+                }
+                new PerfectPlayBook(solver.geometry, bookMoves).save(bookPath);
+            }
+            catch (IOException e) {
+                // the checkpoint is kept, so the solve need not be run again to write the book
+                System.out.println(Constants.bookFailedString(e.getMessage()));
+                return;
+            }
+            solver.deleteCheckpoint();
+            System.out.println("######### Solved #########\n" +
+                    "Board: " + size + "x" + size + ", " + winStreak + " in a row\n" +
+                    "Result: " + result + " for X, the first player\n" +
+                    "Proof size: " + proofSize + " positions\n" +
+                    "Nodes: " + solver.getNodes() + " in " + String.format("%.3f", seconds) + " s\n" +
+                    "Nodes per second: " + (seconds > 0 ? Math.round((solver.getNodes() - resumedNodes) / seconds) : 0)
+                    + "\n" +
+                    "Book: " + bookMoves.size() + " positions in " + bookPath);
+        }
+        catch (IllegalArgumentException e) {
+            System.out.println(e.getMessage());
+        }
+        catch (IOException e) {
+            System.out.println(Constants.checkpointFailedString(e.getMessage()));
+        }
+    }
+
+    /**
+     * Parses a positional argument of the solver.
+     * @param arg The argument.
+     * @return The value of the argument.
+     * @throws IllegalArgumentException if the argument is not an integer.
+     */
+    private static int parsePositional(String arg) {
+        try {
+            return Integer.parseInt(arg);
+        }
+        catch (NumberFormatException e) {
+            throw new IllegalArgumentException(Constants.invalidOptionString(arg));
+        }
+    }
+
+    /**
+     * Makes the solver write its node table to a file every interval, and optionally resume from it.
+     * @param path The checkpoint file.
+     * @param intervalNanos The time between two checkpoints.
+     * @param resume true to load the table from the file, if there is one.
+     * @throws IOException if the file exists but cannot be read or was written for another board.
+     */
+    void configureCheckpoint(Path path, long intervalNanos, boolean resume) throws IOException {
+        this.checkpointPath = path;
+        this.checkpointIntervalNanos = intervalNanos;
+        if (resume && Files.exists(path)) {
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+                if (in.readInt() != MAGIC || in.readInt() != VERSION || in.readInt() != this.geometry.getSize()
+                        || in.readInt() != this.geometry.getWinStreak()) {
+                    throw new IOException(Constants.SOLVER_CHECKPOINT_MISMATCH);
+                }
+                this.nodes = in.readLong();
+                this.table = ProofTable.readFrom(in);
+            }
+        }
+    }
+
+    /**
+     * Solves the empty board.
+     * @return The value of the empty board for X, who moves first.
+     */
+    Result solve() {
+        this.lastCheckpointNanos = System.nanoTime();
+        if (provesWin(Mark.X)) {
+            return Result.WIN;
+        }
+        return provesWin(Mark.O) ? Result.LOSS : Result.DRAW;
+    }
+
+    /**
+     * Gets the number of positions expanded, including those of the runs resumed from.
+     * @return The number of nodes.
+     */
+    long getNodes() {
+        return this.nodes;
+    }
+
+    /**
+     * Walks the proofs of the last solve, re-solving the positions the table no longer holds, and
+     * collects the book moves: for every proven position, the move that keeps its value.
+     * @param bookMoves The map the book moves are put in, by position key, in the orientation of the key.
+     * @return The number of distinct positions in the proofs.
+     */
+    long proofSize(Map<Long, Integer> bookMoves) {
+        Set<Long> visited = new HashSet<>();
+        // a win of X needs no second proof; the result is read before the walk, which leaves the last
+        // position it visited in the result fields
+        boolean firstPlayerWins = provesWin(Mark.X);
+        long positions = 0;
+        for (Mark goal : new Mark[] {Mark.X, Mark.O}) {
+            this.attacker = goal;
+            resetBoard();
+            positions += walk(0, Mark.X, visited, bookMoves);
+            if (firstPlayerWins) {
+                break;
+            }
+        }
+        return positions;
+    }
+
+    private boolean provesWin(Mark goal) {
+        this.attacker = goal;
+        resetBoard();
+        solveNode(0, Mark.X, key(Mark.X));
+        // the root is seen by X: X proves its goal when it attacks, O proves its goal when X defends
+        return goal == Mark.X ? this.resultProofNumber == 0 : this.resultDisproofNumber == 0;
+    }
+
+    private void solveNode(int ply, Mark mark, long key) {
+        long data = this.table.probe(key);
+        if (data != ProofTable.MISS && (ProofTable.proofNumber(data) == 0 || ProofTable.disproofNumber(data) == 0)) {
+            this.resultProofNumber = ProofTable.proofNumber(data);
+            this.resultDisproofNumber = ProofTable.disproofNumber(data);
+            return;
+        }
+        search(ply, mark, key, INFINITY, INFINITY);
+    }
+
+    /**
+     * The multiple iterative deepening step of df-pn: expands a position until its proof number reaches
+     * the proof threshold or its disproof number the disproof threshold, then stores it.
+     */
+    private void search(int ply, Mark mark, long key, int proofThreshold, int disproofThreshold) {
+        this.nodes++;
+        if ((this.nodes & CLOCK_CHECK_MASK) == 0) {
+            checkpointIfDue();
+        }
+        int count = generate(ply, mark);
+        if (count < 0) {
+            finish(key, 0, INFINITY);
+            return;
+        }
+        if (count == 0) {
+            // a full board is a draw, which the attacker failed to win and the defender held
+            if (mark == this.attacker) {
+                finish(key, INFINITY, 0);
+            }
+            else {
+                finish(key, 0, INFINITY);
+            }
+            return;
+        }
+        Mark opponent = AlphaBetaSearch.opponent(mark);
+        int[] proofNumbers = this.childProofNumbers[ply];
+        int[] disproofNumbers = this.childDisproofNumbers[ply];
+        for (int index = 0; index < count; index++) {
+            long data = this.table.probe(this.childKeys[ply][index]);
+            proofNumbers[index] = data == ProofTable.MISS ? 1 : ProofTable.proofNumber(data);
+            disproofNumbers[index] = data == ProofTable.MISS ? 1 : ProofTable.disproofNumber(data);
+        }
+        while (true) {
+            // the side to move needs one child its opponent cannot reach its goal from, and loses with all
+            int best = 0;
+            long proofNumber = INFINITY;
+            long secondProofNumber = INFINITY;
+            long disproofNumber = 0;
+            for (int index = 0; index < count; index++) {
+                if (disproofNumbers[index] < proofNumber) {
+                    secondProofNumber = proofNumber;
+                    proofNumber = disproofNumbers[index];
+                    best = index;
+                }
+                else if (disproofNumbers[index] < secondProofNumber) {
+                    secondProofNumber = disproofNumbers[index];
+                }
+                disproofNumber = proofNumbers[index] == INFINITY || disproofNumber == INFINITY ? INFINITY
+                        : Math.min(INFINITY - 1, disproofNumber + proofNumbers[index]);
+            }
+            if (proofNumber >= proofThreshold || disproofNumber >= disproofThreshold) {
+                finish(key, (int) proofNumber, (int) disproofNumber);
+                return;
+            }
+            int childProofThreshold = (int) Math.min(INFINITY,
+                    (long) disproofThreshold + proofNumbers[best] - disproofNumber);
+            int childDisproofThreshold = (int) Math.min(proofThreshold, secondProofNumber + 1);
+            int cell = this.moves[ply][best];
+            play(mark, cell);
+            search(ply + 1, opponent, this.childKeys[ply][best], childProofThreshold, childDisproofThreshold);
+            undo(mark, cell);
+            proofNumbers[best] = this.resultProofNumber;
+            disproofNumbers[best] = this.resultDisproofNumber;
+        }
+    }
+
+    /**
+     * Lists the moves of a position with their keys: none if the side to move wins at once, the cells
+     * that stop an immediate win of the opponent if it has one, or else every empty cell.
+     * @return The number of moves, 0 for a full board, or -1 if the side to move wins at once.
+     */
+    private int generate(int ply, Mark mark) {
+        Mark opponent = AlphaBetaSearch.opponent(mark);
+        int[] plyMoves = this.moves[ply];
+        int count = 0;
+        for (int cell : this.cellOrder) {
+            int row = this.geometry.rowOf(cell);
+            int col = this.geometry.colOf(cell);
+            if (this.board.getMark(row, col) != Mark.BLANK) {
+                continue;
+            }
+            if (this.board.wouldComplete(mark, row, col)) {
+                this.winningCell = cell;
+                return -1;
+            }
+            if (this.board.wouldComplete(opponent, row, col)) {
+                plyMoves[count++] = cell;
+            }
+        }
+        if (count == 0) {
+            for (int cell : this.cellOrder) {
+                if (this.board.getMark(this.geometry.rowOf(cell), this.geometry.colOf(cell)) == Mark.BLANK) {
+                    plyMoves[count++] = cell;
+                }
+            }
+        }
+        for (int index = 0; index < count; index++) {
+            play(mark, plyMoves[index]);
+            this.childKeys[ply][index] = key(opponent);
+            undo(mark, plyMoves[index]);
+        }
+        return count;
+    }
+
+    /**
+     * Walks the proof below a solved position, see proofSize.
+     * @return The number of positions of the proof below and including this one not visited before.
+     */
+    private long walk(int ply, Mark mark, Set<Long> visited, Map<Long, Integer> bookMoves) {
+        long key = key(mark);
+        if (!visited.add(key)) {
+            return 0;
+        }
+        solveNode(ply, mark, key);
+        boolean proven = this.resultProofNumber == 0;
+        int count = generate(ply, mark);
+        if (count < 0) {
+            addBookMove(mark, this.winningCell, bookMoves);
+            return 1;
+        }
+        if (count == 0) {
+            return 1;
+        }
+        Mark opponent = AlphaBetaSearch.opponent(mark);
+        long positions = 1;
+        int[] plyMoves = this.moves[ply].clone();
+        long[] plyKeys = this.childKeys[ply].clone();
+        for (int index = 0; index < count; index++) {
+            int cell = plyMoves[index];
+            play(mark, cell);
+            solveNode(ply + 1, opponent, plyKeys[index]);
+            boolean refuted = this.resultDisproofNumber == 0;
+            if (!proven || refuted) {
+                positions += walk(ply + 1, opponent, visited, bookMoves);
+            }
+            undo(mark, cell);
+            if (proven && refuted) {
+                addBookMove(mark, cell, bookMoves);
+                break;
+            }
+        }
+        return positions;
+    }
+
+    private void addBookMove(Mark mark, int cell, Map<Long, Integer> bookMoves) {
+        int symmetry = canonicalSymmetry();
+        long key = this.hashes[symmetry] ^ (mark == Mark.O ? PerfectPlayBook.SIDE_KEY : 0);
+        int move = this.geometry.getSymmetry(symmetry)[cell];
+        // a winning move of the attacker replaces a move that only holds the draw
+        if (mark == this.attacker) {
+            bookMoves.put(key, move);
+        }
+        else {
+            bookMoves.putIfAbsent(key, move);
+        }
+    }
+
+    private void finish(long key, int proofNumber, int disproofNumber) {
+        this.table.store(key, proofNumber, disproofNumber);
+        this.resultProofNumber = proofNumber;
+        this.resultDisproofNumber = disproofNumber;
+    }
+
+    private void play(Mark mark, int cell) {
+        this.board.putMark(mark, this.geometry.rowOf(cell), this.geometry.colOf(cell));
+        int offset = 2 * cell + (mark == Mark.X ? 0 : 1);
+        for (int symmetry = 0; symmetry < BoardGeometry.SYMMETRIES; symmetry++) {
+            this.hashes[symmetry] ^= this.symmetricKeys[symmetry][offset];
+        }
+    }
+
+    private void undo(Mark mark, int cell) {
+        this.board.undo();
+        int offset = 2 * cell + (mark == Mark.X ? 0 : 1);
+        for (int symmetry = 0; symmetry < BoardGeometry.SYMMETRIES; symmetry++) {
+            this.hashes[symmetry] ^= this.symmetricKeys[symmetry][offset];
+        }
+    }
+
+    private void resetBoard() {
+        this.board.reset();
+        Arrays.fill(this.hashes, 0);
+    }
+
+    private int canonicalSymmetry() {
+        int best = 0;
+        for (int symmetry = 1; symmetry < BoardGeometry.SYMMETRIES; symmetry++) {
+            if (Long.compareUnsigned(this.hashes[symmetry], this.hashes[best]) < 0) {
+                best = symmetry;
+            }
+        }
+        return best;
+    }
+
+    private long key(Mark toMove) {
+        return this.hashes[canonicalSymmetry()] ^ (toMove == Mark.O ? PerfectPlayBook.SIDE_KEY : 0)
+                ^ (this.attacker == Mark.O ? ATTACKER_KEY : 0);
+    }
+
+    private void checkpointIfDue() {
+        if (this.checkpointPath == null || System.nanoTime() - this.lastCheckpointNanos < this.checkpointIntervalNanos) {
+            return;
+        }
+        try {
+            writeCheckpoint();
+        }
+        catch (IOException e) {
+            System.out.println(Constants.checkpointFailedString(e.getMessage()));
+        }
+        this.lastCheckpointNanos = System.nanoTime();
+    }
+
+    private void writeCheckpoint() throws IOException {
+        Path temporary = this.checkpointPath.resolveSibling(this.checkpointPath.getFileName() + TEMPORARY_SUFFIX);
+        try (FileOutputStream file = new FileOutputStream(temporary.toFile());
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(file))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(this.geometry.getSize());
+            out.writeInt(this.geometry.getWinStreak());
+            out.writeLong(this.nodes);
+            this.table.writeTo(out);
+            out.flush();
+            file.getFD().sync();
+        }
+        Files.move(temporary, this.checkpointPath, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    private void deleteCheckpoint() throws IOException {
+        if (this.checkpointPath != null) {
+            Files.deleteIfExists(this.checkpointPath);
+        }
+    }
+}
@@ -0,0 +1,171 @@
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+/**
+ * The bounded node table of the proof-number solver: the proof and disproof numbers of the positions
+ * searched so far, in a fixed number of buckets of 4 entries allocated up front, so the solver never
+ * uses more memory than it was given however long it runs. When a bucket is full, the entry with the
+ * smallest proof plus disproof number is replaced: it took the least work to find, and solved
+ * positions, holding an infinite number, are kept the longest.
+ * @author Yinon Kedem
+ * @see ProofNumberSolver
+ */
+final class ProofTable {
+    /**
+     * Returned by probe for a position that is not in the table.
+     */
+    final static long MISS = -1;
+    private final static int ENTRY_BYTES = Long.BYTES + 2 * Integer.BYTES;
+    private final static int BUCKET_ENTRIES = 4;
+    private final static long EMPTY = 0;
+
+    private final long[] keys;
+    private final int[] proofNumbers;
+    private final int[] disproofNumbers;
+    private final int bucketMask;
+
+    /**
+     * Creates an empty table.
+     * @param megabytes The memory of the table, rounded down to a power of two number of buckets.
+     */
+    ProofTable(int megabytes) {
+        this(new long[Integer.highestOneBit((int) Math.max(1, Math.min(Integer.MAX_VALUE / BUCKET_ENTRIES,
+                (long) megabytes * 1024 * 1024 / ENTRY_BYTES / BUCKET_ENTRIES))) * BUCKET_ENTRIES]);
+    }
+
+    private ProofTable(long[] keys) {
+        this.keys = keys;
+        this.proofNumbers = new int[keys.length];
+        this.disproofNumbers = new int[keys.length];
+        this.bucketMask = keys.length / BUCKET_ENTRIES - 1;
+    }
+
+    /**
+     * Looks a position up.
+     * @param key The key of the position.
+     * @return The proof number in the high and the disproof number in the low 32 bits, or MISS.
+     */
+    long probe(long key) {
+        long stored = storedKey(key);
+        int bucket = bucket(stored);
+        for (int entry = bucket; entry < bucket + BUCKET_ENTRIES; entry++) {
+            if (this.keys[entry] == stored) {
+                return ((long) this.proofNumbers[entry] << Integer.SIZE) | this.disproofNumbers[entry];
+            }
+        }
+        return MISS;
+    }
+
+    /**
+     * Stores the numbers of a position.
+     * @param key The key of the position.
+     * @param proofNumber The proof number, not negative.
+     * @param disproofNumber The disproof number, not negative.
+     */
+    void store(long key, int proofNumber, int disproofNumber) {
+        long stored = storedKey(key);
+        int bucket = bucket(stored);
+        int victim = bucket;
+        long victimWork = Long.MAX_VALUE;
+        for (int entry = bucket; entry < bucket + BUCKET_ENTRIES; entry++) {
+            if (this.keys[entry] == stored || this.keys[entry] == EMPTY) {
+                victim = entry;
+                break;
+            }
+            long work = (long) this.proofNumbers[entry] + this.disproofNumbers[entry];
+            if (work < victimWork) {
+                victim = entry;
+                victimWork = work;
+            }
+        }
+        this.keys[victim] = stored;
+        this.proofNumbers[victim] = proofNumber;
+        this.disproofNumbers[victim] = disproofNumber;
+    }
+
+    /**
+     * Gets the proof number of a probed entry.
+     * @param data The result of a successful probe.
+     * @return The proof number.
+     */
+    static int proofNumber(long data) {
+        return (int) (data >>> Integer.SIZE);
+    }
+
+    /**
+     * Gets the disproof number of a probed entry.
+     * @param data The result of a successful probe.
+     * @return The disproof number.
+     */
+    static int disproofNumber(long data) {
+        return (int) data;
+    }
+
+    /**
+     * Gets the number of entries in use.
+     * @return The number of positions stored.
+     */
+    int getUsedEntries() {
+        int used = 0;
+        for (long key : this.keys) {
+            if (key != EMPTY) {
+                used++;
+            }
+        }
+        return used;
+    }
+
+    /**
+     * Writes the entries in use to a stream.
+     * @param out The stream.
+     * @throws IOException if the stream cannot be written.
+     */
+    void writeTo(DataOutputStream out) throws IOException {
+        out.writeInt(this.keys.length);
+        out.writeInt(getUsedEntries());
+        for (int entry = 0; entry < this.keys.length; entry++) {
+            if (this.keys[entry] != EMPTY) {
+                out.writeInt(entry);
+                out.writeLong(this.keys[entry]);
+                out.writeInt(this.proofNumbers[entry]);
+                out.writeInt(this.disproofNumbers[entry]);
+            }
+        }
+    }
+
+    /**
+     * Reads a table written by writeTo.
+     * @param in The stream.
+     * @return The table, of the size it was written with.
+     * @throws IOException if the stream cannot be read or does not hold a table.
+     */
+    static ProofTable readFrom(DataInputStream in) throws IOException {
+        int entries = in.readInt();
+        if (entries < BUCKET_ENTRIES || Integer.bitCount(entries / BUCKET_ENTRIES) != 1
+                || entries % BUCKET_ENTRIES != 0) {
+            throw new IOException(Constants.CORRUPT_PROOF_TABLE);
+        }
+        ProofTable table = new ProofTable(new long[entries]);
+        int used = in.readInt();
+        for (int i = 0; i < used; i++) {
+            int entry = in.readInt();
+            if (entry < 0 || entry >= entries) {
+                throw new IOException(Constants.CORRUPT_PROOF_TABLE);
+            }
+            table.keys[entry] = in.readLong();
+            table.proofNumbers[entry] = in.readInt();
+            table.disproofNumbers[entry] = in.readInt();
+        }
+        return table;
+    }
+
+    private int bucket(long stored) {
+        return (int) ((stored ^ (stored >>> 32)) & this.bucketMask) * BUCKET_ENTRIES;
+    }
+
+    private static long storedKey(long key) {
+        // 0 marks an empty entry, so the one key that collides with it is stored as 1
+        return key == EMPTY ? 1 : key;
+    }
+}
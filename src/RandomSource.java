@@ -0,0 +1,85 @@
+/**
+ * A small, fast pseudo-random generator (SplitMix64) whose whole state is a single long,
+ * so it can be saved to a checkpoint and restored exactly.
+ * Independent, reproducible streams are derived from one master seed with derive, so every
+ * round of a tournament can be replayed on its own and on any thread.
+ * Not thread-safe: every thread must use its own source.
+ * @author Yinon Kedem
+ * @see WhateverPlayer
+ */
+final class RandomSource {
+    private final static long GOLDEN_GAMMA = 0x9E3779B97F4A7C15L;
+    private long state;
+
+    /**
+     * Creates a source that starts from the given seed.
+     * @param seed The initial state.
+     */
+    RandomSource(long seed) {
+        this.state = seed;
+    }
+
+    /**
+     * Gets the next pseudo-random long.
+     * @return A uniformly distributed long.
+     */
+    long nextLong() {
+        this.state += GOLDEN_GAMMA;
+        return mix(this.state);
+    }
+
+    /**
+     * Gets the next pseudo-random int in the range [0, bound).
+     * @param bound The exclusive upper bound, which must be positive.
+     * @return A uniformly distributed int between 0 and bound - 1.
+     */
+    int nextInt(int bound) {
+        int bits = (int) (nextLong() >>> 33);
+        int value = bits % bound;
+        // reject the top partial range, so small values are not favoured
+        while (bits - value + (bound - 1) < 0) {
+            bits = (int) (nextLong() >>> 33);
+            value = bits % bound;
+        }
+        return value;
+    }
+
+    /**
+     * Gets the current state, which restores this exact sequence when passed to setState.
+     * @return The state of the source.
+     */
+    long getState() {
+        return this.state;
+    }
+
+    /**
+     * Restores a state returned by getState.
+     * @param state The state to continue from.
+     */
+    void setState(long state) {
+        this.state = state;
+    }
+
+    /**
+     * Derives the seed of one stream of one round from a master seed. The result depends only on
+     * its arguments, never on the order in which streams are derived or on the thread deriving them.
+     * @param masterSeed The master seed of the tournament.
+     * @param round The index of the round.
+     * @param stream The index of the stream within the round, such as the player number.
+     * @return The seed of the stream.
+     */
+    static long derive(long masterSeed, long round, int stream) {
+        return mix(mix(masterSeed + GOLDEN_GAMMA * (round + 1)) + GOLDEN_GAMMA * (stream + 1));
+    }
+
+    /**
+     * Scrambles a value with the SplitMix64 finalizer.
+     * @param z The value to scramble.
+     * @return The scrambled value.
+     */
+    static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
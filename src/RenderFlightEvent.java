@@ -0,0 +1,59 @@
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.EventType;
+import jdk.jfr.FlightRecorder;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * A Java Flight Recorder event spanning one call to Renderer.renderBoard.
+ * Disabled by default; no event is even created unless a running recording enables it.
+ * @author Yinon Kedem
+ * @see Renderer
+ * @see RendererObserver
+ */
+@Name("tictactoe.Render")
+@Label("Render")
+@Category("Tic Tac Toe")
+@Description("A board drawn by a renderer")
+@Enabled(false)
+@StackTrace(false)
+class RenderFlightEvent extends jdk.jfr.Event {
+    @Label("Renderer")
+    String renderer;
+
+    @Label("Board Size")
+    int boardSize;
+
+    /**
+     * Creates and begins an event if a running recording enables it, so that playing without one
+     * allocates nothing.
+     * @return The begun event, or null if the event is not recorded.
+     */
+    static RenderFlightEvent start() {
+        if (!isRecorded()) {
+            return null;
+        }
+        RenderFlightEvent event = new RenderFlightEvent();
+        event.begin();
+        return event;
+    }
+
+    /**
+     * Checks if a render done now would be recorded: the flight recorder is running with this event enabled.
+     * @return true if the event is recorded, false otherwise.
+     */
+    static boolean isRecorded() {
+        return FlightRecorder.isInitialized() && Type.EVENT.isEnabled();
+    }
+
+    /**
+     * Holds the type of the event, looked up on first use so that a process without the flight recorder
+     * never registers it.
+     */
+    private final static class Type {
+        private final static EventType EVENT = EventType.getEventType(RenderFlightEvent.class);
+    }
+}
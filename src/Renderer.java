@@ -12,4 +12,11 @@ interface Renderer {
      * @param board The game board to be rendered.
      */
     void renderBoard(Board board);
+
+    /**
+     * Called at the end of every game and once no more boards will be rendered. Renderers that may
+     * skip boards draw the last one they skipped; by default it does nothing.
+     */
+    default void flush() {
+    }
 }
\ No newline at end of file
@@ -0,0 +1,58 @@
+/**
+ * A game observer that renders the board after every move, and flushes the renderer at the end of every
+ * game so that the final position is drawn before the board is cleared for the next one.
+ * Keeps its own copy of the board, rebuilt from the move events, so it may run on any thread.
+ * @author Yinon Kedem
+ * @see Renderer
+ * @see GameObserver
+ */
+class RendererObserver implements GameObserver {
+    private final Renderer renderer;
+    private Board board = null;
+
+    /**
+     * Constructs an observer that renders with the given renderer.
+     * @param renderer The renderer for displaying the game.
+     */
+    RendererObserver(Renderer renderer) {
+        this.renderer = renderer;
+    }
+
+    /**
+     * Replays the event on the observer's board and renders the board after every move.
+     * @param event The event.
+     * @param endOfBatch true if no further event is available right now, false otherwise.
+     */
+    @Override
+    public void onEvent(GameEvent event, boolean endOfBatch) {
+        switch (event.getType()) {
+            case GAME_STARTED:
+                if (this.board != null && this.board.getSize() == event.getBoardSize()
+                        && this.board.getWinStreak() == event.getWinStreak()) {
+                    while (this.board.undo()) {
+                        // clear the board of the previous game
+                    }
+                }
+                else {
+                    this.board = new Board(event.getBoardSize(), event.getWinStreak());
+                }
+                break;
+            case MOVE_PLAYED:
+                this.board.putMark(event.getMark(), event.getRow(), event.getCol());
+                RenderFlightEvent flightEvent = RenderFlightEvent.start();
+                this.renderer.renderBoard(this.board);
+                if (flightEvent != null && flightEvent.shouldCommit()) {
+                    flightEvent.renderer = this.renderer.getClass().getSimpleName();
+                    flightEvent.boardSize = this.board.getSize();
+                    flightEvent.commit();
+                }
+                break;
+            case GAME_WON:
+            case DRAW:
+                this.renderer.flush();
+                break;
+            default:
+                break;
+        }
+    }
+}
@@ -0,0 +1,141 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A player that replays the coordinates typed in a recorded human session.
+ * The script holds the numbers a human player would type, in the same two-digit row and column form,
+ * separated by spaces, newlines or any other non-digit characters. Each turn the player reads numbers
+ * until one names an empty cell on the board, skipping the others just as a human player is asked to type again.
+ * When the script runs out the player starts it over, so a short recording can drive any number of games.
+ * The script is memory-mapped once and parsed in place, without building strings or a scanner, and is
+ * shared read-only by every scripted player in the process; each player keeps its own position in it.
+ * @author Yinon Kedem
+ * @see Player
+ * @see HumanPlayer
+ * @see PlayerFactory
+ */
+class ScriptedPlayer implements Player {
+    // caps a parsed number, any number this long is out of range anyway
+    private final static int LARGEST_NUMBER = 1_000_000;
+    private static volatile ByteBuffer sharedScript = null;
+
+    private final ByteBuffer script;
+    private int position = 0;
+
+    /**
+     * Constructs a scripted player that replays the script configured for the process.
+     * @throws IllegalStateException if no script was configured.
+     */
+    ScriptedPlayer() {
+        this(sharedScript);
+    }
+
+    /**
+     * Constructs a scripted player that replays the given script.
+     * @param script The recorded coordinates, read from index 0 to the limit and never modified.
+     * @throws IllegalStateException if the script is null or holds no number.
+     */
+    ScriptedPlayer(ByteBuffer script) {
+        if (script == null || countEntries(script) == 0) {
+            throw new IllegalStateException(Constants.EMPTY_SCRIPT);
+        }
+        this.script = script;
+    }
+
+    /**
+     * Memory-maps the script replayed by scripted players built afterwards.
+     * @param path The script file.
+     * @throws IOException if the file cannot be read.
+     * @throws IllegalArgumentException if the file holds no number.
+     */
+    static void configureScript(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (countEntries(mapped) == 0) {
+                throw new IllegalArgumentException(Constants.EMPTY_SCRIPT);
+            }
+            sharedScript = mapped;
+        }
+    }
+
+    /**
+     * Chooses the next recorded coordinates that are in range and name an empty cell.
+     * @param board A read-only view of the game board.
+     * @param mark The mark associated with the player.
+     * @return The cell index of the coordinates.
+     * @throws IllegalStateException if no number in the whole script names an empty cell.
+     */
+    @Override
+    public int chooseMove(BoardView board, Mark mark) {
+        int restarts = 0;
+        while (restarts < 2) {
+            if (!skipToNumber()) {
+                this.position = 0;
+                restarts++;
+                continue;
+            }
+            int input = readNumber();
+            int row = input / 10;
+            int col = input % 10;
+            if (HumanPlayer.InputInRange(row, col, board) && HumanPlayer.emptyCell(row, col, board)) {
+                return board.cellIndex(row, col);
+            }
+        }
+        throw new IllegalStateException(Constants.EMPTY_SCRIPT);
+    }
+
+    /**
+     * Moves past the separators to the next number, or to the end of the script.
+     * @return true if a number follows, false if the script ended.
+     */
+    private boolean skipToNumber() {
+        int limit = this.script.limit();
+        while (this.position < limit) {
+            byte symbol = this.script.get(this.position);
+            if (isDigit(symbol) || (symbol == '-' && this.position + 1 < limit
+                    && isDigit(this.script.get(this.position + 1)))) {
+                return true;
+            }
+            this.position++;
+        }
+        return false;
+    }
+
+    /**
+     * Parses the number at the current position and moves past it.
+     * @return The number; a negative number is kept negative, so it is out of range as for a human player.
+     */
+    private int readNumber() {
+        int limit = this.script.limit();
+        boolean negative = this.script.get(this.position) == '-';
+        if (negative) {
+            this.position++;
+        }
+        int value = 0;
+        while (this.position < limit && isDigit(this.script.get(this.position))) {
+            value = Math.min(value * 10 + (this.script.get(this.position) - '0'), LARGEST_NUMBER);
+            this.position++;
+        }
+        return negative ? -value : value;
+    }
+
+    private static int countEntries(ByteBuffer script) {
+        int count = 0;
+        boolean inNumber = false;
+        for (int index = 0; index < script.limit(); index++) {
+            boolean digit = isDigit(script.get(index));
+            if (digit && !inNumber) {
+                count++;
+            }
+            inNumber = digit;
+        }
+        return count;
+    }
+
+    private static boolean isDigit(byte symbol) {
+        return symbol >= '0' && symbol <= '9';
+    }
+}
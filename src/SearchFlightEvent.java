@@ -0,0 +1,72 @@
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.EventType;
+import jdk.jfr.FlightRecorder;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * A Java Flight Recorder event spanning one search for the best move.
+ * Disabled by default; no event is even created unless a running recording enables it.
+ * @author Yinon Kedem
+ * @see AlphaBetaSearch
+ */
+@Name("tictactoe.Search")
+@Label("Search")
+@Category("Tic Tac Toe")
+@Description("An alpha-beta search for the best move")
+@Enabled(false)
+@StackTrace(false)
+class SearchFlightEvent extends jdk.jfr.Event {
+    @Label("Board Size")
+    int boardSize;
+
+    @Label("Win Streak")
+    int winStreak;
+
+    @Label("Depth")
+    @Description("The deepest iteration that completed")
+    int depth;
+
+    @Label("Nodes")
+    long nodes;
+
+    @Label("Table Probes")
+    long tableProbes;
+
+    @Label("Table Hit Rate")
+    @Description("The share of table probes that found an entry")
+    double tableHitRate;
+
+    /**
+     * Creates and begins an event if a running recording enables it, so that playing without one
+     * allocates nothing.
+     * @return The begun event, or null if the event is not recorded.
+     */
+    static SearchFlightEvent start() {
+        if (!isRecorded()) {
+            return null;
+        }
+        SearchFlightEvent event = new SearchFlightEvent();
+        event.begin();
+        return event;
+    }
+
+    /**
+     * Checks if a search run now would be recorded: the flight recorder is running with this event enabled.
+     * @return true if the event is recorded, false otherwise.
+     */
+    static boolean isRecorded() {
+        return FlightRecorder.isInitialized() && Type.EVENT.isEnabled();
+    }
+
+    /**
+     * Holds the type of the event, looked up on first use so that a process without the flight recorder
+     * never registers it.
+     */
+    private final static class Type {
+        private final static EventType EVENT = EventType.getEventType(SearchFlightEvent.class);
+    }
+}
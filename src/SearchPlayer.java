@@ -0,0 +1,215 @@
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Represents a player that looks ahead before every move.
+ * The search player runs an alpha-beta search on the game board and plays the best move it finds,
+ * sharing its results with other search players through the process-wide transposition table.
+ * On a board solved by the ProofNumberSolver it plays the perfect move of the book instead.
+ * When pondering is enabled the player keeps thinking on its opponent's time: after each move it searches,
+ * on a daemon thread, the position after the reply it expects and then after every other candidate reply.
+ * The searches fill the transposition table, and the move found for each reply is kept, so when the
+ * opponent plays a reply that was pondered the player answers at once, and otherwise its search starts
+ * from a warm table. Pondering stops as soon as the player is asked for its next move.
+ * Implements the Player interface for choosing moves.
+ * @author Yinon Kedem
+ * @see Player
+ * @see AlphaBetaSearch
+ * @see TranspositionTable
+ * @see PerfectPlayBook
+ * @see BoardView
+ */
+class SearchPlayer implements Player {
+    private final static String PONDER_THREAD_NAME = "player-ponder";
+    private final static ExecutorService PONDERERS = Executors.newCachedThreadPool(task -> {
+        Thread thread = new Thread(task, PONDER_THREAD_NAME);
+        thread.setDaemon(true);
+        return thread;
+    });
+    private static volatile boolean ponderingEnabled = false;
+
+    private final AlphaBetaSearch search;
+    private Board scratch = null;
+    // the shared book of the last board played on, kept so a turn needs no lookup
+    private PerfectPlayBook book = null;
+    // pondering runs a search of its own on a board of its own, so it never touches those of the turn
+    private AlphaBetaSearch ponderSearch = null;
+    private Board ponderBoard = null;
+    private Future<?> pondering = null;
+    // the positions after the replies pondered to the end, by board hash, and the moves found for them
+    private long[] ponderedKeys = null;
+    private int[] ponderedMoves = null;
+    private int ponderedCount = 0;
+
+    /**
+     * Constructs a SearchPlayer with the default search depth and node limit.
+     */
+    SearchPlayer() {
+        this(new AlphaBetaSearch(TranspositionTable.shared(),
+                AlphaBetaSearch.DEFAULT_MAX_DEPTH, AlphaBetaSearch.DEFAULT_NODE_LIMIT));
+    }
+
+    /**
+     * Constructs a SearchPlayer that uses the given search.
+     * @param search The search used to choose moves.
+     */
+    SearchPlayer(AlphaBetaSearch search) {
+        this.search = search;
+    }
+
+    /**
+     * Sets whether search players think on their opponent's time. Takes effect from their next move.
+     * @param enabled true to ponder, false to stay idle between moves.
+     */
+    static void configurePondering(boolean enabled) {
+        ponderingEnabled = enabled;
+    }
+
+    /**
+     * Chooses the book move of the position, if the board was solved and the position is in its book,
+     * or the move pondered for the position, if it was pondered to the end, or else a move by searching
+     * the board for the best move.
+     * The search explores positions in place, so it runs on a private board that is set to the
+     * viewed position and reused from turn to turn.
+     * @param board A read-only view of the game board.
+     * @param mark The mark associated with the player.
+     * @return The cell index of the best move found, or Board.NO_MOVE if the board is full.
+     */
+    @Override
+    public int chooseMove(BoardView board, Mark mark) {
+        int pondered = stopPondering(board);
+        // the book is perfect, so it comes before the pondered move, which is only as good as a search
+        int move = bookMove(board, mark);
+        if (move == Board.NO_MOVE) {
+            move = pondered != Board.NO_MOVE ? pondered : search(board, mark);
+        }
+        if (ponderingEnabled && move != Board.NO_MOVE) {
+            startPondering(board, mark, move);
+        }
+        return move;
+    }
+
+    private int bookMove(BoardView board, Mark mark) {
+        if (this.book == null || this.book.getGeometry() != board.getGeometry()) {
+            this.book = PerfectPlayBook.shared(board.getSize(), board.getWinStreak());
+        }
+        return this.book.lookup(board, mark);
+    }
+
+    private int search(BoardView board, Mark mark) {
+        if (this.scratch == null || this.scratch.getSize() != board.getSize()
+                || this.scratch.getWinStreak() != board.getWinStreak()) {
+            this.scratch = new Board(board.getSize(), board.getWinStreak());
+        }
+        this.scratch.setPosition(board);
+        return this.search.findBestMove(this.scratch, mark);
+    }
+
+    /**
+     * Stops the pondering of the last move, if there is one, and waits for it to end.
+     * @param board A read-only view of the game board, after the reply of the opponent.
+     * @return The move pondered for the position, or Board.NO_MOVE if it was not pondered to the end.
+     */
+    private int stopPondering(BoardView board) {
+        if (this.pondering == null) {
+            return Board.NO_MOVE;
+        }
+        this.ponderSearch.setStopped(true);
+        try {
+            this.pondering.get();
+        }
+        catch (InterruptedException e) {
+            // the pondering ends on its own shortly; until it does, it is not started again
+            Thread.currentThread().interrupt();
+            return Board.NO_MOVE;
+        }
+        catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        }
+        this.pondering = null;
+        int move = Board.NO_MOVE;
+        if (this.ponderBoard.getGeometry() == board.getGeometry()) {
+            for (int i = 0; i < this.ponderedCount; i++) {
+                if (this.ponderedKeys[i] == board.getHash()) {
+                    move = this.ponderedMoves[i];
+                    break;
+                }
+            }
+        }
+        this.ponderedCount = 0;
+        if (move != Board.NO_MOVE && board.getMark(board.rowOf(move), board.colOf(move)) != Mark.BLANK) {
+            return Board.NO_MOVE;
+        }
+        return move;
+    }
+
+    /**
+     * Starts pondering the replies to a move, unless the move ends the game.
+     * @param board A read-only view of the game board, before the move.
+     * @param mark The mark associated with the player.
+     * @param move The cell index of the move.
+     */
+    private void startPondering(BoardView board, Mark mark, int move) {
+        if (this.pondering != null && !this.pondering.isDone()) {
+            return;
+        }
+        if (this.ponderBoard == null || this.ponderBoard.getGeometry() != board.getGeometry()) {
+            this.ponderBoard = new Board(board.getSize(), board.getWinStreak());
+            this.ponderedKeys = new long[board.getSize() * board.getSize()];
+            this.ponderedMoves = new int[this.ponderedKeys.length];
+        }
+        if (this.ponderSearch == null) {
+            this.ponderSearch = this.search.fork();
+        }
+        this.ponderBoard.setPosition(board);
+        int row = board.rowOf(move);
+        int col = board.colOf(move);
+        if (!this.ponderBoard.putMark(mark, row, col) || this.ponderBoard.completesStreak(row, col)
+                || this.ponderBoard.getOccupiedCells() == this.ponderedKeys.length) {
+            return;
+        }
+        this.ponderedCount = 0;
+        this.ponderSearch.setStopped(false);
+        this.pondering = PONDERERS.submit(() -> ponder(mark));
+    }
+
+    /**
+     * Searches the position after the expected reply of the opponent, then after every other candidate reply,
+     * until all were searched or the pondering is stopped.
+     * @param mark The mark associated with the player.
+     */
+    private void ponder(Mark mark) {
+        Mark opponent = AlphaBetaSearch.opponent(mark);
+        // the reply the last search expects is the best move stored for the opponent's position
+        int[] line = this.ponderSearch.principalVariation(this.ponderBoard, opponent, 1);
+        int expected = line.length > 0 ? line[0] : Board.NO_MOVE;
+        ponderReply(mark, expected);
+        for (int cell = this.ponderBoard.nextCandidate(0); cell != Board.NO_MOVE && !this.ponderSearch.isStopped();
+             cell = this.ponderBoard.nextCandidate(cell + 1)) {
+            if (cell != expected) {
+                ponderReply(mark, cell);
+            }
+        }
+    }
+
+    private void ponderReply(Mark mark, int reply) {
+        Board board = this.ponderBoard;
+        if (reply == Board.NO_MOVE || !board.putMark(AlphaBetaSearch.opponent(mark), board.rowOf(reply),
+                board.colOf(reply))) {
+            return;
+        }
+        if (!board.completesStreak(board.rowOf(reply), board.colOf(reply))
+                && board.getOccupiedCells() < this.ponderedKeys.length) {
+            int move = this.ponderSearch.findBestMove(board, mark);
+            // a search cut short by the stop is not the search the turn would run, so it is not kept
+            if (!this.ponderSearch.isStopped()) {
+                this.ponderedKeys[this.ponderedCount] = board.getHash();
+                this.ponderedMoves[this.ponderedCount] = move;
+                this.ponderedCount++;
+            }
+        }
+        board.undo();
+    }
+}
@@ -0,0 +1,118 @@
+/**
+ * A sequential probability ratio test (SPRT) on the running score of a tournament.
+ * The score of a round is 1 for a win of player 1, 0.5 for a tie and 0 for a loss. The test weighs
+ * "player 1 scores 0.5 + margin" against "player 1 scores 0.5 - margin" with the normal approximation
+ * of the log-likelihood ratio, and decides as soon as the ratio crosses one of the bounds set by
+ * the error rates alpha and beta.
+ * @author Yinon Kedem
+ * @see Tournament
+ */
+class SequentialTest {
+    /**
+     * The default distance of the tested scores from an even score.
+     */
+    final static double DEFAULT_MARGIN = 0.05;
+    /**
+     * The default probability of declaring player 1 stronger when player 2 is.
+     */
+    final static double DEFAULT_ALPHA = 0.05;
+    /**
+     * The default probability of declaring player 2 stronger when player 1 is.
+     */
+    final static double DEFAULT_BETA = 0.05;
+    /**
+     * The number of rounds played before the test may decide.
+     */
+    final static long MINIMUM_ROUNDS = 20;
+    private final static double MINIMUM_VARIANCE = 0.01;
+
+    /**
+     * Represents the outcome of the test so far.
+     */
+    enum Verdict {
+        /**
+         * Not enough evidence yet.
+         */
+        UNDECIDED,
+
+        /**
+         * Player 1 is the stronger player.
+         */
+        PLAYER_1_STRONGER,
+
+        /**
+         * Player 2 is the stronger player.
+         */
+        PLAYER_2_STRONGER
+    }
+
+    private final double margin;
+    private final double alpha;
+    private final double beta;
+    private final double lowerBound;
+    private final double upperBound;
+
+    /**
+     * Constructs a test.
+     * @param margin The distance of the tested scores from 0.5, between 0 and 0.5.
+     * @param alpha The probability of declaring player 1 stronger when player 2 is.
+     * @param beta The probability of declaring player 2 stronger when player 1 is.
+     * @throws IllegalArgumentException if a parameter is out of range.
+     */
+    SequentialTest(double margin, double alpha, double beta) {
+        if (margin <= 0 || margin >= 0.5 || alpha <= 0 || alpha >= 1 || beta <= 0 || beta >= 1) {
+            throw new IllegalArgumentException("SPRT margin must be in (0, 0.5) and error rates in (0, 1)");
+        }
+        this.margin = margin;
+        this.alpha = alpha;
+        this.beta = beta;
+        this.lowerBound = Math.log(beta / (1 - alpha));
+        this.upperBound = Math.log((1 - beta) / alpha);
+    }
+
+    /**
+     * Computes the log-likelihood ratio of "player 1 is stronger" over "player 2 is stronger".
+     * @param player1Wins The number of rounds won by player 1.
+     * @param player2Wins The number of rounds won by player 2.
+     * @param ties The number of tied rounds.
+     * @return The log-likelihood ratio, 0 if no round was played.
+     */
+    double logLikelihoodRatio(long player1Wins, long player2Wins, long ties) {
+        long rounds = player1Wins + player2Wins + ties;
+        if (rounds == 0) {
+            return 0;
+        }
+        double mean = (player1Wins + 0.5 * ties) / rounds;
+        double variance = Math.max((player1Wins + 0.25 * ties) / rounds - mean * mean, MINIMUM_VARIANCE);
+        return rounds * this.margin * (2 * mean - 1) / variance;
+    }
+
+    /**
+     * Decides the test on the given results.
+     * @param player1Wins The number of rounds won by player 1.
+     * @param player2Wins The number of rounds won by player 2.
+     * @param ties The number of tied rounds.
+     * @return The verdict, UNDECIDED while the evidence is not strong enough.
+     */
+    Verdict decide(long player1Wins, long player2Wins, long ties) {
+        if (player1Wins + player2Wins + ties < MINIMUM_ROUNDS) {
+            return Verdict.UNDECIDED;
+        }
+        double ratio = logLikelihoodRatio(player1Wins, player2Wins, ties);
+        if (ratio >= this.upperBound) {
+            return Verdict.PLAYER_1_STRONGER;
+        }
+        if (ratio <= this.lowerBound) {
+            return Verdict.PLAYER_2_STRONGER;
+        }
+        return Verdict.UNDECIDED;
+    }
+
+    /**
+     * Gets the error rates of the test, for reporting.
+     * @return A text describing the margin, alpha and beta of the test.
+     */
+    String describe() {
+        return "margin=" + this.margin + ", alpha=" + this.alpha + ", beta=" + this.beta;
+    }
+}
@@ -0,0 +1,266 @@
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingDeque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+import java.util.function.IntFunction;
+
+/**
+ * Spreads the rounds of a tournament across worker processes, each a JVM of its own.
+ * The rounds are cut into shards, ranges of consecutive rounds, which are handed out in order to the
+ * workers as they become free. A worker reads one shard per line from its standard input, as
+ * "start end", plays the rounds from start up to end with the players reseeded from the master seed,
+ * and writes one result per line to its standard output, as "start end player1Wins player2Wins ties".
+ * Since the result of a round depends only on the seed and the round index, the merged results are
+ * those of the same tournament played in one process.
+ * A worker that exits, breaks its pipe, answers with anything else or does not answer within the shard
+ * timeout is stopped, its shard is handed out again, and a new worker is launched in its place, up to
+ * a number of restarts per worker.
+ * The command of a worker is chosen by the caller for each launch, so workers may run on this host
+ * or be started through a remote shell on others: the protocol only needs the two pipes.
+ * @author Yinon Kedem
+ * @see Tournament
+ */
+final class ShardCoordinator {
+    /**
+     * Receives the results of the shards, from the threads that talk to the workers.
+     */
+    interface ShardResults {
+        /**
+         * Records the result of a shard.
+         * @param start The index of the first round of the shard.
+         * @param end The index after the last round of the shard.
+         * @param player1Wins The rounds won by the first player.
+         * @param player2Wins The rounds won by the second player.
+         * @param ties The rounds that ended in a draw.
+         */
+        void record(int start, int end, int player1Wins, int player2Wins, int ties);
+    }
+
+    /**
+     * The number of times the worker of a slot may be launched again after it failed.
+     */
+    final static int MAX_RESTARTS = 3;
+    /**
+     * The default time a worker may take to answer a shard, in seconds.
+     */
+    final static long DEFAULT_SHARD_TIMEOUT_SECONDS = 600;
+    private final static String SLOT_THREAD_NAME = "shard-worker-";
+    private final static String READER_THREAD_NAME = "shard-reader-";
+    private final static long EXIT_TIMEOUT_SECONDS = 5;
+    private final static int RESULT_FIELDS = 5;
+
+    private final IntFunction<List<String>> launcher;
+    private final int processes;
+    private final long shardTimeoutNanos;
+    private final BlockingDeque<int[]> pending = new LinkedBlockingDeque<>();
+    private final AtomicInteger launches = new AtomicInteger();
+    private final AtomicInteger restarts = new AtomicInteger();
+    private volatile String failure = null;
+
+    /**
+     * Constructs a coordinator.
+     * @param launcher Gives the command of a worker process for each launch, numbered from 0.
+     * @param processes The number of workers run at once.
+     * @param rounds The number of rounds of the tournament.
+     * @param shardRounds The number of rounds in a shard.
+     * @param shardTimeoutNanos The time a worker may take to answer a shard before it is taken as hung.
+     */
+    ShardCoordinator(IntFunction<List<String>> launcher, int processes, int rounds, int shardRounds,
+                     long shardTimeoutNanos) {
+        this.launcher = launcher;
+        this.processes = Math.max(1, processes);
+        this.shardTimeoutNanos = shardTimeoutNanos;
+        for (int start = 0; start < rounds; start += shardRounds) {
+            this.pending.add(new int[] {start, Math.min(start + shardRounds, rounds)});
+        }
+    }
+
+    /**
+     * Plays every shard on the workers, until all were played or stopped returns true.
+     * @param results Receives the result of every shard played.
+     * @param stopped Tells when to stop handing out shards, as a decided sequential test does.
+     * @throws IOException if some shards could not be played because their workers kept failing.
+     */
+    void run(ShardResults results, BooleanSupplier stopped) throws IOException {
+        List<Thread> slots = new ArrayList<>();
+        for (int slot = 0; slot < this.processes; slot++) {
+            String name = String.valueOf(slot);
+            Thread thread = new Thread(() -> serve(results, stopped, name), SLOT_THREAD_NAME + slot);
+            thread.start();
+            slots.add(thread);
+        }
+        try {
+            for (Thread thread : slots) {
+                thread.join();
+            }
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException(e);
+        }
+        if (!this.pending.isEmpty() && !stopped.getAsBoolean()) {
+            throw new IOException(this.failure);
+        }
+    }
+
+    /**
+     * Gets the number of workers launched again after a failure.
+     * @return The number of restarts.
+     */
+    int getRestarts() {
+        return this.restarts.get();
+    }
+
+    /**
+     * The loop of one slot: launches a worker, feeds it shards until none are left, and replaces it
+     * whenever it fails, until it failed too often. The answers are read on a thread of their own, so
+     * a worker that stops answering is caught by the shard timeout instead of blocking the slot.
+     */
+    private void serve(ShardResults results, BooleanSupplier stopped, String slot) {
+        Process process = null;
+        BufferedReader from = null;
+        Writer to = null;
+        int slotRestarts = 0;
+        ExecutorService reader = Executors.newSingleThreadExecutor(task -> {
+            Thread thread = new Thread(task, READER_THREAD_NAME + slot);
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            while (!stopped.getAsBoolean()) {
+                int[] shard = this.pending.pollFirst();
+                if (shard == null) {
+                    return;
+                }
+                try {
+                    if (process == null) {
+                        process = new ProcessBuilder(this.launcher.apply(this.launches.getAndIncrement()))
+                                .redirectError(ProcessBuilder.Redirect.INHERIT).start();
+                        from = new BufferedReader(new InputStreamReader(process.getInputStream(),
+                                StandardCharsets.US_ASCII));
+                        to = new BufferedWriter(new OutputStreamWriter(process.getOutputStream(),
+                                StandardCharsets.US_ASCII));
+                    }
+                    to.write(shard[0] + " " + shard[1] + "\n");
+                    to.flush();
+                    int[] result = parseResult(readAnswer(reader, from), shard);
+                    results.record(shard[0], shard[1], result[2], result[3], result[4]);
+                }
+                catch (IOException e) {
+                    // the shard goes back to the front, so it is played next by whichever worker is free
+                    this.pending.addFirst(shard);
+                    this.failure = e.getMessage();
+                    stop(process);
+                    process = null;
+                    if (++slotRestarts > MAX_RESTARTS) {
+                        return;
+                    }
+                    this.restarts.incrementAndGet();
+                }
+            }
+        }
+        finally {
+            finish(process, to);
+            reader.shutdownNow();
+        }
+    }
+
+    /**
+     * Waits for the answer of a worker no longer than the shard timeout.
+     * @param reader The thread the answer is read on.
+     * @param from The output of the worker.
+     * @return The answer, or null if the worker closed its output.
+     * @throws IOException if the answer cannot be read or does not come in time.
+     */
+    private String readAnswer(ExecutorService reader, BufferedReader from) throws IOException {
+        Future<String> answer = reader.submit(from::readLine);
+        try {
+            return answer.get(this.shardTimeoutNanos, TimeUnit.NANOSECONDS);
+        }
+        catch (TimeoutException e) {
+            // the read ends once the worker is stopped, which closes its output
+            throw new IOException(Constants.WORKER_TIMED_OUT);
+        }
+        catch (ExecutionException e) {
+            throw e.getCause() instanceof IOException ? (IOException) e.getCause() : new IOException(e.getCause());
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException(e);
+        }
+    }
+
+    /**
+     * Parses the answer of a worker to a shard.
+     * @param line The answer, or null if the worker closed its output.
+     * @param shard The shard the worker was given.
+     * @return The fields of the answer.
+     * @throws IOException if the answer is missing, malformed or about another shard.
+     */
+    private static int[] parseResult(String line, int[] shard) throws IOException {
+        if (line == null) {
+            throw new IOException(Constants.WORKER_EXITED);
+        }
+        String[] fields = line.trim().split(" ");
+        int[] result = new int[RESULT_FIELDS];
+        try {
+            if (fields.length != RESULT_FIELDS) {
+                throw new NumberFormatException(line);
+            }
+            for (int i = 0; i < RESULT_FIELDS; i++) {
+                result[i] = Integer.parseInt(fields[i]);
+            }
+        }
+        catch (NumberFormatException e) {
+            throw new IOException(Constants.invalidWorkerResultString(line));
+        }
+        if (result[0] != shard[0] || result[1] != shard[1]
+                || result[2] + result[3] + result[4] != shard[1] - shard[0]) {
+            throw new IOException(Constants.invalidWorkerResultString(line));
+        }
+        return result;
+    }
+
+    private static void stop(Process process) {
+        if (process != null) {
+            process.destroyForcibly();
+        }
+    }
+
+    /**
+     * Closes the input of a worker, which makes it exit once its last shard is done, and waits for it.
+     */
+    private static void finish(Process process, Writer to) {
+        if (process == null) {
+            return;
+        }
+        try {
+            to.close();
+            if (!process.waitFor(EXIT_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                process.destroyForcibly();
+            }
+        }
+        catch (IOException e) {
+            process.destroyForcibly();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            process.destroyForcibly();
+        }
+    }
+}
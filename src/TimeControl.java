@@ -0,0 +1,94 @@
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The time control of a game: a budget of thinking time for each side, topped up by an increment after
+ * every move it makes, as on a chess clock. A side whose clock runs out is dealt with by the policy of
+ * the time control.
+ * @author Yinon Kedem
+ * @see GameClock
+ * @see Game
+ * @see Tournament
+ */
+final class TimeControl {
+    private final static String INCREMENT_SEPARATOR = "+";
+
+    /**
+     * What happens to a side whose clock runs out during its turn.
+     */
+    enum Policy {
+        /**
+         * The side loses the game.
+         */
+        FORFEIT,
+
+        /**
+         * The side plays the first candidate move of the board instead, and plays on with only the
+         * increment on its clock.
+         */
+        FALLBACK
+    }
+
+    private final long budgetNanos;
+    private final long incrementNanos;
+    private final Policy policy;
+
+    /**
+     * Constructs a time control.
+     * @param budgetMillis The thinking time of each side for the whole game, in milliseconds.
+     * @param incrementMillis The time added to a side's clock after each of its moves, in milliseconds.
+     * @param policy What happens to a side whose clock runs out.
+     * @throws IllegalArgumentException if the budget is not positive or the increment is negative.
+     */
+    TimeControl(long budgetMillis, long incrementMillis, Policy policy) {
+        if (budgetMillis <= 0 || incrementMillis < 0) {
+            throw new IllegalArgumentException(Constants.invalidOptionString(budgetMillis + INCREMENT_SEPARATOR
+                    + incrementMillis));
+        }
+        this.budgetNanos = TimeUnit.MILLISECONDS.toNanos(budgetMillis);
+        this.incrementNanos = TimeUnit.MILLISECONDS.toNanos(incrementMillis);
+        this.policy = policy;
+    }
+
+    /**
+     * Parses a time control written as "budget" or "budget+increment", both in milliseconds.
+     * @param clock The budget and optional increment.
+     * @param policy What happens to a side whose clock runs out.
+     * @return The time control.
+     * @throws IllegalArgumentException if the text is not a valid time control.
+     */
+    static TimeControl parse(String clock, Policy policy) {
+        int separator = clock.indexOf(INCREMENT_SEPARATOR);
+        try {
+            long budget = Long.parseLong(separator < 0 ? clock : clock.substring(0, separator));
+            long increment = separator < 0 ? 0 : Long.parseLong(clock.substring(separator + 1));
+            return new TimeControl(budget, increment, policy);
+        }
+        catch (NumberFormatException e) {
+            throw new IllegalArgumentException(Constants.invalidOptionString(clock));
+        }
+    }
+
+    /**
+     * Gets the thinking time of each side for the whole game.
+     * @return The budget, in nanoseconds.
+     */
+    long getBudgetNanos() {
+        return this.budgetNanos;
+    }
+
+    /**
+     * Gets the time added to a side's clock after each of its moves.
+     * @return The increment, in nanoseconds.
+     */
+    long getIncrementNanos() {
+        return this.incrementNanos;
+    }
+
+    /**
+     * Gets what happens to a side whose clock runs out.
+     * @return The policy.
+     */
+    Policy getPolicy() {
+        return this.policy;
+    }
+}
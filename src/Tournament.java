@@ -1,6 +1,30 @@
+import java.io.BufferedReader;
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
 /**
  * Represents a tournament between two players playing a specified number of rounds.
  * Manages the games, tracks player wins, and displays the final results.
+ * When both players are deterministic and no one watches, the game of each assignment of the marks is
+ * played once and its outcome counted for every round it would be played in.
  * The tournament uses a specified renderer and two player implementations.
  * Players and renderer are provided through command-line arguments.
  * @author Yinon Kedem
@@ -9,13 +33,77 @@
  * @see Game
  * @see PlayerFactory
  * @see RendererFactory
+ * @see GameEventBus
+ * @see SequentialTest
+ * @see TournamentCheckpoint
+ * @see TimeControl
+ * @see ShardCoordinator
  */
 class Tournament{
+    private final static int POSITIONAL_ARGUMENTS = 6;
+    private final static String TABLE_SIZE_OPTION = "tt-mb";
+    private final static String THREADS_OPTION = "threads";
+    private final static String SPRT_OPTION = "sprt";
+    private final static String SPRT_MARGIN_OPTION = "sprt-margin";
+    private final static String SPRT_ALPHA_OPTION = "sprt-alpha";
+    private final static String SPRT_BETA_OPTION = "sprt-beta";
+    private final static String CHECKPOINT_OPTION = "checkpoint";
+    private final static String CHECKPOINT_INTERVAL_OPTION = "checkpoint-interval";
+    private final static String RESUME_OPTION = "resume";
+    private final static String SEED_OPTION = "seed";
+    private final static String REPLAY_OPTION = "replay";
+    private final static String BENCH_OPTION = "bench";
+    private final static String FPS_OPTION = "fps";
+    private final static String WEIGHTS_OPTION = "weights";
+    private final static String BOOKS_OPTION = "books";
+    private final static String PONDER_OPTION = "ponder";
+    private final static String SCRIPT_OPTION = "script";
+    private final static String CLOCK_OPTION = "clock";
+    private final static String ON_TIMEOUT_OPTION = "on-timeout";
+    private final static String PROCESSES_OPTION = "processes";
+    private final static String HOSTS_OPTION = "hosts";
+    private final static String SHARD_TIMEOUT_OPTION = "shard-timeout";
+    // given to the worker processes of a tournament played across processes, never typed by users
+    private final static String WORKER_OPTION = "worker";
+    private final static String LOCAL_HOST = "localhost";
+    private final static String REMOTE_SHELL = "ssh";
+    private final static int DEFAULT_CHECKPOINT_INTERVAL_SECONDS = 10;
+    // even, so every chunk plays both colour assignments equally often
+    private final static int ROUNDS_PER_CHUNK = 256;
+    private final static int SERIAL_ROUNDS_PER_CHUNK = 2;
+    private final static int ROUNDS_PER_SHARD = 16 * ROUNDS_PER_CHUNK;
+    // shards per worker process at least, so the processes finish close together on short tournaments
+    private final static int SHARDS_PER_PROCESS = 4;
+    // the outcomes of the two games between deterministic players, by player types and board, kept for the process
+    private final static ConcurrentMap<String, Mark[]> OUTCOMES = new ConcurrentHashMap<>();
     private final int numberOfRounds;
     private final Renderer renderer;
+    private final GameEventBus events;
     private Player[] players = new Player[] {null, null};
     private int[] playerWins = new int[2];
     private int ties = 0;
+    private long roundsPlayed = 0;
+    private int threads = 1;
+    private boolean hasObservers = false;
+    private SequentialTest sequentialTest = null;
+    private SequentialTest.Verdict verdict = SequentialTest.Verdict.UNDECIDED;
+    private volatile boolean stopped = false;
+    private long seed = ThreadLocalRandom.current().nextLong();
+    private boolean seeded = false;
+    // a seed given on the command line, which a resumed checkpoint must have been written with
+    private boolean seedGiven = false;
+    private int replayRound = -1;
+    private int roundsPerChunk = ROUNDS_PER_CHUNK;
+    private TournamentCheckpoint progress;
+    private Path checkpointPath = null;
+    private long checkpointIntervalNanos;
+    private long lastCheckpointNanos;
+    private boolean resume = false;
+    private TimeControl timeControl = null;
+    private int processes = 1;
+    private String[] hosts = {LOCAL_HOST};
+    private long shardTimeoutNanos = TimeUnit.SECONDS.toNanos(ShardCoordinator.DEFAULT_SHARD_TIMEOUT_SECONDS);
+    private String[] arguments = null;
 
     /**
      * Constructs a Tournament instance with the specified number of rounds, renderer, and players.
@@ -27,9 +115,116 @@ class Tournament{
     Tournament(int rounds, Renderer renderer, Player player1, Player player2){
         this.numberOfRounds = rounds;
         this.renderer = renderer;
+        this.events = GameEventBus.rendering(renderer);
         this.players[0] = player1;
         this.players[1] = player2;
     }
+    /**
+     * Attaches an observer to the games of the tournament. The observer runs on a thread of its own
+     * and receives every game start, move, win and draw. Must be called before the tournament is played.
+     * @param observer The observer to attach.
+     * @param name The name of the observer's thread.
+     */
+    void addObserver(GameObserver observer, String name){
+        this.events.subscribe(observer, name);
+        this.hasObservers = true;
+    }
+    /**
+     * Applies the optional command-line arguments that control how the rounds are played.
+     * @param options The optional command-line arguments.
+     * @throws IllegalArgumentException if an option has an invalid value.
+     */
+    void configure(CommandLineOptions options){
+        this.threads = Math.max(1, options.getInt(THREADS_OPTION, 1));
+        if (options.has(SEED_OPTION)){
+            this.seed = options.getLong(SEED_OPTION, this.seed);
+            this.seeded = true;
+            this.seedGiven = true;
+        }
+        // without a seed the round replayed is not the round of any earlier tournament
+        if (options.has(REPLAY_OPTION) && !this.seedGiven){
+            throw new IllegalArgumentException(Constants.invalidOptionString("--" + REPLAY_OPTION));
+        }
+        this.replayRound = options.getInt(REPLAY_OPTION, -1);
+        if (options.has(REPLAY_OPTION) && (this.replayRound < 0 || this.replayRound >= this.numberOfRounds)){
+            throw new IllegalArgumentException(Constants.invalidOptionString("--" + REPLAY_OPTION + "=" + this.replayRound));
+        }
+        if (options.has(SPRT_OPTION)){
+            this.sequentialTest = new SequentialTest(
+                    options.getDouble(SPRT_MARGIN_OPTION, SequentialTest.DEFAULT_MARGIN),
+                    options.getDouble(SPRT_ALPHA_OPTION, SequentialTest.DEFAULT_ALPHA),
+                    options.getDouble(SPRT_BETA_OPTION, SequentialTest.DEFAULT_BETA));
+        }
+        if (options.has(CHECKPOINT_OPTION)){
+            this.seeded = true;
+            this.checkpointPath = Paths.get(options.getString(CHECKPOINT_OPTION, ""));
+            this.checkpointIntervalNanos = TimeUnit.SECONDS.toNanos(
+                    options.getLong(CHECKPOINT_INTERVAL_OPTION, DEFAULT_CHECKPOINT_INTERVAL_SECONDS));
+            this.resume = options.has(RESUME_OPTION);
+        }
+        else if (options.has(RESUME_OPTION)){
+            throw new IllegalArgumentException(Constants.invalidOptionString("--" + RESUME_OPTION));
+        }
+        this.timeControl = timeControl(options);
+        this.processes = Math.max(1, options.getInt(PROCESSES_OPTION, 1));
+        if (this.processes > 1){
+            // the checkpoint records the chunks of threads, which the shards of processes do not follow
+            if (this.checkpointPath != null){
+                throw new IllegalArgumentException(Constants.invalidOptionString("--" + PROCESSES_OPTION));
+            }
+            this.seeded = true;
+        }
+        long shardTimeout = options.getLong(SHARD_TIMEOUT_OPTION, ShardCoordinator.DEFAULT_SHARD_TIMEOUT_SECONDS);
+        if (shardTimeout <= 0){
+            throw new IllegalArgumentException(Constants.invalidOptionString("--" + SHARD_TIMEOUT_OPTION + "=" + shardTimeout));
+        }
+        this.shardTimeoutNanos = TimeUnit.SECONDS.toNanos(shardTimeout);
+        if (options.has(HOSTS_OPTION)){
+            this.hosts = options.getString(HOSTS_OPTION, "").split(",");
+            for (String host : this.hosts){
+                if (host.isBlank()){
+                    throw new IllegalArgumentException(Constants.invalidOptionString(
+                            "--" + HOSTS_OPTION + "=" + options.getString(HOSTS_OPTION, "")));
+                }
+            }
+        }
+    }
+    /**
+     * Parses the clock of the games from the --clock and --on-timeout options.
+     * @param options The optional command-line arguments.
+     * @return The time control, or null if the games are played without a clock.
+     * @throws IllegalArgumentException if the clock or the policy is invalid, or a policy is given without a clock.
+     */
+    static TimeControl timeControl(CommandLineOptions options){
+        if (!options.has(CLOCK_OPTION)){
+            if (options.has(ON_TIMEOUT_OPTION)){
+                throw new IllegalArgumentException(Constants.invalidOptionString("--" + ON_TIMEOUT_OPTION));
+            }
+            return null;
+        }
+        String clock = options.getString(CLOCK_OPTION, "");
+        TimeControl.Policy policy = timeoutPolicy(options.getString(ON_TIMEOUT_OPTION, "forfeit"));
+        try {
+            return TimeControl.parse(clock, policy);
+        }
+        catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException(Constants.invalidOptionString("--" + CLOCK_OPTION + "=" + clock));
+        }
+    }
+    /**
+     * Parses the policy applied to a player whose clock runs out.
+     * @param name The name of the policy, forfeit or fallback.
+     * @return The policy.
+     * @throws IllegalArgumentException if the name is not a policy.
+     */
+    private static TimeControl.Policy timeoutPolicy(String name){
+        for (TimeControl.Policy policy : TimeControl.Policy.values()){
+            if (policy.name().equalsIgnoreCase(name)){
+                return policy;
+            }
+        }
+        throw new IllegalArgumentException(Constants.invalidOptionString("--" + ON_TIMEOUT_OPTION + "=" + name));
+    }
     /**
      * Entry point of the program to run the tournament based on command-line arguments.
      * Validates command-line inputs and initializes the tournament.
@@ -37,17 +232,220 @@ class Tournament{
      */
     public static void main(String[] args) {
         boolean validInputs = validation(args[3], args[4], args[5]);
+        CommandLineOptions options;
+        try {
+            options = new CommandLineOptions(args, POSITIONAL_ARGUMENTS);
+        }
+        catch (IllegalArgumentException e) {
+            System.out.println(e.getMessage());
+            return;
+        }
+        // the standard output of a worker process carries its results only, anything else goes to errors
+        PrintStream results = null;
+        if (options.has(WORKER_OPTION)) {
+            results = new PrintStream(new FileOutputStream(FileDescriptor.out), false, StandardCharsets.US_ASCII);
+            System.setOut(System.err);
+        }
 
         if (validInputs) {
+            if (!configureTable(options)) {
+                return;
+            }
+            NTupleNetwork.configureDirectory(Paths.get(options.getString(WEIGHTS_OPTION,
+                    NTupleNetwork.DEFAULT_DIRECTORY)));
+            PerfectPlayBook.configureDirectory(Paths.get(options.getString(BOOKS_OPTION,
+                    PerfectPlayBook.DEFAULT_DIRECTORY)));
+            SearchPlayer.configurePondering(options.has(PONDER_OPTION));
+            if (!loadBook(args) || !loadWeights(args)) {
+                return;
+            }
+            if (!configureScript(args, options)) {
+                return;
+            }
+            if (options.has(BENCH_OPTION)) {
+                runBenchmark(args, options);
+                return;
+            }
             Tournament newTournament = new Tournament(Integer.parseInt(args[0]),
-                    RendererFactory.buildRenderer(args[3], Integer.parseInt(args[1])),
+                    RendererFactory.buildRenderer(args[3], Integer.parseInt(args[1]),
+                            framesPerSecond(args, options)),
                     PlayerFactory.buildPlayer(args[4].toLowerCase()),
                     PlayerFactory.buildPlayer(args[5].toLowerCase()));
+            try {
+                newTournament.configure(options);
+            }
+            catch (IllegalArgumentException e) {
+                System.out.println(e.getMessage());
+                return;
+            }
+            if (results != null) {
+                newTournament.serveShards(Integer.parseInt(args[1]), Integer.parseInt(args[2]), args[4], args[5],
+                        results);
+                return;
+            }
+            newTournament.arguments = args;
             newTournament.playTournament(Integer.parseInt(args[1]),
                     Integer.parseInt(args[2]),
                     args[4], args[5]);
         }
     }
+    /**
+     * Gets the frame rate cap of the renderer, given by --fps. A human player is asked for a move on the
+     * board as drawn, so with a human in the game no frame is held back.
+     * @param args Command-line arguments containing tournament details.
+     * @param options The optional command-line arguments.
+     * @return The maximal number of frames drawn per second, or 0 to draw every move.
+     */
+    private static int framesPerSecond(String[] args, CommandLineOptions options) {
+        if (args[4].equalsIgnoreCase("human") || args[5].equalsIgnoreCase("human")) {
+            return 0;
+        }
+        return options.getInt(FPS_OPTION, AnsiRenderer.DEFAULT_FPS);
+    }
+    /**
+     * Loads the perfect-play book of the board if a search player reads it, so that a book file that
+     * cannot be read is reported before the first game instead of in the middle of one.
+     * @param args Command-line arguments containing tournament details.
+     * @return true if no player reads the book or it was loaded, false after printing why it was not.
+     */
+    private static boolean loadBook(String[] args) {
+        if (!args[4].equalsIgnoreCase("search") && !args[5].equalsIgnoreCase("search")) {
+            return true;
+        }
+        int size = Integer.parseInt(args[1]);
+        try {
+            PerfectPlayBook.preload(size, Game.winStreakOf(size, Integer.parseInt(args[2])));
+            return true;
+        }
+        catch (IOException e) {
+            System.out.println(Constants.bookFailedString(e.getMessage()));
+            return false;
+        }
+    }
+    /**
+     * Loads the n-tuple network of the board if an n-tuple player reads it, so that a weight file that
+     * cannot be read is reported before the first game instead of in the middle of one.
+     * @param args Command-line arguments containing tournament details.
+     * @return true if no player reads the weights or they were loaded, false after printing why they were not.
+     */
+    private static boolean loadWeights(String[] args) {
+        if (!args[4].equalsIgnoreCase("ntuple") && !args[5].equalsIgnoreCase("ntuple")) {
+            return true;
+        }
+        int size = Integer.parseInt(args[1]);
+        try {
+            NTupleNetwork.preload(size, Game.winStreakOf(size, Integer.parseInt(args[2])));
+            return true;
+        }
+        catch (IOException e) {
+            System.out.println(Constants.weightsFailedString(e.getMessage()));
+            return false;
+        }
+    }
+    /**
+     * Sizes the transposition table shared by the search players, given by --tt-mb in megabytes.
+     * @param options The optional command-line arguments.
+     * @return true if the table was sized, false after printing why it was not.
+     */
+    private static boolean configureTable(CommandLineOptions options) {
+        try {
+            int megabytes = options.getInt(TABLE_SIZE_OPTION, TranspositionTable.DEFAULT_SIZE_MB);
+            if (megabytes <= 0) {
+                throw new IllegalArgumentException(Constants.invalidOptionString(
+                        "--" + TABLE_SIZE_OPTION + "=" + megabytes));
+            }
+            TranspositionTable.configureShared(megabytes);
+            return true;
+        }
+        catch (IllegalArgumentException e) {
+            System.out.println(e.getMessage());
+            return false;
+        }
+    }
+    /**
+     * Loads the script of the scripted players, given by --script, if a player is scripted.
+     * @param args Command-line arguments containing tournament details.
+     * @param options The optional command-line arguments.
+     * @return true if no player is scripted or the script was loaded, false after printing why it was not.
+     */
+    private static boolean configureScript(String[] args, CommandLineOptions options) {
+        if (!args[4].equalsIgnoreCase("scripted") && !args[5].equalsIgnoreCase("scripted")) {
+            return true;
+        }
+        if (options.getString(SCRIPT_OPTION, "").isEmpty()) {
+            System.out.println(Constants.invalidOptionString("--" + SCRIPT_OPTION));
+            return false;
+        }
+        try {
+            ScriptedPlayer.configureScript(Paths.get(options.getString(SCRIPT_OPTION, "")));
+        }
+        catch (IllegalArgumentException e) {
+            System.out.println(e.getMessage());
+            return false;
+        }
+        catch (IOException e) {
+            System.out.println(Constants.scriptFailedString(e.getMessage()));
+            return false;
+        }
+        return true;
+    }
+    /**
+     * Runs the headless benchmark instead of the tournament. The renderer argument is ignored
+     * and the number of rounds caps the measured games.
+     * @param args Command-line arguments containing tournament details.
+     * @param options The optional command-line arguments.
+     */
+    private static void runBenchmark(String[] args, CommandLineOptions options) {
+        Benchmark benchmark = new Benchmark(Long.parseLong(args[0]), Integer.parseInt(args[1]),
+                Integer.parseInt(args[2]), args[4], args[5]);
+        try {
+            benchmark.configure(options);
+            benchmark.run();
+        }
+        catch (IllegalArgumentException e) {
+            System.out.println(e.getMessage());
+        }
+        catch (IOException e) {
+            System.out.println(Constants.benchmarkFailedString(e.getMessage()));
+        }
+    }
+    /**
+     * Builds the command that launches a worker process of a tournament played across processes.
+     * The worker gets the positional arguments and the options of the tournament, without a renderer,
+     * and the master seed, so its rounds are those of the tournament.
+     * @param host The host to run the worker on: localhost, or a host reached through ssh, where the
+     *             classes must be found at the same class path.
+     * @param args Command-line arguments containing tournament details.
+     * @param seed The master seed of the tournament.
+     * @return The command.
+     */
+    static List<String> workerCommand(String host, String[] args, long seed) {
+        List<String> command = new ArrayList<>();
+        if (host.equalsIgnoreCase(LOCAL_HOST)) {
+            command.add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+        }
+        else {
+            command.add(REMOTE_SHELL);
+            command.add(host);
+            command.add("java");
+        }
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        command.add(Tournament.class.getName());
+        for (int i = 0; i < POSITIONAL_ARGUMENTS; i++) {
+            command.add(i == 3 ? "none" : args[i]);
+        }
+        for (int i = POSITIONAL_ARGUMENTS; i < args.length; i++) {
+            String name = args[i].substring(2).split("=", 2)[0];
+            if (!name.equals(PROCESSES_OPTION) && !name.equals(HOSTS_OPTION) && !name.equals(SEED_OPTION)
+                    && !name.equals(SHARD_TIMEOUT_OPTION) && !name.equals(WORKER_OPTION)) {
+                command.add(args[i]);
+            }
+        }
+        command.add("--" + SEED_OPTION + "=" + seed);
+        command.add("--" + WORKER_OPTION);
+        return command;
+    }
     /**
      * Validates the command-line inputs for renderer type and player names.
      * Displays error messages for invalid inputs.
@@ -57,8 +455,8 @@ class Tournament{
      * @return true if the inputs are valid, false otherwise.
      */
     private static boolean validation(String rendererType, String player1Name, String player2Name) {
-        String[] playerType = {"human", "clever", "whatever", "genius"};
-        String[] rendererTypes = {"console", "none"};
+        String[] playerType = {"human", "clever", "whatever", "genius", "search", "ntuple", "scripted"};
+        String[] rendererTypes = {"console", "ansi", "none"};
         boolean validRenderer = false;
         for (String renderer : rendererTypes){
             if (rendererType.equalsIgnoreCase(renderer)) {
@@ -89,29 +487,439 @@ class Tournament{
     /**
      * Plays the specified number of rounds in the tournament, tracking wins and ties.
      * Displays the final results after all rounds are played.
+     * With more than one thread, rounds are played in parallel when no one watches them: the renderer
+     * is "none", no player is human and no observer is attached. With a sequential test configured,
+     * the tournament stops as soon as the test decides.
      * @param size The size of the game board for each round.
      * @param winStreak The required win streak for a player to win a round.
      * @param playerName1 The name of the first player participating in the tournament.
      * @param playerName2 The name of the second player participating in the tournament.
      */
     void playTournament(int size, int winStreak, String playerName1, String playerName2){
-            for (int round = 0; round < this.numberOfRounds; round++){
-                Game currentGame = new Game(this.players[round % this.players.length],
-                        this.players[(round+1) % this.players.length], size,
-                        winStreak, this.renderer);
-                Mark curMark = currentGame.run();
-                if (curMark == Mark.X){
-                    this.playerWins[round % this.players.length] += 1;
-                }
-                else if (curMark == Mark.O) {
-                    this.playerWins[(round+1) % this.players.length] += 1;
+        boolean parallel = canPlayInParallel(playerName1, playerName2);
+        int workerCount = parallel ? this.threads : 1;
+        this.roundsPerChunk = parallel ? ROUNDS_PER_CHUNK : SERIAL_ROUNDS_PER_CHUNK;
+        if (this.resume && !restoreProgress(size, winStreak, playerName1, playerName2, workerCount)){
+            return;
+        }
+        if (this.progress == null){
+            this.progress = new TournamentCheckpoint(this.numberOfRounds, size, winStreak, this.roundsPerChunk,
+                    playerName1, playerName2, this.seed, workerCount);
+        }
+        Worker[] workers = new Worker[workerCount];
+        for (int i = 0; i < workerCount; i++){
+            workers[i] = new Worker(i, parallel, playerName1, playerName2, size, winStreak);
+        }
+        this.lastCheckpointNanos = System.nanoTime();
+        if (this.replayRound >= 0){
+            playReplay(workers[0]);
+        }
+        else if (canMemoise(workers[0])){
+            playMemoised(workers[0], size, winStreak);
+        }
+        else if (canPlayInProcesses(playerName1, playerName2)){
+            try {
+                playInProcesses();
+            }
+            catch (IOException e) {
+                System.out.println(Constants.workerFailedString(e.getMessage()));
+                return;
+            }
+        }
+        else if (parallel){
+            playInParallel(workers);
+        }
+        else {
+            playWorkerRounds(workers[0]);
+        }
+        deleteCheckpoint();
+        this.events.close();
+        this.renderer.flush();
+        printTheFinalScore(playerName1, playerName2);
+        if (this.sequentialTest != null){
+            printTheSequentialTestResult();
+        }
+    }
+    /**
+     * Plays one round on the worker's reused games, with the players swapping marks every round.
+     * @param worker The worker playing the round.
+     * @param round The index of the round.
+     * @return The mark of the winning player or BLANK for a draw.
+     */
+    private static Mark playRound(Worker worker, int round){
+        return worker.games[round % worker.games.length].run();
+    }
+    /**
+     * Credits a round to the player who won it.
+     * @param curMark The result of the round.
+     * @param round The index of the round.
+     * @param wins The win counters of the two players.
+     */
+    private static void recordResult(Mark curMark, int round, int[] wins){
+        if (curMark == Mark.X){
+            wins[round % wins.length] += 1;
+        }
+        else if (curMark == Mark.O) {
+            wins[(round+1) % wins.length] += 1;
+        }
+    }
+    /**
+     * Checks if the rounds may be played on several threads.
+     * @param playerName1 The name of the first player.
+     * @param playerName2 The name of the second player.
+     * @return true if the rounds may be played in parallel, false otherwise.
+     */
+    private boolean canPlayInParallel(String playerName1, String playerName2){
+        return this.threads > 1 && this.renderer instanceof VoidRenderer && !this.hasObservers
+                && !playerName1.equalsIgnoreCase("human") && !playerName2.equalsIgnoreCase("human");
+    }
+    /**
+     * Checks if the rounds may be counted from one game for each assignment of the marks instead of
+     * played: both players are deterministic, no one watches the games, no flight recording expects an
+     * event for every game or turn, no clock can make a game end differently, and no progress was
+     * restored from a checkpoint.
+     * @param worker The worker whose players would play the games.
+     * @return true if the rounds may be memoised, false otherwise.
+     */
+    private boolean canMemoise(Worker worker){
+        return worker.players[0].isDeterministic() && worker.players[1].isDeterministic()
+                && this.renderer instanceof VoidRenderer && !this.hasObservers && this.timeControl == null
+                && !GameFlightEvent.isRecorded() && !MoveFlightEvent.isRecorded()
+                && this.roundsPlayed == 0;
+    }
+    /**
+     * Plays the game of each assignment of the marks once, or takes their outcomes from an earlier
+     * tournament of the process between players of the same types on the same board, and credits every
+     * round with the outcome of its game. With a sequential test the rounds are credited chunk by chunk,
+     * and the test runs after each chunk as if the rounds were played.
+     * @param worker The worker whose players play the games.
+     * @param size The size of the game board for each round.
+     * @param winStreak The required win streak for a player to win a round.
+     */
+    private void playMemoised(Worker worker, int size, int winStreak){
+        String key = worker.players[0].getClass().getName() + "," + worker.players[1].getClass().getName()
+                + "," + size + "," + winStreak;
+        Mark[] outcomes = OUTCOMES.computeIfAbsent(key, unused -> new Mark[] {worker.games[0].run(),
+                worker.games[1].run()});
+        int[] evenWins = new int[2];
+        int[] oddWins = new int[2];
+        recordResult(outcomes[0], 0, evenWins);
+        recordResult(outcomes[1], 1, oddWins);
+        int chunkRounds = this.sequentialTest == null ? this.numberOfRounds : this.roundsPerChunk;
+        for (long start = 0; start < this.numberOfRounds && !this.stopped; start += chunkRounds){
+            int end = (int) Math.min(start + chunkRounds, this.numberOfRounds);
+            // the rounds with an even index are played by the first game, the others by the second
+            int evenRounds = (end + 1) / 2 - ((int) start + 1) / 2;
+            int oddRounds = end - (int) start - evenRounds;
+            this.playerWins[0] += evenWins[0] * evenRounds + oddWins[0] * oddRounds;
+            this.playerWins[1] += evenWins[1] * evenRounds + oddWins[1] * oddRounds;
+            this.ties += (outcomes[0] == Mark.BLANK ? evenRounds : 0) + (outcomes[1] == Mark.BLANK ? oddRounds : 0);
+            this.roundsPlayed += end - start;
+            if (testDecided()){
+                this.stopped = true;
+            }
+        }
+    }
+    /**
+     * Checks if the rounds may be played on several worker processes, which like threads need that
+     * no one watches them.
+     * @param playerName1 The name of the first player.
+     * @param playerName2 The name of the second player.
+     * @return true if the rounds may be played across processes, false otherwise.
+     */
+    private boolean canPlayInProcesses(String playerName1, String playerName2){
+        return this.processes > 1 && this.arguments != null && this.renderer instanceof VoidRenderer
+                && !this.hasObservers && !playerName1.equalsIgnoreCase("human")
+                && !playerName2.equalsIgnoreCase("human");
+    }
+    /**
+     * Plays the rounds on worker processes, spread over the hosts in turn, and merges their results.
+     * @throws IOException if some rounds could not be played because the workers kept failing.
+     */
+    private void playInProcesses() throws IOException{
+        int perProcess = (this.numberOfRounds + this.processes * SHARDS_PER_PROCESS - 1)
+                / (this.processes * SHARDS_PER_PROCESS);
+        // even, so every shard plays both colour assignments equally often
+        int shardRounds = Math.max(2, Math.min(ROUNDS_PER_SHARD, perProcess + perProcess % 2));
+        ShardCoordinator coordinator = new ShardCoordinator(
+                launch -> workerCommand(this.hosts[launch % this.hosts.length], this.arguments, this.seed),
+                this.processes, this.numberOfRounds, shardRounds, this.shardTimeoutNanos);
+        coordinator.run(this::recordShard, () -> this.stopped);
+    }
+    /**
+     * Adds the results of a shard played by a worker process to the tournament totals, then runs the
+     * sequential test.
+     * @param start The index of the first round of the shard.
+     * @param end The index after the last round of the shard.
+     * @param player1Wins The rounds won by the first player.
+     * @param player2Wins The rounds won by the second player.
+     * @param shardTies The rounds that ended in a draw.
+     */
+    private synchronized void recordShard(int start, int end, int player1Wins, int player2Wins, int shardTies){
+        this.playerWins[0] += player1Wins;
+        this.playerWins[1] += player2Wins;
+        this.ties += shardTies;
+        this.roundsPlayed += end - start;
+        if (!this.stopped && testDecided()){
+            this.stopped = true;
+        }
+    }
+    /**
+     * The loop of a worker process: plays every shard read from the standard input, given as
+     * "start end", and writes its result as "start end player1Wins player2Wins ties", until the input ends.
+     * @param size The size of the game board for each round.
+     * @param winStreak The required win streak for a player to win a round.
+     * @param playerName1 The name of the first player.
+     * @param playerName2 The name of the second player.
+     * @param results The stream the results are written to.
+     */
+    private void serveShards(int size, int winStreak, String playerName1, String playerName2, PrintStream results){
+        Worker worker = new Worker(0, true, playerName1, playerName2, size, winStreak);
+        BufferedReader shards = new BufferedReader(new InputStreamReader(System.in, StandardCharsets.US_ASCII));
+        int[] shardWins = new int[2];
+        try {
+            for (String line = shards.readLine(); line != null; line = shards.readLine()){
+                String[] fields = line.trim().split(" ");
+                int start = Integer.parseInt(fields[0]);
+                int end = Math.min(Integer.parseInt(fields[1]), this.numberOfRounds);
+                shardWins[0] = 0;
+                shardWins[1] = 0;
+                int shardTies = 0;
+                for (int round = start; round < end; round++){
+                    worker.startRound(round);
+                    Mark curMark = playRound(worker, round);
+                    recordResult(curMark, round, shardWins);
+                    if (curMark == Mark.BLANK){
+                        shardTies++;
+                    }
                 }
-                else {
-                    this.ties += 1;
+                results.println(start + " " + end + " " + shardWins[0] + " " + shardWins[1] + " " + shardTies);
+                results.flush();
+            }
+        }
+        catch (IOException e) {
+            System.out.println(Constants.workerFailedString(e.getMessage()));
+        }
+        finally {
+            worker.events.close();
+        }
+    }
+    /**
+     * Plays the rounds on a pool of threads, one for each worker.
+     * @param workers The workers of the tournament.
+     */
+    private void playInParallel(Worker[] workers){
+        ExecutorService pool = Executors.newFixedThreadPool(workers.length);
+        List<Callable<Void>> tasks = new ArrayList<>();
+        for (Worker worker : workers){
+            tasks.add(() -> {
+                playWorkerRounds(worker);
+                return null;
+            });
+        }
+        try {
+            for (Future<Void> task : pool.invokeAll(tasks)){
+                task.get();
+            }
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        }
+        finally {
+            pool.shutdownNow();
+        }
+    }
+    /**
+     * The loop of one worker. Worker i of n plays the chunks i, i + n, i + 2n and so on, in order,
+     * until its chunks run out or the sequential test decides.
+     * @param worker The worker.
+     */
+    private void playWorkerRounds(Worker worker){
+        int[] chunkWins = new int[2];
+        long chunksDone = this.progress.chunksDone[worker.index];
+        while (!this.stopped){
+            long start = (worker.index + chunksDone * this.progress.chunksDone.length) * this.roundsPerChunk;
+            if (start >= this.numberOfRounds){
+                return;
+            }
+            int end = (int) Math.min(start + this.roundsPerChunk, this.numberOfRounds);
+            chunkWins[0] = 0;
+            chunkWins[1] = 0;
+            int chunkTies = 0;
+            for (int round = (int) start; round < end; round++){
+                worker.startRound(round);
+                Mark curMark = playRound(worker, round);
+                recordResult(curMark, round, chunkWins);
+                if (curMark == Mark.BLANK){
+                    chunkTies++;
                 }
+            }
+            recordChunk(worker, chunkWins, chunkTies, end - (int) start);
+            chunksDone++;
+        }
+    }
+    /**
+     * Adds the results of a chunk of rounds played by a worker to the worker's progress and to the
+     * tournament totals, then runs the sequential test and writes a checkpoint when one is due.
+     * @param worker The worker that played the chunk.
+     * @param chunkWins The wins of the two players in the chunk.
+     * @param chunkTies The ties in the chunk.
+     * @param rounds The number of rounds in the chunk.
+     */
+    private synchronized void recordChunk(Worker worker, int[] chunkWins, int chunkTies, int rounds){
+        int index = worker.index;
+        this.progress.chunksDone[index]++;
+        this.progress.roundsPlayed[index] += rounds;
+        this.progress.player1Wins[index] += chunkWins[0];
+        this.progress.player2Wins[index] += chunkWins[1];
+        this.progress.ties[index] += chunkTies;
+        this.playerWins[0] += chunkWins[0];
+        this.playerWins[1] += chunkWins[1];
+        this.ties += chunkTies;
+        this.roundsPlayed += rounds;
+        if (!this.stopped && testDecided()){
+            this.stopped = true;
+        }
+        if (this.checkpointPath != null && System.nanoTime() - this.lastCheckpointNanos >= this.checkpointIntervalNanos){
+            writeCheckpoint();
+        }
+    }
+    /**
+     * Runs the sequential test on the results so far, when an even number of rounds was played.
+     * @return true if the test decided, false otherwise or if no test is configured.
+     */
+    private boolean testDecided(){
+        if (this.sequentialTest == null || this.roundsPlayed % 2 != 0){
+            return false;
+        }
+        this.verdict = this.sequentialTest.decide(this.playerWins[0], this.playerWins[1], this.ties);
+        return this.verdict != SequentialTest.Verdict.UNDECIDED;
+    }
+    /**
+     * Writes the progress of all workers to the checkpoint file. Called with the tournament locked.
+     */
+    private void writeCheckpoint(){
+        try {
+            this.progress.write(this.checkpointPath);
+        }
+        catch (IOException e) {
+            System.out.println(Constants.checkpointFailedString(e.getMessage()));
+        }
+        this.lastCheckpointNanos = System.nanoTime();
+    }
+    /**
+     * Plays the single round chosen with the replay option, with the random decisions it has
+     * in the full tournament of the same seed.
+     * @param worker The worker to play the round on.
+     */
+    private void playReplay(Worker worker){
+        worker.startRound(this.replayRound);
+        Mark curMark = playRound(worker, this.replayRound);
+        recordResult(curMark, this.replayRound, this.playerWins);
+        if (curMark == Mark.BLANK){
+            this.ties += 1;
+        }
+        this.roundsPlayed = 1;
+    }
+    /**
+     * Restores the master seed and the progress of the workers from the checkpoint file, if there is one.
+     * @param size The size of the game board for each round.
+     * @param winStreak The required win streak for a player to win a round.
+     * @param playerName1 The name of the first player.
+     * @param playerName2 The name of the second player.
+     * @param workerCount The number of workers.
+     * @return true if the tournament may go on, false if the checkpoint cannot be used.
+     */
+    private boolean restoreProgress(int size, int winStreak, String playerName1, String playerName2,
+                                    int workerCount){
+        if (!Files.exists(this.checkpointPath)){
+            return true;
+        }
+        TournamentCheckpoint saved;
+        try {
+            saved = TournamentCheckpoint.read(this.checkpointPath);
+        }
+        catch (IOException e) {
+            System.out.println(Constants.checkpointFailedString(e.getMessage()));
+            return false;
+        }
+        if (!saved.sameSettings(new TournamentCheckpoint(this.numberOfRounds, size, winStreak,
+                this.roundsPerChunk, playerName1, playerName2, this.seed, workerCount))
+                || (this.seedGiven && saved.seed != this.seed)){
+            System.out.println(Constants.CHECKPOINT_MISMATCH);
+            return false;
+        }
+        this.progress = saved;
+        this.seed = saved.seed;
+        for (int index = 0; index < workerCount; index++){
+            this.playerWins[0] += saved.player1Wins[index];
+            this.playerWins[1] += saved.player2Wins[index];
+            this.ties += saved.ties[index];
+            this.roundsPlayed += saved.roundsPlayed[index];
+        }
+        return true;
+    }
+    /**
+     * Removes the checkpoint file once the tournament is over.
+     */
+    private void deleteCheckpoint(){
+        if (this.checkpointPath == null){
+            return;
+        }
+        try {
+            Files.deleteIfExists(this.checkpointPath);
+        }
+        catch (IOException e) {
+            System.out.println(Constants.checkpointFailedString(e.getMessage()));
+        }
+    }
+    /**
+     * The players, event bus and games of one thread of the tournament.
+     * The worker keeps one game for each assignment of the players to X and O, and runs them again
+     * and again, so a round allocates no game or board.
+     * The single worker of a serial, unseeded tournament plays with the tournament's own players.
+     * Otherwise the worker builds its own players, each drawing its random moves from a source that
+     * is reseeded from the master seed at the start of every round. The result of a round then
+     * depends only on the seed and the round index, not on the worker or the number of threads.
+     */
+    private final class Worker {
+        private final int index;
+        private final Player[] players;
+        private final GameEventBus events;
+        private final RandomSource[] randoms;
+        private final Game[] games;
 
+        private Worker(int index, boolean parallel, String playerName1, String playerName2, int size,
+                       int winStreak){
+            this.index = index;
+            if (!parallel && !seeded){
+                this.players = Tournament.this.players;
+                this.randoms = null;
             }
-        printTheFinalScore(playerName1, playerName2);
+            else {
+                this.randoms = new RandomSource[] {new RandomSource(0), new RandomSource(0)};
+                this.players = new Player[] {PlayerFactory.buildPlayer(playerName1.toLowerCase(), this.randoms[0]),
+                        PlayerFactory.buildPlayer(playerName2.toLowerCase(), this.randoms[1])};
+            }
+            this.events = parallel ? new GameEventBus() : Tournament.this.events;
+            this.games = new Game[] {new Game(this.players[0], this.players[1], size, winStreak, this.events,
+                    timeControl), new Game(this.players[1], this.players[0], size, winStreak, this.events, timeControl)};
+        }
+
+        /**
+         * Reseeds the random sources of the players for the given round.
+         * @param round The index of the round about to be played.
+         */
+        private void startRound(int round){
+            if (this.randoms != null){
+                for (int player = 0; player < this.randoms.length; player++){
+                    this.randoms[player].setState(RandomSource.derive(seed, round, player));
+                }
+            }
+        }
     }
     /**
      * Displays the final results of the tournament, including player wins and ties.
@@ -124,5 +932,14 @@ class Tournament{
                 "Player 2, " + playerName2 + " won: " + this.playerWins[1] + " rounds\n" +
                 "Ties: " + this.ties);
     }
+    /**
+     * Displays the verdict of the sequential test and the number of rounds it saved.
+     */
+    private void printTheSequentialTestResult() {
+        System.out.println("######### SPRT #########\n" +
+                "Verdict: " + this.verdict + " (" + this.sequentialTest.describe() + ")\n" +
+                "Rounds played: " + this.roundsPlayed + " of " + this.numberOfRounds + "\n" +
+                "Rounds saved: " + (this.numberOfRounds - this.roundsPlayed));
+    }
 
 }
\ No newline at end of file
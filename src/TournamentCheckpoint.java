@@ -0,0 +1,139 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * The saved progress of a tournament: its settings, its master seed and, for every worker,
+ * the rounds it completed and its results.
+ * A checkpoint is written to a temporary file which is then renamed over the previous checkpoint,
+ * so a crash while writing never leaves a half-written checkpoint behind.
+ * @author Yinon Kedem
+ * @see Tournament
+ */
+final class TournamentCheckpoint {
+    private final static int MAGIC = 0x54545443;
+    private final static int VERSION = 2;
+    private final static String TEMPORARY_SUFFIX = ".tmp";
+
+    final int numberOfRounds;
+    final int size;
+    final int winStreak;
+    final int roundsPerChunk;
+    final String playerName1;
+    final String playerName2;
+    final long seed;
+    final long[] chunksDone;
+    final long[] roundsPlayed;
+    final int[] player1Wins;
+    final int[] player2Wins;
+    final int[] ties;
+
+    /**
+     * Creates an empty checkpoint for the given tournament settings.
+     * @param numberOfRounds The number of rounds in the tournament.
+     * @param size The size of the game board.
+     * @param winStreak The required win streak.
+     * @param roundsPerChunk The number of rounds a worker plays between two updates of its progress.
+     * @param playerName1 The name of the first player.
+     * @param playerName2 The name of the second player.
+     * @param seed The master seed the random decisions of every round are derived from.
+     * @param workers The number of workers.
+     */
+    TournamentCheckpoint(int numberOfRounds, int size, int winStreak, int roundsPerChunk,
+                         String playerName1, String playerName2, long seed, int workers) {
+        this.numberOfRounds = numberOfRounds;
+        this.size = size;
+        this.winStreak = winStreak;
+        this.roundsPerChunk = roundsPerChunk;
+        this.playerName1 = playerName1;
+        this.playerName2 = playerName2;
+        this.seed = seed;
+        this.chunksDone = new long[workers];
+        this.roundsPlayed = new long[workers];
+        this.player1Wins = new int[workers];
+        this.player2Wins = new int[workers];
+        this.ties = new int[workers];
+    }
+
+    /**
+     * Checks if this checkpoint was written by a tournament with the same settings.
+     * @param other A checkpoint holding the settings of the current tournament.
+     * @return true if the settings and the number of workers are equal, false otherwise.
+     */
+    boolean sameSettings(TournamentCheckpoint other) {
+        return this.numberOfRounds == other.numberOfRounds && this.size == other.size
+                && this.winStreak == other.winStreak && this.roundsPerChunk == other.roundsPerChunk
+                && this.playerName1.equalsIgnoreCase(other.playerName1)
+                && this.playerName2.equalsIgnoreCase(other.playerName2)
+                && this.chunksDone.length == other.chunksDone.length;
+    }
+
+    /**
+     * Writes the checkpoint atomically: to a temporary file that is flushed to disk and then renamed.
+     * @param path The checkpoint file.
+     * @throws IOException if the file cannot be written.
+     */
+    void write(Path path) throws IOException {
+        Path temporary = path.resolveSibling(path.getFileName() + TEMPORARY_SUFFIX);
+        try (FileOutputStream file = new FileOutputStream(temporary.toFile());
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(file))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(this.numberOfRounds);
+            out.writeInt(this.size);
+            out.writeInt(this.winStreak);
+            out.writeInt(this.roundsPerChunk);
+            out.writeUTF(this.playerName1);
+            out.writeUTF(this.playerName2);
+            out.writeLong(this.seed);
+            out.writeInt(this.chunksDone.length);
+            for (int worker = 0; worker < this.chunksDone.length; worker++) {
+                out.writeLong(this.chunksDone[worker]);
+                out.writeLong(this.roundsPlayed[worker]);
+                out.writeInt(this.player1Wins[worker]);
+                out.writeInt(this.player2Wins[worker]);
+                out.writeInt(this.ties[worker]);
+            }
+            out.flush();
+            file.getFD().sync();
+        }
+        Files.move(temporary, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /**
+     * Reads a checkpoint written by write.
+     * @param path The checkpoint file.
+     * @return The checkpoint.
+     * @throws IOException if the file cannot be read or is not a checkpoint.
+     */
+    static TournamentCheckpoint read(Path path) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                throw new IOException("Not a tournament checkpoint: " + path);
+            }
+            int numberOfRounds = in.readInt();
+            int size = in.readInt();
+            int winStreak = in.readInt();
+            int roundsPerChunk = in.readInt();
+            String playerName1 = in.readUTF();
+            String playerName2 = in.readUTF();
+            long seed = in.readLong();
+            TournamentCheckpoint checkpoint = new TournamentCheckpoint(numberOfRounds, size, winStreak,
+                    roundsPerChunk, playerName1, playerName2, seed, in.readInt());
+            for (int worker = 0; worker < checkpoint.chunksDone.length; worker++) {
+                checkpoint.chunksDone[worker] = in.readLong();
+                checkpoint.roundsPlayed[worker] = in.readLong();
+                checkpoint.player1Wins[worker] = in.readInt();
+                checkpoint.player2Wins[worker] = in.readInt();
+                checkpoint.ties[worker] = in.readInt();
+            }
+            return checkpoint;
+        }
+    }
+}
@@ -0,0 +1,230 @@
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * A fixed-size transposition table for search players, stored off-heap in direct byte buffers.
+ * Every entry is two longs: the position key XOR-ed with the data word, and the data word itself.
+ * A reader accepts an entry only if the two words still XOR back to its key, so a write that was
+ * torn by another thread is simply treated as a miss. No locks are taken on probe or store.
+ * Each bucket holds a depth-preferred slot and an always-replace slot.
+ * @author Yinon Kedem
+ * @see CommandLineOptions
+ */
+class TranspositionTable {
+    /**
+     * The default amount of memory used by the shared table, in megabytes.
+     */
+    final static int DEFAULT_SIZE_MB = 16;
+    /**
+     * The score is exact.
+     */
+    final static int EXACT = 0;
+    /**
+     * The score is a lower bound (the search failed high).
+     */
+    final static int LOWER_BOUND = 1;
+    /**
+     * The score is an upper bound (the search failed low).
+     */
+    final static int UPPER_BOUND = 2;
+    /**
+     * Returned by probe when no entry is stored for the key.
+     */
+    final static long MISS = 0L;
+
+    private final static VarHandle LONGS =
+            MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.nativeOrder());
+    private final static int ENTRY_BYTES = 16;
+    private final static int BUCKET_BYTES = 2 * ENTRY_BYTES;
+    private final static int SEGMENT_SHIFT = 25; // 2^25 buckets of 32 bytes = 1 GB per buffer
+    private final static long VALID_BIT = 1L << 63;
+    private final static int MAX_DEPTH = 0xFF;
+
+    private static volatile TranspositionTable shared;
+
+    private final ByteBuffer[] segments;
+    private final long bucketMask;
+    private final int segmentMask;
+    private volatile int generation = 0;
+
+    /**
+     * Creates a table that uses at most the given amount of off-heap memory.
+     * The number of buckets is rounded down to a power of two.
+     * @param megabytes The memory budget in megabytes.
+     */
+    TranspositionTable(int megabytes) {
+        if (megabytes < 1) {
+            throw new IllegalArgumentException("Transposition table size must be at least 1 MB");
+        }
+        long buckets = Long.highestOneBit(((long) megabytes << 20) / BUCKET_BYTES);
+        long bucketsPerSegment = Math.min(buckets, 1L << SEGMENT_SHIFT);
+        int numberOfSegments = (int) (buckets / bucketsPerSegment);
+        this.segments = new ByteBuffer[numberOfSegments];
+        for (int i = 0; i < numberOfSegments; i++) {
+            int bytes = (int) (bucketsPerSegment * BUCKET_BYTES);
+            this.segments[i] = ByteBuffer.allocateDirect(bytes + Long.BYTES)
+                    .alignedSlice(Long.BYTES).limit(bytes).slice();
+        }
+        this.bucketMask = buckets - 1;
+        this.segmentMask = (int) (bucketsPerSegment - 1);
+    }
+
+    /**
+     * Sets the size of the table shared by all search players in this process.
+     * Must be called before the first call to shared() to have an effect.
+     * @param megabytes The memory budget in megabytes.
+     */
+    static synchronized void configureShared(int megabytes) {
+        if (shared == null) {
+            shared = new TranspositionTable(megabytes);
+        }
+    }
+
+    /**
+     * Gets the table shared by all search players in this process,
+     * creating it with the default size if it was not configured.
+     * @return The shared transposition table.
+     */
+    static TranspositionTable shared() {
+        TranspositionTable table = shared;
+        if (table == null) {
+            configureShared(DEFAULT_SIZE_MB);
+            table = shared;
+        }
+        return table;
+    }
+
+    /**
+     * Looks up the entry stored for the given position key.
+     * @param key The hash key of the position.
+     * @return The packed data word of the entry, or MISS if there is none.
+     */
+    long probe(long key) {
+        ByteBuffer segment = segmentOf(key);
+        int offset = offsetOf(key);
+        for (int slot = 0; slot < BUCKET_BYTES; slot += ENTRY_BYTES) {
+            long check = (long) LONGS.getOpaque(segment, offset + slot);
+            long data = (long) LONGS.getOpaque(segment, offset + slot + Long.BYTES);
+            if ((data & VALID_BIT) != 0 && (check ^ data) == key) {
+                return data;
+            }
+        }
+        return MISS;
+    }
+
+    /**
+     * Stores a search result for the given position key.
+     * The depth-preferred slot is overwritten only by an equal or deeper result, or by any result
+     * once its entry belongs to an older search; otherwise the always-replace slot is used.
+     * @param key The hash key of the position.
+     * @param score The score of the position, within the range of a short.
+     * @param depth The remaining depth the score was searched to.
+     * @param move The best move found, as a cell index, or a negative value for none.
+     * @param bound One of EXACT, LOWER_BOUND or UPPER_BOUND.
+     */
+    void store(long key, int score, int depth, int move, int bound) {
+        ByteBuffer segment = segmentOf(key);
+        int offset = offsetOf(key);
+        long data = pack(score, depth, move, bound, this.generation);
+        long oldData = (long) LONGS.getOpaque(segment, offset + Long.BYTES);
+        long oldCheck = (long) LONGS.getOpaque(segment, offset);
+        boolean sameKey = (oldCheck ^ oldData) == key;
+        if ((oldData & VALID_BIT) == 0 || sameKey || depth >= depth(oldData)
+                || generation(oldData) != (this.generation & 0xFF)) {
+            write(segment, offset, key, data);
+        }
+        else {
+            write(segment, offset + ENTRY_BYTES, key, data);
+        }
+    }
+
+    /**
+     * Marks the start of a new search, so entries of earlier searches lose their depth priority.
+     */
+    void newSearch() {
+        this.generation++;
+    }
+
+    /**
+     * Removes all entries from the table.
+     */
+    void clear() {
+        for (ByteBuffer segment : this.segments) {
+            for (int offset = 0; offset < segment.capacity(); offset += Long.BYTES) {
+                LONGS.setOpaque(segment, offset, 0L);
+            }
+        }
+    }
+
+    /**
+     * Gets the number of entries the table can hold.
+     * @return The capacity of the table in entries.
+     */
+    long capacity() {
+        return (this.bucketMask + 1) * 2;
+    }
+
+    /**
+     * Extracts the score from a packed data word.
+     * @param data A data word returned by probe.
+     * @return The stored score.
+     */
+    static int score(long data) {
+        return (short) (data >>> 16);
+    }
+
+    /**
+     * Extracts the search depth from a packed data word.
+     * @param data A data word returned by probe.
+     * @return The stored depth.
+     */
+    static int depth(long data) {
+        return (int) (data >>> 32) & MAX_DEPTH;
+    }
+
+    /**
+     * Extracts the best move from a packed data word.
+     * @param data A data word returned by probe.
+     * @return The stored move as a cell index, or -1 if there is none.
+     */
+    static int move(long data) {
+        return (int) (data & 0xFFFF) - 1;
+    }
+
+    /**
+     * Extracts the bound type from a packed data word.
+     * @param data A data word returned by probe.
+     * @return One of EXACT, LOWER_BOUND or UPPER_BOUND.
+     */
+    static int bound(long data) {
+        return (int) (data >>> 40) & 0x3;
+    }
+
+    private static int generation(long data) {
+        return (int) (data >>> 42) & 0xFF;
+    }
+
+    private static long pack(int score, int depth, int move, int bound, int generation) {
+        return VALID_BIT
+                | ((long) (generation & 0xFF) << 42)
+                | ((long) (bound & 0x3) << 40)
+                | ((long) Math.min(Math.max(depth, 0), MAX_DEPTH) << 32)
+                | ((long) (score & 0xFFFF) << 16)
+                | ((move + 1) & 0xFFFF);
+    }
+
+    private static void write(ByteBuffer segment, int offset, long key, long data) {
+        LONGS.setOpaque(segment, offset, key ^ data);
+        LONGS.setOpaque(segment, offset + Long.BYTES, data);
+    }
+
+    private ByteBuffer segmentOf(long key) {
+        return this.segments[(int) ((key & this.bucketMask) >>> SEGMENT_SHIFT)];
+    }
+
+    private int offsetOf(long key) {
+        return ((int) key & this.segmentMask) * BUCKET_BYTES;
+    }
+}
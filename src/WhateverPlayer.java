@@ -1,32 +1,48 @@
-import java.util.*;
+import java.util.concurrent.ThreadLocalRandom;
 /**
  * A player implementation that makes random moves on the game board.
- * Implements the Player interface by providing a playTurn method that randomly selects a valid empty cell.
+ * Implements the Player interface by providing a chooseMove method that randomly selects a valid empty cell.
  * This player does not employ any specific strategy and relies on random moves.
  * @author Yinon Kedem
  * @see Player
+ * @see RandomSource
  */
 class WhateverPlayer implements Player{
+    private final RandomSource random;
+
     /**
-     * Makes a random move on the game board by selecting a valid empty cell.
-     * The player continues making random moves until a valid empty cell is found.
-     * @param board The game board on which the player makes a move.
+     * Constructs a WhateverPlayer with a randomly seeded source of moves.
+     */
+    WhateverPlayer(){
+        this(new RandomSource(ThreadLocalRandom.current().nextLong()));
+    }
+    /**
+     * Constructs a WhateverPlayer that draws its moves from the given source,
+     * so its games can be repeated and resumed.
+     * @param random The source of the random moves.
+     */
+    WhateverPlayer(RandomSource random){
+        this.random = random;
+    }
+    /**
+     * Chooses a random move on the game board by selecting a valid empty cell.
+     * The player continues drawing random positions until a valid empty cell is found.
+     * @param board A read-only view of the game board on which the player makes a move.
      * @param mark The mark (X or O) associated with the player.
+     * @return The cell index of the random empty cell.
      */
     @Override
-    public void playTurn(Board board, Mark mark) {
+    public int chooseMove(BoardView board, Mark mark) {
         boolean correctInput = false;
-        Random randomRowPosition = new Random();
-        Random randomColPosition = new Random();
         int row = -1;
         int col = -1;
         while (!correctInput) {
-            row = randomRowPosition.nextInt(board.getSize());
-            col = randomColPosition.nextInt(board.getSize());
+            row = this.random.nextInt(board.getSize());
+            col = this.random.nextInt(board.getSize());
             if (board.getMark(row,col) == Mark.BLANK){
                 correctInput = true;
             }
         }
-        board.putMark(mark, row, col);
+        return board.cellIndex(row, col);
     }
-}
\ No newline at end of file
+}
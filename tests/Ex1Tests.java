@@ -5,13 +5,31 @@ import org.junit.jupiter.api.Test;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 
+import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
 import java.lang.reflect.Field;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
 import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.NoSuchElementException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordingFile;
 
 import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
 
 public class Ex1Tests {
     @Nested
@@ -148,6 +166,52 @@ public class Ex1Tests {
             assertFalse(board.putMark(Mark.O, 0, 0));
             assertEquals(Mark.X, board.getMark(0, 0));
         }
+
+        @Test
+        public void testUndo() {
+            Board board = new Board();
+            long emptyHash = board.getHash();
+            assertTrue(board.putMark(Mark.X, 1, 2));
+            assertTrue(board.putMark(Mark.O, 3, 0));
+
+            assertTrue(board.undo());
+            assertEquals(Mark.BLANK, board.getMark(3, 0));
+            assertEquals(1, board.getOccupiedCells());
+            assertEquals(board.cellIndex(1, 2), board.getLastMove());
+            assertTrue(board.undo());
+            assertEquals(emptyHash, board.getHash());
+            assertEquals(Board.NO_MOVE, board.getLastMove());
+            assertFalse(board.undo());
+            assertTrue(board.putMark(Mark.O, 3, 0));
+        }
+
+        @Test
+        public void testHashIndependentOfMoveOrder() {
+            Board first = new Board();
+            Board second = new Board();
+            first.putMark(Mark.X, 0, 0);
+            first.putMark(Mark.O, 2, 1);
+            second.putMark(Mark.O, 2, 1);
+            second.putMark(Mark.X, 0, 0);
+
+            assertEquals(first.getHash(), second.getHash());
+        }
+
+        @Test
+        public void testResetKeepsSnapshots() {
+            Board board = new Board();
+            board.putMark(Mark.X, 0, 0);
+            board.putMark(Mark.O, 1, 1);
+            BoardSnapshot snapshot = board.snapshot();
+
+            board.reset();
+
+            assertEquals(0, board.getOccupiedCells());
+            assertEquals(new Board().getHash(), board.getHash());
+            assertEquals(Mark.BLANK, board.getMark(0, 0));
+            assertEquals(Mark.X, snapshot.getMark(0, 0));
+            assertTrue(board.putMark(Mark.O, 0, 0));
+        }
     }
 
     @Nested
@@ -318,6 +382,16 @@ public class Ex1Tests {
             assertEquals(Mark.X, winner);
         }
 
+        @Test
+        public void testRunGameAgain() {
+            Game game = new Game(new GeniusPlayer(), new CleverPlayer(), new VoidRenderer());
+            Mark first = game.run();
+            int moves = game.getMoveCount();
+
+            assertEquals(first, game.run());
+            assertEquals(moves, game.getMoveCount());
+        }
+
         @Test
         public void testRunGameWithOWin() {
             Player playerX = new CleverPlayer();
@@ -461,6 +535,97 @@ public class Ex1Tests {
 
             assertEquals(Mark.X, winner);
         }
+
+        @Test
+        public void testRejectsIllegalMove() {
+            Player occupiedCellPlayer = (board, mark) -> board.cellIndex(0, 0);
+            Game game = new Game(occupiedCellPlayer, new CleverPlayer(), 3, 3, new VoidRenderer());
+
+            assertThrows(IllegalStateException.class, game::run);
+        }
+
+        @Test
+        public void testHungPlayerLosesOnTime() {
+            CountDownLatch never = new CountDownLatch(1);
+            Player hungPlayer = (board, mark) -> {
+                try {
+                    never.await();
+                }
+                catch (InterruptedException e) {
+                    // interrupted by the clock, and keeps hanging
+                }
+                return board.nextCandidate(0);
+            };
+            Game forfeit = new Game(hungPlayer, new CleverPlayer(), 3, 3, new GameEventBus(),
+                    new TimeControl(50, 0, TimeControl.Policy.FORFEIT));
+
+            assertTimeoutPreemptively(Duration.ofSeconds(5), () -> assertEquals(Mark.O, forfeit.run()));
+            assertEquals(1, forfeit.getClock().getTimeouts());
+            assertEquals(0, forfeit.getClock().getRemainingNanos(Mark.X));
+
+            Game fallback = new Game(new CleverPlayer(), hungPlayer, 3, 3, new GameEventBus(),
+                    new TimeControl(50, 0, TimeControl.Policy.FALLBACK));
+            assertTimeoutPreemptively(Duration.ofSeconds(5), () -> fallback.run());
+            assertTrue(fallback.getMoveCount() >= 5);
+            assertTrue(fallback.getClock().getTimeouts() >= 2);
+            never.countDown();
+        }
+
+        @Test
+        public void testPlayersChooseFromSnapshot() {
+            Board board = new Board(3, 3);
+            board.putMark(Mark.O, 0, 0);
+            board.putMark(Mark.O, 0, 1);
+            BoardSnapshot snapshot = board.snapshot();
+
+            assertEquals(board.cellIndex(0, 2), new NTuplePlayer().chooseMove(snapshot, Mark.X));
+            assertEquals(board.cellIndex(0, 2), new SearchPlayer().chooseMove(snapshot, Mark.X));
+            assertEquals(board.cellIndex(0, 2), new CleverPlayer().chooseMove(snapshot, Mark.X));
+            assertEquals(2, snapshot.getOccupiedCells());
+            assertTrue(snapshot.wouldComplete(Mark.O, 0, 2));
+            assertFalse(snapshot.wouldComplete(Mark.X, 0, 2));
+        }
+
+        @Test
+        public void testPonderedAnswersWinOrBlock() throws Exception {
+            SearchPlayer.configurePondering(true);
+            try {
+                for (int reply = 0; reply < 16; reply++) {
+                    SearchPlayer player = new SearchPlayer();
+                    Board board = new Board(4, 3);
+                    board.putMark(Mark.X, 1, 1);
+                    board.putMark(Mark.O, 0, 0);
+                    int move = player.chooseMove(board, Mark.X);
+                    board.putMark(Mark.X, board.rowOf(move), board.colOf(move));
+                    if (!board.putMark(Mark.O, board.rowOf(reply), board.colOf(reply))) {
+                        continue;
+                    }
+                    // give the player time to ponder the reply
+                    Thread.sleep(50);
+
+                    int answer = player.chooseMove(board.snapshot(), Mark.X);
+
+                    assertEquals(Mark.BLANK, board.getMark(board.rowOf(answer), board.colOf(answer)));
+                    boolean canWin = false;
+                    int threats = 0;
+                    for (int cell = 0; cell < 16; cell++) {
+                        if (board.getMark(board.rowOf(cell), board.colOf(cell)) == Mark.BLANK) {
+                            canWin |= board.wouldComplete(Mark.X, board.rowOf(cell), board.colOf(cell));
+                            threats += board.wouldComplete(Mark.O, board.rowOf(cell), board.colOf(cell)) ? 1 : 0;
+                        }
+                    }
+                    if (canWin) {
+                        assertTrue(board.wouldComplete(Mark.X, board.rowOf(answer), board.colOf(answer)));
+                    }
+                    else if (threats == 1) {
+                        assertTrue(board.wouldComplete(Mark.O, board.rowOf(answer), board.colOf(answer)));
+                    }
+                }
+            }
+            finally {
+                SearchPlayer.configurePondering(false);
+            }
+        }
     }
 
     @Nested
@@ -501,10 +666,10 @@ public class Ex1Tests {
         }
 
         private final static String UNKNOWN_RENDERER_NAME = "Choose a renderer, and start again. \nPlease choose" +
-                " one of the following [console, none]";
+                " one of the following [console, ansi, none]";
 
         private final static String UNKNOWN_PLAYER_NAME = "Choose a player, and start again.\nThe players: " +
-                "[human, clever, whatever, genius]";
+                "[human, clever, whatever, genius, search, ntuple, scripted]";
 
         @Test
         public void testInvalidRendererErrorMsg() {
@@ -546,6 +711,144 @@ public class Ex1Tests {
             assertEquals(UNKNOWN_RENDERER_NAME + "\n", outputStreamCaptor.toString().replace("\r", ""));
         }
 
+        @Test
+        public void testInvalidTableSizeErrorMsg() {
+            ByteArrayOutputStream outputStreamCaptor = new ByteArrayOutputStream();
+            System.setOut(new PrintStream(outputStreamCaptor));
+
+            Tournament.main(new String[] {"10", "4", "3", "none", "search", "clever", "--tt-mb=0"});
+            Tournament.main(new String[] {"10", "4", "3", "none", "search", "clever", "--tt-mb=4294967297"});
+
+            assertEquals(Constants.invalidOptionString("--tt-mb=0") + "\n"
+                    + Constants.invalidOptionString("--tt-mb=4294967297") + "\n",
+                    outputStreamCaptor.toString().replace("\r", ""));
+        }
+
+        @Test
+        public void testReplayAndResumeCheckTheSeed() throws Exception {
+            ByteArrayOutputStream replay = new ByteArrayOutputStream();
+            System.setOut(new PrintStream(replay));
+            Tournament.main(new String[] {"10", "4", "3", "none", "whatever", "clever", "--replay=3"});
+            Tournament.main(new String[] {"10", "4", "3", "none", "whatever", "clever", "--seed=7", "--replay=-5"});
+            Path checkpoint = Files.createTempFile("tournament", ".ckpt");
+            new TournamentCheckpoint(10, 4, 3, 2, "whatever", "clever", 7, 1).write(checkpoint);
+            ByteArrayOutputStream resume = new ByteArrayOutputStream();
+            System.setOut(new PrintStream(resume));
+            Tournament.main(new String[] {"10", "4", "3", "none", "whatever", "clever", "--seed=8",
+                    "--checkpoint=" + checkpoint, "--resume"});
+            Files.deleteIfExists(checkpoint);
+
+            assertEquals(Constants.invalidOptionString("--replay") + "\n" + Constants.invalidOptionString("--replay=-5")
+                    + "\n", replay.toString().replace("\r", ""));
+            assertEquals(Constants.CHECKPOINT_MISMATCH + "\n", resume.toString().replace("\r", ""));
+        }
+
+        @Test
+        public void testProcessesPlayTheSameRounds() {
+            ByteArrayOutputStream threads = new ByteArrayOutputStream();
+            System.setOut(new PrintStream(threads));
+            Tournament.main(new String[] {"3000", "5", "4", "none", "whatever", "genius", "--seed=11", "--threads=2"});
+            ByteArrayOutputStream processes = new ByteArrayOutputStream();
+            System.setOut(new PrintStream(processes));
+            Tournament.main(new String[] {"3000", "5", "4", "none", "whatever", "genius", "--seed=11", "--processes=2"});
+
+            assertTrue(threads.toString().startsWith("######### Results #########"));
+            assertEquals(threads.toString(), processes.toString());
+        }
+
+        @Test
+        public void testFailedWorkerIsReplaced() throws Exception {
+            String[] args = {"500", "4", "3", "none", "whatever", "clever"};
+            List<String> broken = List.of(Paths.get(System.getProperty("java.home"), "bin", "java").toString(),
+                    "-cp", System.getProperty("java.class.path"), "NoSuchWorker");
+            ShardCoordinator coordinator = new ShardCoordinator(
+                    launch -> launch == 0 ? broken : Tournament.workerCommand("localhost", args, 3), 1, 500, 64,
+                    TimeUnit.SECONDS.toNanos(60));
+            int[] totals = new int[4];
+
+            coordinator.run((start, end, player1Wins, player2Wins, ties) -> {
+                totals[0] += end - start;
+                totals[1] += player1Wins;
+                totals[2] += player2Wins;
+                totals[3] += ties;
+            }, () -> false);
+
+            assertEquals(1, coordinator.getRestarts());
+            assertEquals(500, totals[0]);
+            assertEquals(500, totals[1] + totals[2] + totals[3]);
+        }
+
+        @Test
+        public void testDeterministicMatchupIsPlayedOnce() {
+            int[] moves = new int[1];
+            Player counted = new Player() {
+                private final Player clever = new CleverPlayer();
+
+                @Override
+                public int chooseMove(BoardView board, Mark mark) {
+                    moves[0]++;
+                    return this.clever.chooseMove(board, mark);
+                }
+
+                @Override
+                public boolean isDeterministic() {
+                    return true;
+                }
+            };
+            ByteArrayOutputStream outputStreamCaptor = new ByteArrayOutputStream();
+            System.setOut(new PrintStream(outputStreamCaptor));
+
+            new Tournament(1_000_001, new VoidRenderer(), new GeniusPlayer(), counted)
+                    .playTournament(6, 3, "genius", "counted");
+            int firstMoves = moves[0];
+            new Tournament(10, new VoidRenderer(), new GeniusPlayer(), counted)
+                    .playTournament(6, 3, "genius", "counted");
+
+            assertTrue(firstMoves > 0 && firstMoves < 36);
+            assertEquals(firstMoves, moves[0]);
+            assertTrue(outputStreamCaptor.toString().contains("genius won: 1000001 rounds"));
+            assertTrue(new CleverPlayer().isDeterministic());
+            assertTrue(new GeniusPlayer().isDeterministic());
+            assertFalse(new WhateverPlayer().isDeterministic());
+            assertFalse(new SearchPlayer().isDeterministic());
+        }
+
+        @Test
+        public void testRecordedMatchupIsPlayedInFull() throws Exception {
+            Path path = Files.createTempFile("games", ".jfr");
+            try (Recording recording = new Recording()) {
+                recording.enable("tictactoe.Game");
+                recording.start();
+                System.setOut(new PrintStream(new ByteArrayOutputStream()));
+                new Tournament(20, new VoidRenderer(), new GeniusPlayer(), new CleverPlayer())
+                        .playTournament(4, 3, "genius", "clever");
+                recording.stop();
+                recording.dump(path);
+            }
+
+            long games = RecordingFile.readAllEvents(path).stream()
+                    .filter(event -> event.getEventType().getName().equals("tictactoe.Game")).count();
+            Files.deleteIfExists(path);
+            assertEquals(20, games);
+        }
+
+        @Test
+        public void testHungWorkerIsReplaced() throws Exception {
+            String[] args = {"200", "4", "3", "none", "whatever", "clever"};
+            // a worker that reads nothing and never answers
+            List<String> hung = List.of("sleep", "600");
+            ShardCoordinator coordinator = new ShardCoordinator(
+                    launch -> launch == 0 ? hung : Tournament.workerCommand("localhost", args, 3), 1, 200, 200,
+                    TimeUnit.SECONDS.toNanos(2));
+            int[] rounds = new int[1];
+
+            assertTimeoutPreemptively(Duration.ofSeconds(60), () -> coordinator.run(
+                    (start, end, player1Wins, player2Wins, ties) -> rounds[0] += end - start, () -> false));
+
+            assertEquals(1, coordinator.getRestarts());
+            assertEquals(200, rounds[0]);
+        }
+
         @Test
         public void testWinMessage() {
             ByteArrayOutputStream outputStreamCaptor = new ByteArrayOutputStream();
@@ -597,4 +900,731 @@ public class Ex1Tests {
             }
         }
     }
-}
\ No newline at end of file
+
+    @Nested
+    public class TranspositionTableTest {
+        @Test
+        public void testStoreAndProbe() {
+            TranspositionTable table = new TranspositionTable(1);
+            table.store(12345L, -77, 5, 9, TranspositionTable.LOWER_BOUND);
+
+            long data = table.probe(12345L);
+
+            assertEquals(-77, TranspositionTable.score(data));
+            assertEquals(5, TranspositionTable.depth(data));
+            assertEquals(9, TranspositionTable.move(data));
+            assertEquals(TranspositionTable.LOWER_BOUND, TranspositionTable.bound(data));
+        }
+
+        @Test
+        public void testProbeMiss() {
+            TranspositionTable table = new TranspositionTable(1);
+            table.store(12345L, 1, 1, -1, TranspositionTable.EXACT);
+
+            assertEquals(TranspositionTable.MISS, table.probe(12346L));
+            table.clear();
+            assertEquals(TranspositionTable.MISS, table.probe(12345L));
+        }
+
+        @Test
+        public void testShallowResultKeepsDeepEntry() {
+            TranspositionTable table = new TranspositionTable(1);
+            long deepKey = 7L;
+            long shallowKey = 7L + (1L << 40); // same bucket, different position
+            table.store(deepKey, 10, 8, 1, TranspositionTable.EXACT);
+            table.store(shallowKey, 20, 1, 2, TranspositionTable.EXACT);
+
+            assertEquals(10, TranspositionTable.score(table.probe(deepKey)));
+            assertEquals(20, TranspositionTable.score(table.probe(shallowKey)));
+        }
+    }
+
+    @Nested
+    public class BoardGeometryTest {
+        @Test
+        public void testSharedPerSizeAndWinStreak() {
+            assertSame(BoardGeometry.of(5, 4), new Board(5, 4).getGeometry());
+            assertNotSame(BoardGeometry.of(5, 4), BoardGeometry.of(5, 3));
+            // shapes whose keys collided when the size was packed beside a 6-bit win streak
+            assertEquals(100, BoardGeometry.of(100, 100).getSize());
+            assertEquals(101, BoardGeometry.of(101, 36).getSize());
+            assertEquals(36, BoardGeometry.of(101, 36).getWinStreak());
+        }
+
+        @Test
+        public void testLinesAndNeighbours() {
+            BoardGeometry geometry = BoardGeometry.of(3, 3);
+            assertEquals(8, geometry.getLines().length);
+            assertEquals(4, geometry.getLinesThrough(4).length);
+            assertEquals(3, geometry.getNeighbours(0).length);
+            assertEquals(8, geometry.getNeighbours(4).length);
+            assertEquals(24, BoardGeometry.of(4, 3).getLines().length);
+        }
+
+        @Test
+        public void testCandidatesNearMarks() {
+            Board board = new Board(15, 5);
+            assertEquals(board.cellIndex(7, 7), board.nextCandidate(0));
+            assertEquals(Board.NO_MOVE, board.nextCandidate(board.cellIndex(7, 7) + 1));
+
+            board.putMark(Mark.X, 0, 0);
+            int count = 0;
+            for (int cell = board.nextCandidate(0); cell != Board.NO_MOVE; cell = board.nextCandidate(cell + 1)) {
+                assertTrue(board.rowOf(cell) <= 2 && board.colOf(cell) <= 2);
+                count++;
+            }
+            assertEquals(8, count);
+
+            board.undo();
+            board.putMark(Mark.O, 14, 14);
+            assertEquals(board.cellIndex(12, 12), board.nextCandidate(0));
+            assertEquals(board.cellIndex(12, 12), board.snapshot().toBoard().nextCandidate(0));
+            assertEquals(1, new Board(3, 3).nextCandidate(1));
+        }
+    }
+
+    @Nested
+    public class BoardSnapshotTest {
+        @Test
+        public void testSnapshotUnaffectedByLaterMoves() {
+            Board board = new Board();
+            board.putMark(Mark.X, 0, 0);
+            BoardSnapshot snapshot = board.snapshot();
+
+            board.putMark(Mark.O, 0, 1);
+            board.undo();
+            board.undo();
+
+            assertEquals(Mark.X, snapshot.getMark(0, 0));
+            assertEquals(Mark.BLANK, snapshot.getMark(0, 1));
+            assertEquals(1, snapshot.getOccupiedCells());
+            assertEquals(Mark.BLANK, board.getMark(0, 0));
+        }
+
+        @Test
+        public void testWithMarkSharesUnchangedRows() {
+            Board board = new Board();
+            board.putMark(Mark.X, 0, 0);
+            BoardSnapshot before = board.snapshot();
+            BoardSnapshot after = before.withMark(Mark.O, 2, 2);
+            board.putMark(Mark.O, 2, 2);
+
+            assertSame(before.sharedRows()[0], after.sharedRows()[0]);
+            assertNotSame(before.sharedRows()[2], after.sharedRows()[2]);
+            assertEquals(board.getHash(), after.getHash());
+            assertSame(before, before.withMark(Mark.O, 0, 0));
+        }
+
+        @Test
+        public void testToBoard() {
+            Board board = new Board();
+            board.putMark(Mark.X, 1, 1);
+            Board copy = board.snapshot().toBoard();
+
+            assertTrue(copy.putMark(Mark.O, 0, 0));
+            assertEquals(Mark.BLANK, board.getMark(0, 0));
+            assertEquals(2, copy.getOccupiedCells());
+            assertTrue(copy.undo());
+            assertTrue(copy.undo());
+            assertEquals(Mark.X, board.getMark(1, 1));
+        }
+    }
+
+    @Nested
+    public class GameEventBusTest {
+        @Test
+        public void testObserversReceiveEveryEvent() {
+            GameEventBus bus = new GameEventBus(8);
+            int[] inlineMoves = new int[1];
+            int[] asyncMoves = new int[1];
+            int[] asyncGames = new int[1];
+            bus.subscribeInline((event, endOfBatch) -> {
+                if (event.getType() == GameEventType.MOVE_PLAYED) {
+                    inlineMoves[0]++;
+                }
+            });
+            bus.subscribe((event, endOfBatch) -> {
+                if (event.getType() == GameEventType.MOVE_PLAYED) {
+                    asyncMoves[0]++;
+                }
+                else if (event.getType() == GameEventType.GAME_WON) {
+                    asyncGames[0]++;
+                }
+            }, "test-observer");
+
+            for (int round = 0; round < 100; round++) {
+                assertEquals(Mark.X, new Game(new GeniusPlayer(), new CleverPlayer(), 4, 3, bus).run());
+            }
+            bus.close();
+
+            assertEquals(inlineMoves[0], asyncMoves[0]);
+            assertEquals(100, asyncGames[0]);
+        }
+    }
+
+    @Nested
+    public class SequentialTestTest {
+        @Test
+        public void testDecidesLopsidedResults() {
+            SequentialTest test = new SequentialTest(0.05, 0.05, 0.05);
+
+            assertEquals(SequentialTest.Verdict.PLAYER_1_STRONGER, test.decide(90, 10, 0));
+            assertEquals(SequentialTest.Verdict.PLAYER_2_STRONGER, test.decide(10, 90, 0));
+        }
+
+        @Test
+        public void testUndecidedOnEvenOrFewResults() {
+            SequentialTest test = new SequentialTest(0.05, 0.05, 0.05);
+
+            assertEquals(SequentialTest.Verdict.UNDECIDED, test.decide(10, 0, 0));
+            assertEquals(SequentialTest.Verdict.UNDECIDED, test.decide(50, 50, 100));
+        }
+
+        @Test
+        public void testInvalidParameters() {
+            assertThrows(IllegalArgumentException.class, () -> new SequentialTest(0.5, 0.05, 0.05));
+            assertThrows(IllegalArgumentException.class, () -> new SequentialTest(0.05, 0, 0.05));
+        }
+    }
+
+    @Nested
+    public class AnsiRendererTest {
+        @Test
+        public void testDrawsOnlyChangedCells() {
+            ByteArrayOutputStream outputStreamCaptor = new ByteArrayOutputStream();
+            System.setOut(new PrintStream(outputStreamCaptor));
+            AnsiRenderer renderer = new AnsiRenderer(3, 0);
+            Board board = new Board(3);
+            board.putMark(Mark.X, 1, 1);
+            renderer.renderBoard(board);
+            outputStreamCaptor.reset();
+
+            board.putMark(Mark.O, 0, 2);
+            renderer.renderBoard(board);
+
+            assertEquals("\u001b[3;14HO\u001b[9;1H", outputStreamCaptor.toString());
+        }
+
+        @Test
+        public void testFlushDrawsHeldBackBoard() {
+            ByteArrayOutputStream outputStreamCaptor = new ByteArrayOutputStream();
+            System.setOut(new PrintStream(outputStreamCaptor));
+            AnsiRenderer renderer = new AnsiRenderer(3, 1);
+            Board board = new Board(3);
+            renderer.renderBoard(board);
+            outputStreamCaptor.reset();
+
+            board.putMark(Mark.X, 2, 0);
+            renderer.renderBoard(board);
+            assertEquals("", outputStreamCaptor.toString());
+            renderer.flush();
+            assertEquals("\u001b[7;6HX\u001b[9;1H", outputStreamCaptor.toString());
+        }
+
+        @Test
+        public void testGameEndDrawsFinalPosition() {
+            ByteArrayOutputStream outputStreamCaptor = new ByteArrayOutputStream();
+            System.setOut(new PrintStream(outputStreamCaptor));
+            Game game = new Game(new GeniusPlayer(), new CleverPlayer(), 3, 3, new AnsiRenderer(3, 1));
+
+            game.run();
+
+            // every move is held back by the frame rate but the first, and the end of the game draws them all
+            String output = outputStreamCaptor.toString();
+            assertEquals(game.getMoveCount(), output.split("H[XO]", -1).length - 1);
+        }
+    }
+
+    @Nested
+    public class NTupleNetworkTest {
+        @Test
+        public void testValueIsAntisymmetric() {
+            NTupleNetwork network = new NTupleNetwork(4, 3);
+            Board board = new Board(4, 3);
+            board.putMark(Mark.X, 1, 1);
+            board.putMark(Mark.O, 0, 3);
+            network.update(board, Mark.X, 0.05f);
+
+            assertTrue(network.value(board, Mark.X) > 0);
+            assertEquals(network.value(board, Mark.X), -network.value(board, Mark.O), 1e-6);
+        }
+
+        @Test
+        public void testSaveAndLoad() throws Exception {
+            Path path = Files.createTempDirectory("weights").resolve(NTupleNetwork.fileName(4, 3));
+            NTupleNetwork network = new NTupleNetwork(4, 3);
+            Board board = new Board(4, 3);
+            board.putMark(Mark.X, 2, 2);
+            network.update(board, Mark.X, 0.1f);
+            network.save(path);
+
+            NTupleNetwork loaded = NTupleNetwork.load(path);
+
+            assertEquals(network.value(board, Mark.X), loaded.value(board, Mark.X));
+            assertEquals(network.moveGain(board, Mark.O, 0), loaded.moveGain(board, Mark.O, 0));
+        }
+
+        @Test
+        public void testUnreadableWeightsAreReportedBeforePlay() throws Exception {
+            Path directory = Files.createTempDirectory("weights");
+            Path path = directory.resolve(NTupleNetwork.fileName(3, 3));
+            ByteArrayOutputStream outputStreamCaptor = new ByteArrayOutputStream();
+            System.setOut(new PrintStream(outputStreamCaptor));
+            try {
+                Files.write(path, new byte[] {1, 2, 3, 4, 5, 6, 7});
+                Tournament.main(new String[] {"2", "3", "3", "none", "ntuple", "whatever", "--weights=" + directory});
+                // the weights of another board under the name of this one
+                new NTupleNetwork(4, 3).save(path);
+                Tournament.main(new String[] {"2", "3", "3", "none", "ntuple", "whatever", "--weights=" + directory});
+            }
+            finally {
+                NTupleNetwork.configureDirectory(Paths.get(NTupleNetwork.DEFAULT_DIRECTORY));
+            }
+
+            assertEquals(Constants.weightsFailedString(Constants.notWeightsString(path.toString())) + "\n"
+                    + Constants.weightsFailedString(Constants.corruptWeightsString(path.toString())) + "\n",
+                    outputStreamCaptor.toString().replace("\r", ""));
+        }
+
+        @Test
+        public void testPlayerTakesWinAndBlocks() {
+            NTupleNetwork network = new NTupleNetwork(4, 3);
+            Board board = new Board(4, 3);
+            board.putMark(Mark.O, 3, 0);
+            board.putMark(Mark.O, 3, 1);
+            assertEquals(board.cellIndex(3, 2), NTuplePlayer.bestMove(network, board, Mark.X));
+            board.putMark(Mark.X, 0, 0);
+            board.putMark(Mark.X, 0, 1);
+            assertEquals(board.cellIndex(0, 2), NTuplePlayer.bestMove(network, board, Mark.X));
+        }
+    }
+
+    @Nested
+    public class BenchmarkTest {
+        @Test
+        public void testClockTimesTheGames() throws Exception {
+            Path path = Files.createTempDirectory("bench").resolve("games.csv");
+            Benchmark benchmark = new Benchmark(2, 15, 5, "search", "search");
+            benchmark.configure(new CommandLineOptions(new String[] {"--warmup=0", "--duration=60",
+                    "--seed=1", "--clock=1+0", "--bench-out=" + path}, 0));
+            benchmark.run();
+
+            // a search takes far longer than a millisecond, so the first player forfeits before its first move
+            List<String> lines = Files.readAllLines(path);
+            assertEquals(3, lines.size());
+            assertTrue(lines.get(1).startsWith("0,search,search,O,0,"));
+            assertTrue(lines.get(2).startsWith("1,search,search,O,0,"));
+        }
+
+        @Test
+        public void testStreamsOneLinePerMeasuredGame() throws Exception {
+            Path path = Files.createTempDirectory("bench").resolve("games.csv");
+            Benchmark benchmark = new Benchmark(10, 3, 3, "whatever", "clever");
+            benchmark.configure(new CommandLineOptions(new String[] {"--warmup=0", "--duration=60",
+                    "--seed=1", "--bench-out=" + path}, 0));
+            benchmark.run();
+
+            List<String> lines = Files.readAllLines(path);
+            assertEquals(11, lines.size());
+            assertEquals("round,x,o,result,moves,nanos", lines.get(0));
+            assertTrue(lines.get(1).startsWith("0,whatever,clever,"));
+        }
+
+        @Test
+        public void testRejectsUnknownFormat() {
+            Benchmark benchmark = new Benchmark(10, 3, 3, "whatever", "clever");
+            assertThrows(IllegalArgumentException.class, () -> benchmark.configure(
+                    new CommandLineOptions(new String[] {"--bench-format=xml"}, 0)));
+        }
+    }
+
+    @Nested
+    public class AllocationBudgetTest {
+        // the checked-in budgets of the steady state of every built-in player, in bytes allocated on
+        // the game thread; a game that allocates more than this is a regression
+        private final Map<String, Double> bytesPerGame = Map.of("whatever", 16.0, "clever", 16.0,
+                "genius", 16.0, "ntuple", 16.0, "search", 16.0, "scripted", 16.0);
+        private final double bytesPerMove = 2.0;
+
+        private void assertWithinBudget(String type, int warmupGames, int measuredGames) {
+            com.sun.management.ThreadMXBean threads =
+                    (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+            assumeTrue(threads.isThreadAllocatedMemorySupported());
+            threads.setThreadAllocatedMemoryEnabled(true);
+            ByteBuffer script = ByteBuffer.wrap("00 11 22 01 10 02 20 12 21".getBytes(StandardCharsets.US_ASCII));
+            Player player = type.equals("scripted") ? new ScriptedPlayer(script)
+                    : PlayerFactory.buildPlayer(type, new RandomSource(1));
+            Player opponent = new WhateverPlayer(new RandomSource(2));
+            Game[] games = {new Game(player, opponent, 3, 3, new VoidRenderer()),
+                    new Game(opponent, player, 3, 3, new VoidRenderer())};
+            for (int i = 0; i < warmupGames; i++) {
+                games[i % 2].run();
+            }
+            long thread = Thread.currentThread().getId();
+            long moves = 0;
+            long before = threads.getThreadAllocatedBytes(thread);
+            for (int i = 0; i < measuredGames; i++) {
+                games[i % 2].run();
+                moves += games[i % 2].getMoveCount();
+            }
+            long allocated = threads.getThreadAllocatedBytes(thread) - before;
+
+            assertTrue(allocated <= bytesPerGame.get(type) * measuredGames,
+                    type + " allocated " + (double) allocated / measuredGames + " bytes per game");
+            assertTrue(allocated <= bytesPerMove * moves,
+                    type + " allocated " + (double) allocated / moves + " bytes per move");
+        }
+
+        @Test
+        public void testWhateverPlayer() {
+            assertWithinBudget("whatever", 5000, 2000);
+        }
+
+        @Test
+        public void testCleverPlayer() {
+            assertWithinBudget("clever", 5000, 2000);
+        }
+
+        @Test
+        public void testGeniusPlayer() {
+            assertWithinBudget("genius", 5000, 2000);
+        }
+
+        @Test
+        public void testNTuplePlayer() {
+            assertWithinBudget("ntuple", 5000, 2000);
+        }
+
+        @Test
+        public void testSearchPlayer() {
+            assertWithinBudget("search", 500, 200);
+        }
+
+        @Test
+        public void testScriptedPlayer() {
+            assertWithinBudget("scripted", 5000, 2000);
+        }
+    }
+
+    @Nested
+    public class AnalysisServiceTest {
+        @Test
+        public void testRanksWinningMoveFirst() {
+            AnalysisService service = new AnalysisService(new TranspositionTable(1), 4, 100_000,
+                    ForkJoinPool.commonPool(), 16);
+            Board board = new Board(3, 3);
+            board.putMark(Mark.X, 0, 0);
+            board.putMark(Mark.O, 1, 1);
+            board.putMark(Mark.X, 0, 1);
+            board.putMark(Mark.O, 2, 2);
+
+            List<AnalysisService.RankedMove> ranked = service.analyse(board, Mark.X);
+
+            assertEquals(5, ranked.size());
+            assertEquals(board.cellIndex(0, 2), ranked.get(0).getCell());
+            assertEquals(AlphaBetaSearch.WIN_SCORE - 1, ranked.get(0).getScore());
+            assertArrayEquals(new int[] {board.cellIndex(0, 2)}, ranked.get(0).getPrincipalVariation());
+            for (int i = 1; i < ranked.size(); i++) {
+                assertTrue(ranked.get(i - 1).getScore() >= ranked.get(i).getScore());
+            }
+        }
+
+        @Test
+        public void testLeavesBoardUntouchedAndCaches() {
+            AnalysisService service = new AnalysisService(new TranspositionTable(1), 4, 100_000,
+                    ForkJoinPool.commonPool(), 16);
+            Board board = new Board(4, 3);
+            board.putMark(Mark.X, 1, 1);
+            long hash = board.getHash();
+
+            List<AnalysisService.RankedMove> ranked = service.analyse(board, Mark.O);
+
+            assertEquals(hash, board.getHash());
+            assertEquals(1, board.getOccupiedCells());
+            assertEquals(Mark.BLANK, board.getMark(2, 2));
+            assertSame(ranked, service.analyse(board, Mark.O));
+            assertNotSame(ranked, service.analyse(board, Mark.X));
+        }
+    }
+
+    @Nested
+    public class PositionNotationTest {
+        @Test
+        public void testRoundTrip() {
+            Board board = new Board(3, 3);
+            board.putMark(Mark.X, 1, 1);
+            board.putMark(Mark.O, 2, 0);
+
+            String text = PositionNotation.format(board, Mark.X);
+            PositionNotation position = PositionNotation.parse(text);
+
+            assertEquals("3/1x1/o2 x 3", text);
+            assertEquals(Mark.X, position.getSideToMove());
+            assertEquals(board.getHash(), position.getBoard().getHash());
+            assertEquals(2, position.getBoard().getOccupiedCells());
+            assertEquals(text, position.toString());
+            assertEquals("15/15/15/15/15/15/15/15/15/15/15/15/15/15/15 o 5",
+                    PositionNotation.format(new Board(15, 5), Mark.O));
+        }
+
+        @Test
+        public void testRejectsMalformedPositions() {
+            assertThrows(IllegalArgumentException.class, () -> PositionNotation.parse("3/1x1/o2 x"));
+            assertThrows(IllegalArgumentException.class, () -> PositionNotation.parse("3/1x1/o3 x 3"));
+            assertThrows(IllegalArgumentException.class, () -> PositionNotation.parse("3/1x1/o2 z 3"));
+            assertThrows(IllegalArgumentException.class, () -> PositionNotation.parse("3/1x1 x 2"));
+        }
+
+        @Test
+        public void testPipelineKeepsInputOrder() throws Exception {
+            StringBuilder input = new StringBuilder();
+            for (int i = 0; i < 50; i++) {
+                input.append(i % 2 == 0 ? "xx1/3/3 x 3\n" : "\n3/1o1/3 x 3\n");
+            }
+            ByteArrayOutputStream output = new ByteArrayOutputStream();
+
+            long positions = new EvaluationPipeline(EvaluationPipeline.PATTERN, 3, 4).run(
+                    new ByteArrayInputStream(input.toString().getBytes(StandardCharsets.US_ASCII)), output);
+
+            String[] lines = output.toString(StandardCharsets.US_ASCII).split("\n");
+            assertEquals(50, positions);
+            assertEquals(51, lines.length);
+            for (int i = 0; i < 50; i++) {
+                assertEquals(i % 2 == 0 ? "xx1/3/3 x 3,0,2," : "3/1o1/3 x 3,", lines[i + 1].substring(0,
+                        i % 2 == 0 ? 16 : 12));
+            }
+            assertThrows(IllegalArgumentException.class, () -> new EvaluationPipeline("random", 1, 4));
+        }
+
+        @Test
+        public void testPipelineStopsWhenOutputFails() {
+            String input = "xx1/3/3 x 3\n".repeat(50);
+            OutputStream broken = new OutputStream() {
+                @Override
+                public void write(int b) throws IOException {
+                    throw new IOException("broken");
+                }
+            };
+
+            assertTimeoutPreemptively(Duration.ofSeconds(10), () -> assertThrows(IOException.class,
+                    () -> new EvaluationPipeline(EvaluationPipeline.PATTERN, 1, 1).run(
+                            new ByteArrayInputStream(input.getBytes(StandardCharsets.US_ASCII)), broken)));
+        }
+    }
+
+    @Nested
+    public class PatternEvaluatorTest {
+        @Test
+        public void testIncrementalScoreMatchesRescan() {
+            Board board = new Board(9, 5);
+            PatternEvaluator evaluator = new PatternEvaluator();
+            evaluator.reset(board);
+            int[][] moves = {{4, 4}, {4, 5}, {3, 3}, {5, 5}, {2, 2}, {0, 8}};
+            for (int i = 0; i < moves.length; i++) {
+                Mark mark = i % 2 == 0 ? Mark.X : Mark.O;
+                board.putMark(mark, moves[i][0], moves[i][1]);
+                evaluator.place(mark, board.cellIndex(moves[i][0], moves[i][1]));
+            }
+            board.undo();
+            evaluator.remove(Mark.O, board.cellIndex(0, 8));
+
+            PatternEvaluator rescanned = new PatternEvaluator();
+            rescanned.reset(board);
+            assertEquals(rescanned.evaluate(Mark.X), evaluator.evaluate(Mark.X));
+            assertEquals(-evaluator.evaluate(Mark.X), evaluator.evaluate(Mark.O));
+            assertEquals(rescanned.getLiveWindows(Mark.X, 3), evaluator.getLiveWindows(Mark.X, 3));
+            assertTrue(evaluator.evaluate(Mark.X) > 0);
+        }
+
+        @Test
+        public void testOpenRunOutweighsClosedRun() {
+            Board open = new Board(9, 4);
+            open.putMark(Mark.X, 4, 3);
+            open.putMark(Mark.X, 4, 4);
+            Board closed = new Board(9, 4);
+            closed.putMark(Mark.X, 4, 0);
+            closed.putMark(Mark.X, 4, 1);
+            PatternEvaluator evaluator = new PatternEvaluator();
+
+            evaluator.reset(open);
+            int openWindows = evaluator.getLiveWindows(Mark.X, 2);
+            int openScore = evaluator.evaluate(Mark.X);
+            evaluator.reset(closed);
+
+            assertTrue(openWindows > evaluator.getLiveWindows(Mark.X, 2));
+            assertTrue(openScore > evaluator.evaluate(Mark.X));
+        }
+    }
+
+    @Nested
+    public class ProofNumberSolverTest {
+        @Test
+        public void testSolvesSmallBoards() {
+            assertEquals(ProofNumberSolver.Result.DRAW, new ProofNumberSolver(3, 3, new ProofTable(1)).solve());
+            assertEquals(ProofNumberSolver.Result.WIN, new ProofNumberSolver(4, 3, new ProofTable(1)).solve());
+            assertEquals(ProofNumberSolver.Result.WIN, new ProofNumberSolver(3, 2, new ProofTable(1)).solve());
+        }
+
+        @Test
+        public void testBookAnswersEverySymmetry() throws Exception {
+            ProofNumberSolver solver = new ProofNumberSolver(3, 3, new ProofTable(1));
+            solver.solve();
+            Map<Long, Integer> moves = new HashMap<>();
+            assertTrue(solver.proofSize(moves) > 0);
+            Path path = Files.createTempDirectory("books").resolve(PerfectPlayBook.fileName(3, 3));
+            new PerfectPlayBook(BoardGeometry.of(3, 3), moves).save(path);
+            PerfectPlayBook book = PerfectPlayBook.load(path);
+
+            // against a corner opening only the center holds the draw, whichever corner it is
+            for (int[] corner : new int[][] {{0, 0}, {0, 2}, {2, 0}, {2, 2}}) {
+                Board board = new Board(3, 3);
+                board.putMark(Mark.X, corner[0], corner[1]);
+                int move = book.lookup(board, Mark.O);
+                assertEquals(1, board.rowOf(move));
+                assertEquals(1, board.colOf(move));
+            }
+            assertNotEquals(Board.NO_MOVE, book.lookup(new Board(3, 3), Mark.X));
+            assertEquals(Board.NO_MOVE, book.lookup(new Board(4, 3), Mark.X));
+        }
+
+        @Test
+        public void testUnreadableBookIsReportedBeforePlay() throws Exception {
+            Path directory = Files.createTempDirectory("books");
+            Path path = directory.resolve(PerfectPlayBook.fileName(3, 3));
+            ByteArrayOutputStream outputStreamCaptor = new ByteArrayOutputStream();
+            System.setOut(new PrintStream(outputStreamCaptor));
+            try {
+                Files.write(path, new byte[] {1, 2, 3, 4, 5, 6, 7});
+                Tournament.main(new String[] {"2", "3", "3", "none", "search", "whatever", "--books=" + directory});
+                // the header of a book followed by nothing
+                Files.write(path, new byte[] {0x50, 0x50, 0x4C, 0x42, 0, 0, 0, 1, 0, 0});
+                Tournament.main(new String[] {"2", "3", "3", "none", "search", "whatever", "--books=" + directory});
+            }
+            finally {
+                PerfectPlayBook.configureDirectory(Paths.get(PerfectPlayBook.DEFAULT_DIRECTORY));
+            }
+
+            assertEquals(Constants.bookFailedString(Constants.notABookString(path.toString())) + "\n"
+                    + Constants.bookFailedString(Constants.corruptBookString(path.toString())) + "\n",
+                    outputStreamCaptor.toString().replace("\r", ""));
+        }
+
+        @Test
+        public void testPonderingPlayerKeepsToTheBook() throws Exception {
+            ProofNumberSolver solver = new ProofNumberSolver(3, 3, new ProofTable(1));
+            solver.solve();
+            Map<Long, Integer> moves = new HashMap<>();
+            solver.proofSize(moves);
+            Path directory = Files.createTempDirectory("books");
+            new PerfectPlayBook(BoardGeometry.of(3, 3), moves).save(directory.resolve(PerfectPlayBook.fileName(3, 3)));
+            PerfectPlayBook.configureDirectory(directory);
+            SearchPlayer.configurePondering(true);
+            try {
+                PerfectPlayBook book = PerfectPlayBook.shared(3, 3);
+                for (int reply = 0; reply < 9; reply++) {
+                    SearchPlayer player = new SearchPlayer();
+                    Board board = new Board(3, 3);
+                    int move = player.chooseMove(board, Mark.X);
+                    assertEquals(book.lookup(board, Mark.X), move);
+                    board.putMark(Mark.X, board.rowOf(move), board.colOf(move));
+                    if (!board.putMark(Mark.O, board.rowOf(reply), board.colOf(reply))) {
+                        continue;
+                    }
+                    // give the player time to ponder the reply
+                    Thread.sleep(50);
+
+                    int answer = player.chooseMove(board.snapshot(), Mark.X);
+
+                    assertNotEquals(Board.NO_MOVE, book.lookup(board, Mark.X));
+                    assertEquals(book.lookup(board, Mark.X), answer);
+                }
+            }
+            finally {
+                SearchPlayer.configurePondering(false);
+                PerfectPlayBook.configureDirectory(Paths.get(PerfectPlayBook.DEFAULT_DIRECTORY));
+            }
+        }
+    }
+
+    @Nested
+    public class ScriptedPlayerTest {
+        private ByteBuffer script(String text) {
+            return ByteBuffer.wrap(text.getBytes(StandardCharsets.US_ASCII));
+        }
+
+        @Test
+        public void testSkipsInvalidAndOccupiedCoordinates() {
+            Board board = new Board(3, 3);
+            board.putMark(Mark.O, 1, 1);
+            ScriptedPlayer player = new ScriptedPlayer(script("-1 44 11\n 7 02 20"));
+            player.playTurn(board, Mark.X);
+            assertEquals(Mark.X, board.getMark(0, 2));
+            player.playTurn(board, Mark.X);
+            assertEquals(Mark.X, board.getMark(2, 0));
+        }
+
+        @Test
+        public void testStartsOverWhenScriptRunsOut() {
+            Board board = new Board(3, 3);
+            ScriptedPlayer player = new ScriptedPlayer(script("00 01"));
+            player.playTurn(board, Mark.X);
+            player.playTurn(board, Mark.O);
+            board.reset();
+            player.playTurn(board, Mark.X);
+            assertEquals(Mark.X, board.getMark(0, 0));
+        }
+
+        @Test
+        public void testRejectsScriptWithoutMoves() {
+            Board board = new Board(3, 3);
+            board.putMark(Mark.O, 0, 0);
+            assertThrows(IllegalStateException.class, () -> new ScriptedPlayer(script("  \n")));
+            assertThrows(IllegalStateException.class, () -> new ScriptedPlayer(script("00 99")).playTurn(board, Mark.X));
+        }
+    }
+
+    @Nested
+    public class TournamentCheckpointTest {
+        @Test
+        public void testWriteAndRead() throws Exception {
+            Path path = Files.createTempDirectory("checkpoint").resolve("tournament.ckpt");
+            TournamentCheckpoint checkpoint = new TournamentCheckpoint(1000, 5, 4, 256, "whatever", "clever", -42L, 2);
+            checkpoint.chunksDone[1] = 3;
+            checkpoint.roundsPlayed[1] = 768;
+            checkpoint.player1Wins[1] = 100;
+            checkpoint.player2Wins[1] = 600;
+            checkpoint.ties[1] = 68;
+            checkpoint.write(path);
+
+            TournamentCheckpoint read = TournamentCheckpoint.read(path);
+
+            assertTrue(read.sameSettings(checkpoint));
+            assertEquals(3, read.chunksDone[1]);
+            assertEquals(768, read.roundsPlayed[1]);
+            assertEquals(600, read.player2Wins[1]);
+            assertEquals(-42L, read.seed);
+            assertFalse(read.sameSettings(new TournamentCheckpoint(1000, 5, 4, 256, "whatever", "clever", -42L, 4)));
+        }
+
+        @Test
+        public void testRandomSourceRestoresSequence() {
+            RandomSource random = new RandomSource(7);
+            random.nextInt(10);
+            long state = random.getState();
+            int expected = random.nextInt(1000);
+
+            RandomSource restored = new RandomSource(0);
+            restored.setState(state);
+
+            assertEquals(expected, restored.nextInt(1000));
+        }
+
+        @Test
+        public void testDerivedStreamsDependOnRoundAndStream() {
+            assertEquals(RandomSource.derive(7, 3, 0), RandomSource.derive(7, 3, 0));
+            assertNotEquals(RandomSource.derive(7, 3, 0), RandomSource.derive(7, 3, 1));
+            assertNotEquals(RandomSource.derive(7, 3, 0), RandomSource.derive(7, 4, 0));
+            assertNotEquals(RandomSource.derive(7, 3, 0), RandomSource.derive(8, 3, 0));
+        }
+    }
+}